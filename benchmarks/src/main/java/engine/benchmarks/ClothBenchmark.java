@@ -0,0 +1,60 @@
+package engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cub3d.Cloth;
+import engine.core.Entity;
+import engine.core.World;
+
+/**
+ * One update() of the demo's Cloth, 5 integrate and solve passes over a 2x2 cloth of
+ * 2*precision by 2*precision particles, set up the way the demo does it.
+ * @author Hamish Rae-Hodgson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClothBenchmark {
+
+	@Param({"5", "10", "20"})
+	public int precision;
+
+	private Cloth cloth;
+
+	@Setup
+	public void setup() throws InterruptedException {
+		//Cloth reads Time, which is the Clock of the current World
+		World world = World.current();
+		Entity entity = world.createEntity("Cloth");
+		cloth = entity.attachComponent(Cloth.class);
+		cloth._width = 2;
+		cloth._height = 2;
+		cloth._precision = precision;
+		cloth.start();
+		world.getEngine().step();
+		Thread.sleep(16);
+		world.getEngine().step(); //so the delta time is about a frame
+	}
+
+	@Benchmark
+	public Cloth update() {
+		cloth.update();
+		return cloth;
+	}
+
+}
@@ -0,0 +1,77 @@
+package engine.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.components.Transform;
+import engine.core.Component;
+import engine.core.Entity;
+import engine.core.World;
+
+/**
+ * Finding the components of an Entity with a number of other components attached.
+ * @author Hamish Rae-Hodgson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+	public static class Health extends Component { }
+	public static class Armour extends Component { }
+	public static class Filler extends Component { }
+	public static class Missing extends Component { }
+
+	/** The Fillers attached besides the Health and two Armours */
+	@Param({"0", "8"})
+	public int fillers;
+
+	private Entity entity;
+
+	@Setup
+	public void setup() {
+		World world = new World();
+		entity = world.createEntity("Entity");
+		for(int i = 0; i < fillers; i++)
+			entity.attachComponent(new Filler());
+		entity.attachComponent(new Health());
+		entity.attachComponent(new Armour());
+		entity.attachComponent(new Armour());
+	}
+
+	@Benchmark
+	public Transform getTransform() {
+		return entity.getComponent(Transform.class);
+	}
+
+	@Benchmark
+	public Health getComponent() {
+		return entity.getComponent(Health.class);
+	}
+
+	@Benchmark
+	public Missing getComponentMissing() {
+		return entity.getComponent(Missing.class);
+	}
+
+	@Benchmark
+	public List<Armour> getComponents() {
+		return entity.getComponents(Armour.class);
+	}
+
+}
@@ -0,0 +1,38 @@
+package engine.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like JMH's own Main, taking the same arguments, but always with the GC profiler
+ * so every result has its allocation rate (gc.alloc.rate.norm is bytes per op) next to its ops/s.
+ * <pre>
+ * java -jar target/benchmarks.jar -rf json -rff baseline.json
+ * </pre>
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Main {
+
+	private Main() { /* Private constructor to prevent instantiation */ }
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions command = new CommandLineOptions(args);
+		if(command.shouldHelp()) {
+			command.showHelp();
+			return;
+		}
+		if(command.shouldList()) {
+			new Runner(command).list();
+			return;
+		}
+		Options options = new OptionsBuilder()
+				.parent(command)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
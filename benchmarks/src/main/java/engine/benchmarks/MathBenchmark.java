@@ -0,0 +1,105 @@
+package engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.common.Mat44;
+import engine.common.Quaternion;
+import engine.common.Vec3;
+
+/**
+ * The Vec3, Quaternion and Mat44 operations used every frame.
+ * The ones that return a new object show up in gc.alloc.rate.norm, the Local ones shouldn't.
+ * @author Hamish Rae-Hodgson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+	private Vec3 a, b, accumulator;
+	private Quaternion p, q;
+	private Mat44 m, n;
+
+	@Setup
+	public void setup() {
+		a = new Vec3(1, 2, 3);
+		b = new Vec3(-3, 0.5f, 2);
+		accumulator = new Vec3();
+		p = Quaternion.createRotation(0.3f, 0, 1, 0);
+		q = Quaternion.createRotation(1.1f, 1, 0, 0);
+		m = Mat44.createFromQuaternion(p);
+		n = Mat44.createTranslation(1, 2, 3);
+	}
+
+	@Benchmark
+	public Vec3 vec3Add() {
+		return a.add(b);
+	}
+
+	/** Adds then takes away, so accumulator doesn't run off to infinity */
+	@Benchmark
+	public Vec3 vec3AddSubLocal() {
+		return accumulator.addLocal(a).subLocal(a);
+	}
+
+	@Benchmark
+	public Vec3 vec3Cross() {
+		return a.cross(b);
+	}
+
+	@Benchmark
+	public float vec3Dot() {
+		return a.dot(b);
+	}
+
+	@Benchmark
+	public float vec3Normalize() {
+		Vec3 v = a.clone();
+		return v.normalize();
+	}
+
+	@Benchmark
+	public Quaternion quaternionMul() {
+		return p.mul(q);
+	}
+
+	@Benchmark
+	public Vec3 quaternionRotate() {
+		return p.mul(a);
+	}
+
+	@Benchmark
+	public Quaternion quaternionNlerp() {
+		return Quaternion.nlerp(p, q, 0.5f);
+	}
+
+	@Benchmark
+	public Mat44 mat44Mul() {
+		return m.mul(n);
+	}
+
+	@Benchmark
+	public Vec3 mat44Transform() {
+		return m.mul(a);
+	}
+
+	@Benchmark
+	public Mat44 mat44FromQuaternion() {
+		return Mat44.createFromQuaternion(q);
+	}
+
+}
@@ -0,0 +1,80 @@
+package engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.tasks.Task;
+import engine.tasks.TaskManager;
+
+/**
+ * One TaskManager.tick() with tasks queued Tasks that never finish, and with tasks timers repeating
+ * every 10 to 1000 milliseconds. A tick is one fixed step at 60Hz.
+ * @author Hamish Rae-Hodgson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskManagerBenchmark {
+
+	private static final long STEP = 1000000000L/60;
+
+	/** A Task that counts how often it runs and never finishes */
+	static final class Counting extends Task<Object> {
+		long runs = 0;
+
+		@Override
+		public boolean isFinished() {
+			return false;
+		}
+
+		@Override
+		public Object execute() {
+			runs++;
+			return null;
+		}
+	}
+
+	@Param({"1000", "100000"})
+	public int tasks;
+
+	private TaskManager queued;
+	private TaskManager timed;
+
+	@Setup
+	public void setup() {
+		queued = new TaskManager();
+		timed = new TaskManager();
+		for(int i = 0; i < tasks; i++) {
+			queued.addTask(new Counting());
+			float period = (10 + i%991)/1000f;
+			timed.scheduleAtFixedRate(period, period, new Counting());
+		}
+	}
+
+	@Benchmark
+	public long tickQueued() {
+		queued.tick(STEP);
+		return queued.getTasksExecuted();
+	}
+
+	@Benchmark
+	public long tickTimers() {
+		timed.tick(STEP);
+		return timed.getTimersFired();
+	}
+
+}
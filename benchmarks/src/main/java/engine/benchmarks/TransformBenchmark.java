@@ -0,0 +1,91 @@
+package engine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.common.Vec3;
+import engine.components.Transform;
+import engine.components.Transform.Space;
+import engine.core.World;
+
+/**
+ * Moving the root of a Transform hierarchy depth levels deep with fanOut children at every level,
+ * which marks the whole tree changed, then reading the world pose of every leaf, which recalculates it.
+ * @author Hamish Rae-Hodgson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+
+	@Param({"1", "4", "8"})
+	public int depth;
+
+	@Param({"1", "4"})
+	public int fanOut;
+
+	private Transform root;
+	private Transform[] leaves;
+	private final float[] pose = new float[7];
+	private final Vec3 axis = Vec3.UP();
+
+	@Setup
+	public void setup() {
+		World world = new World();
+		root = world.createEntity("Root").getTransform();
+		List<Transform> level = new ArrayList<Transform>();
+		level.add(root);
+		for(int d = 0; d < depth; d++) {
+			List<Transform> next = new ArrayList<Transform>();
+			for(Transform parent : level) {
+				for(int f = 0; f < fanOut; f++) {
+					Transform child = world.createEntity("Child").getTransform();
+					child.setParent(parent);
+					child.translate(1, 0, 0, Space.LOCAL);
+					next.add(child);
+				}
+			}
+			level = next;
+		}
+		leaves = level.toArray(new Transform[level.size()]);
+	}
+
+	/** Moves the root and reads every leaf back */
+	@Benchmark
+	public float moveRoot() {
+		root.translate(0.01f, 0, 0, Space.WORLD);
+		root.rotate(0.01f, axis, Space.LOCAL);
+		float sum = 0;
+		for(Transform leaf : leaves) {
+			leaf.worldPose(pose, 0);
+			sum += pose[0];
+		}
+		return sum;
+	}
+
+	/** Moves one leaf and reads it back, the rest of the tree stays clean */
+	@Benchmark
+	public float moveLeaf() {
+		Transform leaf = leaves[0];
+		leaf.translate(0.01f, 0, 0, Space.LOCAL);
+		leaf.worldPose(pose, 0);
+		return pose[0];
+	}
+
+}
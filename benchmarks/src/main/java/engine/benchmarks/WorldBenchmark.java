@@ -0,0 +1,68 @@
+package engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.core.Entity;
+import engine.core.World;
+
+/**
+ * Creating, destroying and looking up Entities in a World already holding entities of them.
+ * @author Hamish Rae-Hodgson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark {
+
+	@Param({"1000", "100000"})
+	public int entities;
+
+	private World world;
+
+	/** The IDs of the Entities, looked up in turn */
+	private int[] ids;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		world = new World();
+		ids = new int[entities];
+		for(int i = 0; i < entities; i++)
+			ids[i] = world.createEntity("Entity" + i).getID();
+	}
+
+	/** One create and one destroy, so the World stays the same size */
+	@Benchmark
+	public boolean createAndDestroy() {
+		Entity entity = world.createEntity("Created");
+		return world.destroy(entity);
+	}
+
+	@Benchmark
+	public Entity getEntity() {
+		int id = ids[next];
+		if(++next == ids.length) next = 0;
+		return world.getEntity(id);
+	}
+
+	@Benchmark
+	public Entity getEntityByName() {
+		return world.getEntity("Entity" + (entities/2));
+	}
+
+}
@@ -0,0 +1,65 @@
+package engine.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+/**
+ * Runs every benchmark once, briefly and in this JVM, so one that throws or was left out of the
+ * generated BenchmarkList fails the build rather than a long benchmark run. The numbers mean nothing.
+ * @author Hamish Rae-Hodgson.
+ */
+public class BenchmarksTest {
+
+	private static final String INCLUDE = "engine\\.benchmarks\\..*";
+
+	@Test
+	public void everyBenchmarkRuns() throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(INCLUDE)
+				.forks(0)
+				.warmupIterations(0)
+				.measurementIterations(1)
+				.measurementTime(TimeValue.milliseconds(10))
+				.param("tasks", "1000")
+				.param("entities", "1000")
+				.param("precision", "5")
+				.param("depth", "4")
+				.param("fanOut", "4")
+				.param("fillers", "8")
+				.shouldFailOnError(true)
+				.verbosity(VerboseMode.SILENT)
+				.build();
+		Collection<RunResult> results = new Runner(options).run();
+
+		Set<String> ran = new TreeSet<String>();
+		for(RunResult result : results) {
+			assertTrue(result.getParams().getBenchmark() + " did nothing", result.getPrimaryResult().getScore() > 0);
+			ran.add(result.getParams().getBenchmark());
+		}
+		Set<String> listed = new TreeSet<String>();
+		for(BenchmarkListEntry entry : BenchmarkList.defaultList().find(OutputFormatFactory.createFormatInstance(System.out, VerboseMode.SILENT),
+				Collections.singletonList(INCLUDE), Collections.<String>emptyList()))
+			listed.add(entry.getUsername());
+		assertFalse(listed.isEmpty());
+		assertEquals(listed, ran);
+	}
+
+}
@@ -11,6 +11,7 @@ import engine.common.Vec3;
 import engine.components.Behaviour;
 import engine.core.Time;
 import engine.input.Keyboard;
+import engine.opengl.Drawable;
 import engine.opengl.GL2Renderer;
 
 public class Cloth extends Behaviour {
@@ -121,18 +122,43 @@ public class Cloth extends Behaviour {
 
 		getOwner().attachComponent(new GL2Renderer() {
 
-
-
 			@Override
 			public void render(GL2 gl) {
+				draw(gl, positions());
+			}
+
+			@Override
+			public Drawable capture() {
+				//The particles keep moving while the frame is drawn, so draw where they are now
+				final Vec3[][] positions = positions();
+				return new Drawable() {
+					@Override
+					public void render(GL2 gl) {
+						draw(gl, positions);
+					}
+				};
+			}
+
+			/** A copy of where every particle is */
+			private Vec3[][] positions() {
+				Vec3[][] positions = new Vec3[ps.length][];
+				for(int row = 0; row < ps.length; row++) {
+					positions[row] = new Vec3[ps[row].length];
+					for(int col = 0; col < ps[row].length; col++)
+						positions[row][col] = new Vec3(ps[row][col].pos);
+				}
+				return positions;
+			}
+
+			private void draw(GL2 gl, Vec3[][] ps) {
 				gl.glColor3f(0, 0, 0.8f);
 				for(int row = 0; row < ps.length; row++) {
 					for(int col = 0; col < ps[row].length; col++) {
 						try {
-							Vec3 a = ps[row][col].pos;
-							Vec3 b = ps[row+1][col].pos;
-							Vec3 c = ps[row+1][col+1].pos;
-							Vec3 d = ps[row][col+1].pos;
+							Vec3 a = ps[row][col];
+							Vec3 b = ps[row+1][col];
+							Vec3 c = ps[row+1][col+1];
+							Vec3 d = ps[row][col+1];
 
 							//tri 1
 							{
@@ -13,22 +13,19 @@ import engine.common.Vec3;
 import engine.components.Behaviour;
 import engine.components.Transform;
 import engine.components.Transform.Space;
-import engine.core.Camera;
-import engine.core.Display;
-import engine.core.Engine;
 import engine.core.Entity;
 import engine.core.GameLoop;
 import engine.core.Time;
 import engine.core.World;
 import engine.input.Keyboard;
 import engine.input.Mouse;
+import engine.opengl.Display;
 import engine.opengl.Material;
 import engine.opengl.Mesh;
 import engine.opengl.MeshFilter;
 import engine.opengl.MeshRenderer;
 import engine.opengl.Texture;
 import engine.tasks.Task;
-import engine.tasks.TaskManager;
 import engine.util.OBJBuilder;
 
 public class Game {
@@ -46,27 +43,31 @@ public class Game {
 
 		Mouse.setGrabbed(true);
 
-		Engine.start();
+		World.current().getEngine().start();
 	}
 
 	private void setup() throws IOException {
+		World world = World.current();
 		Mesh mesh;
 		Material material;
 
+		Display.setSkybox(new OBJBuilder(Resources.getInputStream("skybox.obj")).getMesh(),
+				new Material(new Texture(Resources.getImage("skybox_dusk.png"), true), 1, 1, 1, 1));
+
 //		mesh = new OBJBuilder(Resources.getInputStream("teddy.obj")).getMesh().getScaledInstance(0.25f);
 //		material = new Material(new Texture(Resources.getImage("teddy.png"), true), 1, 1, 1, 1);
 
 		mesh = new OBJBuilder(Resources.getInputStream("link.obj")).getMesh();
 		material = new Material(new Texture(Resources.getImage("link.png"), true), 1, 1, 1, 1);
 
-		Entity cloth = World.createEntity("Cloth");
+		Entity cloth = world.createEntity("Cloth");
 		Cloth c = cloth.attachComponent(Cloth.class);
 		c._width = 2;
 		c._height = 2;
 		c._precision = 10;
 		c.start();
 
-		Entity link = World.createEntity("Player");
+		Entity link = world.createEntity("Player");
 		link.attachComponent(new Behaviour() {
 
 			@Override
@@ -111,14 +112,14 @@ public class Game {
 			}
 		});
 
-//		Camera.getInstance().getTransform().translate(0, 0, -1, Space.LOCAL);
-		Camera.getInstance().getTransform().setParent(link.getTransform());
+//		world.getCamera().getTransform().translate(0, 0, -1, Space.LOCAL);
+		world.getCamera().getTransform().setParent(link.getTransform());
 
 		final Entity flink = link;
 		final Mesh fmesh = mesh;
 		final Material fmet = material;
 
-//		TaskManager.addTask(new Task() {
+//		world.getTaskManager().addTask(new Task() {
 //
 //			float time = 1f;
 //
@@ -131,13 +132,13 @@ public class Game {
 //			public Object execute() {
 //				time -= Time.getDeltaTime();
 //
-//				final Entity teddy = World.createEntity("Teddy" + time);
+//				final Entity teddy = World.current().createEntity("Teddy" + time);
 //				teddy.attachComponent(MeshFilter.class).setMesh(fmesh);
 //				teddy.attachComponent(MeshRenderer.class).setMaterial(fmet);
 //				teddy.getTransform().translate(-20+Mathf.random()*40, 0, -20+Mathf.random()*40, Space.LOCAL);
 //				teddy.getTransform().rotate(Mathf.PI*2*Mathf.random(), Vec3.UP(), Space.LOCAL);
 //
-//				TaskManager.addTask(new Task() {
+//				World.current().getTaskManager().addTask(new Task() {
 //
 //					float time = 0;
 //
@@ -152,7 +153,7 @@ public class Game {
 //					public Object execute() {
 //						time += Time.getDeltaTime();
 //
-//						Entity teddy = World.createEntity("Teddy" + time);
+//						Entity teddy = World.current().createEntity("Teddy" + time);
 //						teddy.attachComponent(MeshFilter.class).setMesh(fmesh);
 //						teddy.attachComponent(MeshRenderer.class).setMaterial(fmet);
 //						teddy.getTransform().setParent(last.getTransform());
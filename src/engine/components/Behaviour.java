@@ -7,11 +7,19 @@ import engine.physics.Collision;
  * The Behaviour class encapsulates updateable behaviours.<br>
  * Example uses:
  *  - Player movement from input devices.
- *  - AI movement along a set path.
+ *  - AI movement along a set path.<br>
+ * Mark a Behaviour ThreadSafe to let the Engine update it in parallel, and give it an UpdateRate
+ * to update it less often than every frame.
  * @author Hamish Rae-Hodgson.
  */
 public abstract class Behaviour extends Component {
 	
+	/** The simulated time in nanoseconds this Behaviour was last updated at */
+	private long lastUpdate = Long.MIN_VALUE;
+	
+	/** The time in seconds between the last update and the one before it */
+	private float deltaTime;
+	
 	/** Perform initialization here. Called once before the script starts. */
 	public abstract void start();
 	
@@ -22,6 +30,31 @@ public abstract class Behaviour extends Component {
 	
 	public void fixedUpdate(){ }
 	
+	/**
+	 * The time in seconds since this Behaviour was last updated. The same as Time.getDeltaTime()
+	 * unless the Behaviour has an UpdateRate.
+	 */
+	public float getDeltaTime() {
+		return deltaTime;
+	}
+	
+	/**
+	 * Called by the Engine just before update() to work out getDeltaTime().
+	 * @param time The simulated time in nanoseconds.
+	 * @param frameDelta The time in seconds since the last frame, used the first time.
+	 */
+	public final void advance(long time, float frameDelta) {
+		deltaTime = lastUpdate == Long.MIN_VALUE || time < lastUpdate ? frameDelta : (time - lastUpdate)*0.000000001f;
+		lastUpdate = time;
+	}
+	
+	@Override
+	protected Behaviour copy() {
+		Behaviour copy = (Behaviour)super.copy();
+		copy.lastUpdate = Long.MIN_VALUE;
+		return copy;
+	}
+	
 	public void onCollisionEnter(Collision collision){ }
 	
 	public void onCollisionExit(Collision collision){ }
@@ -0,0 +1,39 @@
+package engine.components;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import engine.core.Component;
+
+/**
+ * Marks a Behaviour as safe to update on any thread, in parallel with Behaviours on other Entities.<br>
+ * A ThreadSafe Behaviour promises that update() and fixedUpdate() only:<br>
+ * - Touch its own fields and the components of its own Entity.<br>
+ * - Write components of the writes() types, and only on its own Entity.<br>
+ * - Read components of other Entities only if they are of the reads() types.
+ *   A Transform reading its parents, for example in worldPosition(), counts as reading other Entities.<br>
+ * Behaviours of one Entity are always updated in order on a single thread, so they never need to
+ * declare what they read from each other.<br>
+ * Each Behaviour class is updated on its own, after the one before it has finished, so only a class's own
+ * declarations can conflict: a ThreadSafe Behaviour that writes a type it reads from other Entities could read
+ * one half way through being written. Those Behaviours, and Behaviours that aren't ThreadSafe, are updated on
+ * the stepping thread in the same order as always.
+ * @author Hamish Rae-Hodgson.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ThreadSafe {
+
+	/** The component types read from other Entities */
+	Class<? extends Component>[] reads() default {};
+
+	/** The component types written on its own Entity */
+	Class<? extends Component>[] writes() default {};
+
+}
@@ -9,12 +9,13 @@ import java.util.Set;
 import engine.common.Quaternion;
 import engine.common.Vec3;
 import engine.core.Component;
+import engine.core.Poolable;
 
 /**
  * The Transform class represents a position and rotation in 3D space.
  * @author Hamish Rae-Hodgson.
  */
-public class Transform extends Component implements Iterable<Transform> {
+public class Transform extends Component implements Iterable<Transform>, Poolable {
 	
 	public enum Space { LOCAL, WORLD };
 	
@@ -74,6 +75,33 @@ public class Transform extends Component implements Iterable<Transform> {
 		return worldPosition.clone();
 	}
 	
+	/** The square of the distance from this Transform's world position to (x, y, z). Doesn't allocate. */
+	public float distanceSquared(float x, float y, float z) {
+		if(isDirty()) 
+			recalculate();
+		float dx = worldPosition.x() - x;
+		float dy = worldPosition.y() - y;
+		float dz = worldPosition.z() - z;
+		return dx*dx + dy*dy + dz*dz;
+	}
+	
+	/**
+	 * Writes the world position then the world rotation into out, as x, y, z then w, x, y, z. Doesn't allocate.
+	 * @param out The array to write to. Needs 7 floats from offset.
+	 * @param offset Where to start writing.
+	 */
+	public void worldPose(float[] out, int offset) {
+		if(isDirty()) 
+			recalculate();
+		out[offset]   = worldPosition.x();
+		out[offset+1] = worldPosition.y();
+		out[offset+2] = worldPosition.z();
+		out[offset+3] = worldRotation.w();
+		out[offset+4] = worldRotation.x();
+		out[offset+5] = worldRotation.y();
+		out[offset+6] = worldRotation.z();
+	}
+	
 	public Quaternion worldRotation() {
 		if(isDirty()) 
 			recalculate();
@@ -164,6 +192,39 @@ public class Transform extends Component implements Iterable<Transform> {
 		
 	}
 
+	/**
+	 * Puts this Transform back at the origin with no rotation, no parent and no children.
+	 */
+	@Override
+	public void reset() {
+		if(parent != null) {
+			parent.children.remove(this);
+			parent = null;
+		}
+		detachChildren();
+		localPosition.setZero();
+		localRotation.setIdentity();
+		worldPosition.setZero();
+		worldRotation.setIdentity();
+		dirty = true;
+	}
+
+	/**
+	 * Copies the local and world position and rotation. The copy has no parent and no children.
+	 */
+	@Override
+	protected Transform copy() {
+		Transform copy = (Transform)super.copy();
+		copy.parent = null;
+		copy.children = new HashSet<Transform>();
+		copy.localPosition = localPosition.clone();
+		copy.localRotation = localRotation.clone();
+		copy.worldPosition = worldPosition.clone();
+		copy.worldRotation = worldRotation.clone();
+		copy.dirty = true;
+		return copy;
+	}
+
 	/** Tests if this object is dirty - meaning it needs to be recalculated */
 	public boolean isDirty() {
 		return dirty;
@@ -0,0 +1,38 @@
+package engine.components;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lowers how often a Behaviour's update() is called. Without it update() is called every frame.<br>
+ * The Engine staggers the Behaviours of a class evenly across frames, so a class updated every 6 frames has
+ * a sixth of its Behaviours updated each frame rather than all of them every sixth frame. A rate in hz() follows
+ * simulated time, so it holds whatever the frame rate is; if a frame is longer than the interval every Behaviour
+ * is updated once. Use Behaviour.getDeltaTime(), not Time.getDeltaTime(), to get the time since a Behaviour was last updated.<br>
+ * The rate can also drop with distance from the Camera: every distance the Entity is further away than
+ * multiplies the interval by factor(). fixedUpdate() is always called every fixed step.
+ * @author Hamish Rae-Hodgson.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface UpdateRate {
+
+	/** Update every this many frames */
+	int frames() default 1;
+
+	/** Update this many times a second of simulated time. Used instead of frames() when above 0. */
+	float hz() default 0;
+
+	/** Distances from the Camera in ascending order. Past each one the interval is multiplied by factor(). */
+	float[] distances() default {};
+
+	/** How many times longer the interval gets past each distance */
+	int factor() default 2;
+
+}
@@ -0,0 +1,180 @@
+package engine.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An Archetype is the ordered list of component types an Entity has.<br>
+ * Every Entity with exactly the same component layout lives in the same Archetype, packed
+ * densely into Chunks. The order of the types is the order the components were attached in,
+ * so Entity.getComponents() keeps returning components in attachment order.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Archetype {
+
+	private static final int[] NO_COLUMNS = new int[0];
+
+	/** The component type of each column */
+	private final Class<? extends Component>[] types;
+
+	/** The chunks holding this Archetypes Entities. Chunks are filled in order, so only the ones after the first partly full chunk can be empty. */
+	private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+	/** The number of Entities in this Archetype */
+	private int size = 0;
+
+	/** Cache of the columns whose type is assignable to a queried type */
+	private final Map<Class<?>, int[]> matches = new ConcurrentHashMap<Class<?>, int[]>();
+
+	/** The Archetype an Entity moves to when a component of the key type is attached. Guarded by the store. */
+	private final Map<Class<?>, Archetype> attachEdges = new HashMap<Class<?>, Archetype>();
+
+	/** The Archetype an Entity moves to when the component at a column is detached. Guarded by the store. */
+	private final Archetype[] detachEdges;
+
+	/**
+	 * Creates an empty Archetype for the given component types.<br>
+	 * Package-private constructor. Archetypes are created and shared by the ComponentStore.
+	 * @param types The component type of each column in order.
+	 */
+	Archetype(Class<? extends Component>[] types) {
+		this.types = types;
+		this.detachEdges = new Archetype[types.length];
+	}
+
+	/** The number of component slots (columns) an Entity in this Archetype has */
+	public int getColumnCount() {
+		return types.length;
+	}
+
+	/** The component type stored in column */
+	public Class<? extends Component> getType(int column) {
+		return types[column];
+	}
+
+	/** The number of Entities in this Archetype */
+	public int size() {
+		return size;
+	}
+
+	/** The number of Chunks in this Archetype */
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	/** Get the Chunk at index. Chunks are filled in order, trailing ones may be empty. */
+	public Chunk getChunk(int index) {
+		return chunks.get(index);
+	}
+
+	/**
+	 * <b>O(1)</b> (amortized) - Get the columns whose component type is the given type or a subtype of it.
+	 * @param type The type of component.
+	 * @return The matching columns in attachment order. An empty array if there are none. DO NOT MODIFY.
+	 */
+	public int[] columnsOf(Class<?> type) {
+		int[] columns = matches.get(type);
+		if(columns == null) {
+			int count = 0;
+			int[] found = new int[types.length];
+			for(int column = 0; column < types.length; column++)
+				if(type.isAssignableFrom(types[column]))
+					found[count++] = column;
+			columns = count == 0 ? NO_COLUMNS : Arrays.copyOf(found, count);
+			matches.put(type, columns);
+		}
+		return columns;
+	}
+
+	/** Get the component stored in column for the Entity at index */
+	Component get(int index, int column) {
+		return chunks.get(index >> Chunk.SHIFT).get(column, index & Chunk.MASK);
+	}
+
+	/** Copies the components of the Entity at index into out */
+	Component[] copyRow(int index, Component[] out) {
+		return chunks.get(index >> Chunk.SHIFT).copyRow(index & Chunk.MASK, out);
+	}
+
+	/**
+	 * Adds the Entity and its components to the end of this Archetype.
+	 * @return The index the Entity was stored at.
+	 */
+	int add(Entity entity, Component[] components) {
+		int index = size++;
+		if((index >> Chunk.SHIFT) == chunks.size())
+			chunks.add(new Chunk(this));
+		chunks.get(index >> Chunk.SHIFT).set(index & Chunk.MASK, entity, components);
+		entity.archetype = this;
+		entity.index = index;
+		return index;
+	}
+
+	/** Adds enough Chunks up front to hold count more Entities */
+	void reserve(int count) {
+		int needed = (size + count + Chunk.MASK) >> Chunk.SHIFT;
+		while(chunks.size() < needed)
+			chunks.add(new Chunk(this));
+	}
+
+	/**
+	 * Removes the Entity at index by moving the last Entity of this Archetype into its place.
+	 * Keeps every chunk before the last occupied one full.
+	 */
+	void remove(int index) {
+		int last = size - 1;
+		Chunk tail = chunks.get(last >> Chunk.SHIFT);
+		if(index != last) {
+			Entity moved = tail.getEntity(last & Chunk.MASK);
+			chunks.get(index >> Chunk.SHIFT).copyFrom(index & Chunk.MASK, tail, last & Chunk.MASK);
+			moved.index = index;
+		}
+		tail.removeLast();
+		if(tail.size() == 0 && (last >> Chunk.SHIFT) == chunks.size()-1) //keep chunks made by reserve()
+			chunks.remove(chunks.size()-1);
+		size--;
+	}
+
+	/** Gets the column holding component for the Entity at index, or -1 if it isn't there */
+	int columnOf(int index, Component component) {
+		int[] columns = columnsOf(component.getClass());
+		for(int column : columns)
+			if(get(index, column) == component)
+				return column;
+		return -1;
+	}
+
+	/** The component types of this Archetype. DO NOT MODIFY. */
+	Class<? extends Component>[] getTypes() {
+		return types;
+	}
+
+	Archetype getAttachEdge(Class<?> type) {
+		return attachEdges.get(type);
+	}
+
+	void setAttachEdge(Class<?> type, Archetype archetype) {
+		attachEdges.put(type, archetype);
+	}
+
+	Archetype getDetachEdge(int column) {
+		return detachEdges[column];
+	}
+
+	void setDetachEdge(int column, Archetype archetype) {
+		detachEdges[column] = archetype;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder names = new StringBuilder();
+		for(Class<? extends Component> type : types)
+			names.append(names.length() == 0 ? "" : ", ").append(type.getSimpleName());
+		return "Archetype [types=(" + names + "), size=" + size + "]";
+	}
+
+}
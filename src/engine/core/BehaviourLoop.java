@@ -0,0 +1,51 @@
+package engine.core;
+
+import engine.components.Behaviour;
+
+/**
+ * The loop that updates every Behaviour of one concrete class.<br>
+ * The BehaviourScheduler gives each class its own hidden copy of this class, so that
+ * the update() call below only ever sees one class and the JIT can inline it. Keep it small and
+ * self-contained - it is copied byte for byte.
+ * @author Hamish Rae-Hodgson.
+ */
+final class BehaviourLoop implements BehaviourScheduler.Loop {
+
+	/** Package-private constructor. Instantiated by the BehaviourScheduler. */
+	BehaviourLoop() { }
+
+	@Override
+	public int run(Chunk[] chunks, int[][] columns, int from, int to, boolean fixed, BehaviourScheduler.Tier tier) {
+		int calls = 0;
+		for(int i = from; i < to; i++) {
+			Chunk chunk = chunks[i];
+			int size = chunk.size();
+			if(fixed) {
+				for(int row = 0; row < size; row++)
+					for(int column : columns[i])
+						((Behaviour)chunk.get(column, row)).fixedUpdate();
+				calls += size*columns[i].length;
+				continue;
+			}
+			int end = tier.start + tier.span;
+			for(int row = tier.start; row < size && row < end; row++)
+				calls += update(chunk, columns[i], i, row, tier);
+			for(int row = 0; row < size && row < end - Chunk.CAPACITY; row++)
+				calls += update(chunk, columns[i], i, row, tier);
+		}
+		return calls;
+	}
+
+	/** Updates the Behaviours in columns at row of the i-th Chunk if tier says they are due. Returns the number of calls. */
+	private static int update(Chunk chunk, int[] columns, int i, int row, BehaviourScheduler.Tier tier) {
+		if(tier.lod && !tier.due(i, row))
+			return 0;
+		for(int column : columns) {
+			Behaviour behaviour = (Behaviour)chunk.get(column, row);
+			behaviour.advance(tier.time, tier.delta);
+			behaviour.update();
+		}
+		return columns.length;
+	}
+
+}
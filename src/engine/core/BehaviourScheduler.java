@@ -0,0 +1,510 @@
+package engine.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.common.Vec3;
+import engine.components.Behaviour;
+import engine.components.ThreadSafe;
+import engine.components.Transform;
+import engine.components.UpdateRate;
+import engine.profiling.Allocations;
+import engine.profiling.CostAccounting;
+
+/**
+ * Updates the Behaviours of a World a concrete class at a time, splitting classes across a ForkJoinPool where it is safe to.<br>
+ * Every Behaviour class gets a Bucket with its own copy of the BehaviourLoop, so each loop only ever calls one
+ * class's update() and stays monomorphic. Buckets run in execution order (see Engine.setExecutionOrder()), then
+ * in the order their classes were first seen.<br>
+ * A Bucket whose class is ThreadSafe, and doesn't write a type it reads from other Entities, is
+ * updated in parallel a Chunk at a time. Every other Bucket is updated on the stepping thread. Each Entity has a
+ * Bucket's Behaviours updated by a single thread, so ThreadSafe Behaviours get the same results as a serial update.<br>
+ * A Bucket whose class has an UpdateRate only updates the Behaviours its Tier says are due each frame.
+ * A Bucket whose class was given to a FixedRateGroup has fixedUpdate() called by that group instead of the fixed steps.
+ * @author Hamish Rae-Hodgson.
+ */
+final class BehaviourScheduler {
+
+	/** Runs update() or fixedUpdate() on the Behaviours in columns of chunks from..to, update() only when tier says they are due. Returns the number of calls. */
+	interface Loop {
+		int run(Chunk[] chunks, int[][] columns, int from, int to, boolean fixed, Tier tier);
+	}
+
+	/** The bytes of BehaviourLoop, copied for each class */
+	private static final byte[] template = readTemplate();
+
+	/** The World whose Behaviours are updated. Bound as current on the worker threads. */
+	private final World world;
+
+	/** What each Behaviour class costs, timed a Bucket at a time while it is enabled */
+	private final CostAccounting costs;
+
+	/** Every Entity with a Behaviour */
+	private final Query query;
+
+	/** The pool parallel Chunks are updated on, or null to update everything on the stepping thread */
+	private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/** The execution order of each Behaviour class that has been given one. The rest are 0. */
+	private final Map<Class<?>, Integer> order = new ConcurrentHashMap<Class<?>, Integer>();
+
+	/** The loop of each Behaviour class, kept across plans so copies are only made once */
+	private final Map<Class<?>, Loop> loops = new ConcurrentHashMap<Class<?>, Loop>();
+
+	/** The Tier of each Behaviour class, kept across plans so the classes stay staggered */
+	private final Map<Class<?>, Tier> tiers = new ConcurrentHashMap<Class<?>, Tier>();
+
+	/** The FixedRateGroup that calls fixedUpdate() on each Behaviour class given to one, and its subclasses */
+	private final Map<Class<?>, FixedRateGroup> groups = new ConcurrentHashMap<Class<?>, FixedRateGroup>();
+
+	/** The number of the query's Archetypes the plan was made for, -1 to plan again */
+	private volatile int planned = -1;
+
+	/** A Bucket for each Behaviour class, in the order they run */
+	private Bucket[] buckets = new Bucket[0];
+
+	/** The number of times update() has been called, used to stagger Behaviours with an UpdateRate in frames */
+	private long frame = 0;
+
+	/** Package-private constructor. The Engine owns the scheduler. */
+	BehaviourScheduler(World world, CostAccounting costs) {
+		this.world = world;
+		this.costs = costs;
+		this.query = world.query(Behaviour.class);
+	}
+
+	/** The pool parallel Chunks are updated on, or null */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/** Sets the pool parallel Chunks are updated on, or null to update everything on the stepping thread */
+	void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/** Sets the execution order of type. Lower runs first. */
+	void setExecutionOrder(Class<? extends Behaviour> type, int order) {
+		this.order.put(type, order);
+		this.planned = -1;
+	}
+
+	/** The execution order of type. 0 unless it has been set. */
+	int getExecutionOrder(Class<? extends Behaviour> type) {
+		Integer order = this.order.get(type);
+		return order == null ? 0 : order;
+	}
+
+	/** Has group call fixedUpdate() on type and its subclasses instead of the fixed steps */
+	void setFixedRateGroup(Class<? extends Behaviour> type, FixedRateGroup group) {
+		groups.put(type, group);
+		planned = -1;
+	}
+
+	/** Gives the fixedUpdate() of type back to the fixed steps if group has it. Returns true if it did. */
+	boolean removeFixedRateGroup(Class<? extends Behaviour> type, FixedRateGroup group) {
+		boolean removed = groups.remove(type, group);
+		planned = -1;
+		return removed;
+	}
+
+	/** Gives the fixedUpdate() of every class in group back to the fixed steps */
+	void removeFixedRateGroup(FixedRateGroup group) {
+		groups.values().removeAll(Collections.singleton(group));
+		planned = -1;
+	}
+
+	/** Calls update() on every Behaviour that is due. Returns the number updated. */
+	int update() {
+		return run(false, null);
+	}
+
+	/** Calls fixedUpdate() on every Behaviour not in a FixedRateGroup. Returns the number updated. */
+	int fixedUpdate() {
+		return run(true, null);
+	}
+
+	/** Calls fixedUpdate() on every Behaviour in group. Returns the number updated. */
+	int fixedUpdate(FixedRateGroup group) {
+		return run(true, group);
+	}
+
+	private int run(boolean fixed, FixedRateGroup group) {
+		if(planned != query.getArchetypeCount())
+			plan();
+
+		if(!fixed)
+			prepareTiers();
+
+		ForkJoinPool pool = this.pool;
+		boolean timed = costs.isEnabled();
+		boolean counted = costs.isAllocationTracking();
+		int total = 0;
+		for(Bucket bucket : buckets) {
+			if(fixed && bucket.group != group)
+				continue;
+			bucket.gather();
+			if(!fixed && bucket.tier.lod)
+				bucket.tier.measure(bucket.chunks, bucket.count);
+			long bytes = counted ? Allocations.currentThread() : 0;
+			long start = timed ? System.nanoTime() : 0;
+			int calls;
+			if(pool == null || !bucket.parallel || bucket.count < 2) {
+				calls = bucket.loop.run(bucket.chunks, bucket.columns, 0, bucket.count, fixed, bucket.tier);
+				if(counted) bytes = Allocations.currentThread() - bytes;
+			} else {
+				calls = pool.invoke(new Batch(bucket, 0, bucket.count, fixed, counted));
+				if(counted) bytes = bucket.allocated.getAndSet(0); //each Batch counts its own thread, which may be this one
+			}
+			if(timed)
+				costs.record(bucket.type, fixed ? CostAccounting.Kind.FIXED_UPDATE : CostAccounting.Kind.UPDATE, System.nanoTime() - start, calls, bytes);
+			Arrays.fill(bucket.chunks, 0, bucket.count, null);
+			total += calls;
+		}
+		return total;
+	}
+
+	/** Moves every Tier on to the next frame */
+	private void prepareTiers() {
+		Clock clock = world.getClock();
+		long time = clock.getTimeNanos();
+		float delta = clock.getDeltaTime();
+		Vec3 camera = null;
+		for(Bucket bucket : buckets) {
+			Tier tier = bucket.tier;
+			if(tier.lod && camera == null)
+				camera = world.getCamera().getTransform().worldPosition();
+			tier.next(frame, time, delta, camera);
+		}
+		frame++;
+	}
+
+	/** Makes a Bucket for every Behaviour class in the query's Archetypes and puts them in the order they run */
+	private void plan() {
+		int count = query.getArchetypeCount();
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for(int a = 0; a < count; a++) {
+			Archetype archetype = query.getArchetype(a);
+			for(int column : archetype.columnsOf(Behaviour.class)) {
+				Class<? extends Component> type = archetype.getType(column);
+				Bucket bucket = find(buckets, type);
+				if(bucket == null) {
+					Loop loop = loops.get(type);
+					if(loop == null) {
+						loop = loopFor(type);
+						loops.put(type, loop);
+					}
+					Tier tier = tiers.get(type);
+					if(tier == null) {
+						tier = new Tier(type.getAnnotation(UpdateRate.class));
+						tiers.put(type, tier);
+					}
+					bucket = new Bucket(type, loop, getExecutionOrder(type.asSubclass(Behaviour.class)), tier);
+					bucket.group = groupOf(type);
+					buckets.add(bucket);
+				}
+				bucket.add(archetype, column);
+			}
+		}
+
+		//Buckets run one at a time, so a class can only conflict with itself
+		for(Bucket bucket : buckets) {
+			ThreadSafe declared = bucket.type.getAnnotation(ThreadSafe.class);
+			bucket.parallel = declared != null && !overlaps(declared.writes(), declared.reads());
+		}
+
+		//Stable, so classes with the same execution order keep the order they were first seen in
+		Collections.sort(buckets, new Comparator<Bucket>() {
+			@Override
+			public int compare(Bucket a, Bucket b) {
+				return a.order < b.order ? -1 : a.order == b.order ? 0 : 1;
+			}
+		});
+		this.buckets = buckets.toArray(new Bucket[buckets.size()]);
+		this.planned = count;
+	}
+
+	/** The FixedRateGroup given type or the closest superclass of it, or null */
+	private FixedRateGroup groupOf(Class<?> type) {
+		for(Class<?> c = type; c != null; c = c.getSuperclass()) {
+			FixedRateGroup group = groups.get(c);
+			if(group != null) return group;
+		}
+		return null;
+	}
+
+	/** The Bucket in buckets for type, or null */
+	private static Bucket find(List<Bucket> buckets, Class<?> type) {
+		for(Bucket bucket : buckets)
+			if(bucket.type == type)
+				return bucket;
+		return null;
+	}
+
+	/** Tests whether any type in a is, extends, or is extended by any type in b */
+	private static boolean overlaps(Class<?>[] a, Class<?>[] b) {
+		for(Class<?> x : a)
+			for(Class<?> y : b)
+				if(x.isAssignableFrom(y) || y.isAssignableFrom(x))
+					return true;
+		return false;
+	}
+
+	/** Defines a hidden copy of the BehaviourLoop for type to call on its own */
+	private static Loop loopFor(Class<?> type) {
+		try {
+			Class<?> loop = MethodHandles.lookup().defineHiddenClass(template, true).lookupClass();
+			return (Loop)loop.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed giving " + type.getName() + " its own update loop", e);
+		}
+	}
+
+	/** Reads the bytes of BehaviourLoop so it can be copied */
+	private static byte[] readTemplate() {
+		try (InputStream in = BehaviourLoop.class.getResourceAsStream("BehaviourLoop.class")) {
+			if(in == null)
+				throw new IllegalStateException("BehaviourLoop.class isn't on the class path");
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for(int read; (read = in.read(buffer)) > 0; )
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed reading BehaviourLoop.class", e);
+		}
+	}
+
+	/** Every Chunk column holding a Behaviour of one concrete class */
+	private static final class Bucket {
+		private final Class<?> type;
+		private final Loop loop;
+		private final int order;
+		private final Tier tier;
+		private boolean parallel;
+
+		/** The group that calls fixedUpdate(), or null for the fixed steps */
+		private FixedRateGroup group;
+
+		/** The bytes allocated by the Batches of a parallel update, while allocations are counted */
+		private final AtomicLong allocated = new AtomicLong();
+
+		/** The Archetypes holding the class, and the columns of each it is in */
+		private final List<Archetype> archetypes = new ArrayList<Archetype>();
+		private final List<int[]> archetypeColumns = new ArrayList<int[]>();
+
+		/** The non-empty Chunks of archetypes for this update, and the columns to update in each */
+		private Chunk[] chunks = new Chunk[16];
+		private int[][] columns = new int[16][];
+		private int count = 0;
+
+		Bucket(Class<?> type, Loop loop, int order, Tier tier) {
+			this.type = type;
+			this.loop = loop;
+			this.order = order;
+			this.tier = tier;
+		}
+
+		/** Adds column of archetype to the Bucket */
+		void add(Archetype archetype, int column) {
+			int index = archetypes.indexOf(archetype);
+			if(index < 0) {
+				archetypes.add(archetype);
+				archetypeColumns.add(new int[] { column });
+			} else {
+				int[] columns = archetypeColumns.get(index);
+				columns = Arrays.copyOf(columns, columns.length+1);
+				columns[columns.length-1] = column;
+				archetypeColumns.set(index, columns);
+			}
+		}
+
+		/** Collects the non-empty Chunks of the Archetypes */
+		void gather() {
+			count = 0;
+			for(int a = 0; a < archetypes.size(); a++) {
+				Archetype archetype = archetypes.get(a);
+				for(int c = 0; c < archetype.getChunkCount(); c++) {
+					Chunk chunk = archetype.getChunk(c);
+					if(chunk.size() == 0) continue;
+					if(count == chunks.length) {
+						chunks = Arrays.copyOf(chunks, count*2);
+						columns = Arrays.copyOf(columns, count*2);
+					}
+					chunks[count] = chunk;
+					columns[count] = archetypeColumns.get(a);
+					count++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decides which Behaviours of a class are due an update this frame, from its UpdateRate.<br>
+	 * The rows of a Chunk take turns over the interval: the interval is split into Chunk.CAPACITY slots, one per
+	 * row, and a row is due on the frame its slot is passed. That spreads the class evenly over the frames.
+	 * A rate in frames counts frames; a rate in hz() counts the simulated time of the Clock, so it holds
+	 * whatever the frame rate is. If a frame passes every slot, every row is due once.<br>
+	 * Past each LOD distance only every factor-th of a row's turns is used. The distances are measured on
+	 * the stepping thread before the update is split up, because reading a Transform's world position may recalculate it.
+	 */
+	static final class Tier {
+
+		/** The number of slots in an interval, one per row of a Chunk */
+		private static final int SLOTS = Chunk.CAPACITY;
+
+		/** The frames in an interval, when the rate is in frames */
+		private final int frames;
+
+		/** The simulated nanoseconds in a slot, or 0 when the rate is in frames */
+		private final long slotNanos;
+
+		/** True if the interval grows with distance from the Camera */
+		final boolean lod;
+
+		/** The squares of the LOD distances, ascending */
+		private final float[] distances;
+
+		private final int factor;
+
+		/** The last slot passed, Long.MIN_VALUE before the first frame */
+		private long slot = Long.MIN_VALUE;
+
+		/** The first row of every Chunk that is due this frame, and how many rows from there are, wrapping past the end */
+		int start;
+		int span;
+
+		/** The simulated time of the frame being updated in nanoseconds and its delta time in seconds */
+		long time;
+		float delta;
+
+		/** Where the Camera is this frame */
+		private float x, y, z;
+
+		/** The LOD band of each due row this frame, by Chunk index * Chunk.CAPACITY + row */
+		private byte[] bands = new byte[0];
+
+		Tier(UpdateRate rate) {
+			if(rate == null) {
+				frames = 1;
+				slotNanos = 0;
+				distances = new float[0];
+				factor = 1;
+			} else {
+				frames = Math.max(1, rate.frames());
+				slotNanos = rate.hz() > 0 ? Math.max(1, Math.round(1000000000d / rate.hz() / SLOTS)) : 0;
+				distances = rate.distances().clone();
+				Arrays.sort(distances);
+				for(int i = 0; i < distances.length; i++)
+					distances[i] *= distances[i];
+				factor = Math.max(1, rate.factor());
+			}
+			lod = distances.length > 0 && factor > 1;
+		}
+
+		/** Moves on to the given frame and works out which rows are due */
+		void next(long frame, long time, float delta, Vec3 camera) {
+			long now = slotNanos > 0 ? time / slotNanos : frame * SLOTS / frames;
+			if(slot == Long.MIN_VALUE || now < slot || now - slot >= SLOTS) {
+				start = 0;
+				span = SLOTS;
+			} else {
+				start = (int)((slot + 1) & (SLOTS - 1));
+				span = (int)(now - slot);
+			}
+			slot = now;
+			this.time = time;
+			this.delta = delta;
+			if(camera != null) {
+				x = camera.x();
+				y = camera.y();
+				z = camera.z();
+			}
+		}
+
+		/** Finds the LOD band of every due row of chunks. Only call on the stepping thread. */
+		void measure(Chunk[] chunks, int count) {
+			if(bands.length < count*SLOTS)
+				bands = new byte[count*SLOTS*2];
+			int end = start + span;
+			for(int i = 0; i < count; i++) {
+				Chunk chunk = chunks[i];
+				int size = chunk.size();
+				for(int row = start; row < size && row < end; row++)
+					bands[i*SLOTS + row] = band(chunk.getEntity(row).getTransform());
+				for(int row = 0; row < size && row < end - SLOTS; row++)
+					bands[i*SLOTS + row] = band(chunk.getEntity(row).getTransform());
+			}
+		}
+
+		/** The number of LOD distances transform is further away than */
+		private byte band(Transform transform) {
+			float distance = transform.distanceSquared(x, y, z);
+			byte band = 0;
+			for(float limit : distances)
+				if(distance > limit) band++;
+			return band;
+		}
+
+		/** Tests whether the Behaviours at row of the chunk-th Chunk, which is due before LOD, are due once LOD is applied */
+		boolean due(int chunk, int row) {
+			int band = bands[chunk*SLOTS + row];
+			if(band == 0) return true;
+			long multiple = 1;
+			for(int i = 0; i < band; i++)
+				multiple *= factor;
+			long turn = Math.floorDiv(slot - ((slot - row) & (SLOTS - 1)), SLOTS);
+			return Math.floorMod(turn + chunk, multiple) == 0;
+		}
+	}
+
+	/** Updates a range of a Bucket's Chunks, splitting it in half until a single Chunk is left. Returns the number of calls. */
+	private final class Batch extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final Bucket bucket;
+		private final int from;
+		private final int to;
+		private final boolean fixed;
+		private final boolean counted;
+
+		Batch(Bucket bucket, int from, int to, boolean fixed, boolean counted) {
+			this.bucket = bucket;
+			this.from = from;
+			this.to = to;
+			this.fixed = fixed;
+			this.counted = counted;
+		}
+
+		@Override
+		protected Integer compute() {
+			if(to - from > 1) {
+				int middle = (from + to) >>> 1;
+				Batch left = new Batch(bucket, from, middle, fixed, counted), right = new Batch(bucket, middle, to, fixed, counted);
+				invokeAll(left, right);
+				return left.join() + right.join();
+			}
+			World previous = World.bind(world);
+			long bytes = counted ? Allocations.currentThread() : 0;
+			try {
+				return bucket.loop.run(bucket.chunks, bucket.columns, from, to, fixed, bucket.tier);
+			} finally {
+				if(counted) bucket.allocated.addAndGet(Allocations.currentThread() - bytes);
+				World.bind(previous);
+			}
+		}
+	}
+
+}
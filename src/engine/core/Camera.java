@@ -1,17 +1,20 @@
 package engine.core;
 
 import engine.common.Mat44;
+import engine.common.Quaternion;
 import engine.common.Vec3;
 import engine.components.Transform;
 
 public class Camera {
 	
-	private static Camera instance = new Camera();
-	
 	private Transform transform = new Transform();
 	
+	/** Package-private constructor. Every World owns one. */
+	Camera() { }
+	
+	/** Gets the Camera of the current World, see World.current() */
 	public static Camera getInstance() {
-		return instance;
+		return World.current().getCamera();
 	}
 	
 	public Transform getTransform() {
@@ -19,10 +22,15 @@ public class Camera {
 	}
 	
 	public Mat44 getMatrix() {
-		Vec3 xAxis = transform.along();
-		Vec3 yAxis = transform.up();
-		Vec3 zAxis = transform.forward();
-		Vec3 trans = transform.worldPosition();
+		return getMatrix(transform.worldPosition(), transform.worldRotation());
+	}
+	
+	/** The view matrix of a Camera at position with the given rotation */
+	public static Mat44 getMatrix(Vec3 position, Quaternion rotation) {
+		Vec3 xAxis = rotation.mul(Vec3.RIGHT());
+		Vec3 yAxis = rotation.mul(Vec3.UP());
+		Vec3 zAxis = rotation.mul(Vec3.FORWARD());
+		Vec3 trans = position;
 		
 		//yaw 180
 		zAxis.negateLocal();
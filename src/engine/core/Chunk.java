@@ -0,0 +1,114 @@
+package engine.core;
+
+import java.lang.reflect.Array;
+
+/**
+ * A Chunk is a fixed size block of Entities that all share the same Archetype.<br>
+ * Every component slot of the Archetype is stored in its own array (a column) so walking
+ * one kind of component walks contiguous memory instead of chasing per Entity sets.<br>
+ * Only the first size() elements of an Entity array or a column are valid.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Chunk {
+
+	/** log2 of the number of Entities a single Chunk can hold */
+	static final int SHIFT = 7;
+
+	/** The number of Entities a single Chunk can hold */
+	public static final int CAPACITY = 1 << SHIFT;
+
+	/** Mask to turn an index into an Archetype into a row in a Chunk */
+	static final int MASK = CAPACITY - 1;
+
+	private final Archetype archetype;
+
+	private final Entity[] entities = new Entity[CAPACITY];
+
+	/** One array per component slot of the Archetype. Each array has the component type of its slot. */
+	private final Component[][] columns;
+
+	private int size = 0;
+
+	/**
+	 * Creates an empty Chunk laid out for the given Archetype.<br>
+	 * Package-private constructor.
+	 * @param archetype The Archetype this Chunk stores Entities for.
+	 */
+	Chunk(Archetype archetype) {
+		this.archetype = archetype;
+		this.columns = new Component[archetype.getColumnCount()][];
+		for(int column = 0; column < columns.length; column++)
+			columns[column] = (Component[])Array.newInstance(archetype.getType(column), CAPACITY);
+	}
+
+	/** Get the Archetype shared by every Entity in this Chunk */
+	public Archetype getArchetype() {
+		return archetype;
+	}
+
+	/** The number of Entities currently in this Chunk */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the Entity stored at row.
+	 * @param row The row, 0 &lt;= row &lt; size().
+	 * @return The Entity.
+	 */
+	public Entity getEntity(int row) {
+		return entities[row];
+	}
+
+	/**
+	 * Get the component stored in column at row.
+	 * @param column The component slot of the Archetype.
+	 * @param row The row, 0 &lt;= row &lt; size().
+	 * @return The Component.
+	 */
+	public Component get(int column, int row) {
+		return columns[column][row];
+	}
+
+	/**
+	 * Gets the backing array of a column. The array is of the exact component type of the slot
+	 * so it can be cast to that type once and walked in a tight loop.<br>
+	 * Only the first size() elements are valid. DO NOT MODIFY.
+	 * @param column The component slot of the Archetype.
+	 * @return The backing array.
+	 */
+	public Component[] getColumn(int column) {
+		return columns[column];
+	}
+
+	/** Writes the Entity and its components into row. Grows size if row is the next free row. */
+	void set(int row, Entity entity, Component[] components) {
+		entities[row] = entity;
+		for(int column = 0; column < columns.length; column++)
+			columns[column][row] = components[column];
+		if(row == size) size++;
+	}
+
+	/** Copies the Entity and components stored at row into the given array */
+	Component[] copyRow(int row, Component[] out) {
+		for(int column = 0; column < columns.length; column++)
+			out[column] = columns[column][row];
+		return out;
+	}
+
+	/** Overwrites row with the Entity and components stored in source at sourceRow */
+	void copyFrom(int row, Chunk source, int sourceRow) {
+		entities[row] = source.entities[sourceRow];
+		for(int column = 0; column < columns.length; column++)
+			columns[column][row] = source.columns[column][sourceRow];
+	}
+
+	/** Clears the last row so it no longer references anything */
+	void removeLast() {
+		size--;
+		entities[size] = null;
+		for(int column = 0; column < columns.length; column++)
+			columns[column][size] = null;
+	}
+
+}
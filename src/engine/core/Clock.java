@@ -0,0 +1,192 @@
+package engine.core;
+
+/**
+ * The simulated time of a World. Advanced by the World's Engine each step.<br>
+ * Behaviours usually read it through Time, which reads the Clock of the current World.<br>
+ * Every time is kept in nanoseconds and only turned into seconds when asked for, so nothing
+ * drifts however long the game runs.<br>
+ * The Engine calls fixedTick() once for every fixed step of time that has passed, but never more
+ * than getMaxCatchUp() times in one step. What is left over after that is either dropped, so the
+ * fixed steps skip ahead to the present, or, with dilation on, never simulated in the first place,
+ * so the whole game slows down instead of fixed steps being lost.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Clock {
+
+	/** Time simulated */
+	private long time = 0;
+	private long lastTime = 0;
+
+	/** Fixed time simulated */
+	private long fixedTime = 0;
+	private volatile long fixedDeltaTime = 1000000000L/120;
+
+	/** The most fixed steps run in one step */
+	private volatile int maxCatchUp = 8;
+
+	/** True to slow time down rather than drop fixed steps */
+	private volatile boolean dilation = false;
+
+	/** The group being stepped right now, read instead of the fixed time above. Null outside of one. */
+	private FixedRateGroup stepping;
+
+	//statistics
+	private volatile long droppedSteps = 0;
+	private volatile long dilatedNanos = 0;
+
+	/** Package-private constructor. Every World owns one. */
+	Clock() { }
+
+	/** Reset the Clock */
+	void reset() {
+		time = lastTime = fixedTime = 0;
+	}
+
+	/** The delta time to advance the simulation */
+	public float getDeltaTime() {
+		return nanosToSeconds(time - lastTime);
+	}
+
+	/** The unchanging delta time to advance simulation inside fixedTick(). Inside a FixedRateGroup it is the group's. */
+	public float getFixedDeltaTime() {
+		return nanosToSeconds(getFixedDeltaNanos());
+	}
+
+	/** The time in seconds since the start of the game */
+	public float getTime() {
+		return nanosToSeconds(time);
+	}
+
+	/** The time in seconds that has been passed in fixedTick updates. Inside a FixedRateGroup it is the group's. */
+	public float getFixedTime() {
+		return nanosToSeconds(getFixedTimeNanos());
+	}
+
+	/** The delta time to advance the simulation in nanoseconds */
+	public long getDeltaNanos() {
+		return time - lastTime;
+	}
+
+	/** The unchanging delta time of a fixed step in nanoseconds. Inside a FixedRateGroup it is the group's. */
+	public long getFixedDeltaNanos() {
+		FixedRateGroup stepping = this.stepping;
+		return stepping == null ? fixedDeltaTime : stepping.getFixedDeltaNanos();
+	}
+
+	/** The time in nanoseconds since the start of the game */
+	public long getTimeNanos() {
+		return time;
+	}
+
+	/** The time in nanoseconds that has been passed in fixed steps. Inside a FixedRateGroup it is the group's. */
+	public long getFixedTimeNanos() {
+		FixedRateGroup stepping = this.stepping;
+		return stepping == null ? fixedTime : stepping.getFixedTimeNanos();
+	}
+
+	/**
+	 * Sets how many fixed steps are simulated a second. Defaults to 120.
+	 * @param hz The fixed steps a second, more than 0.
+	 */
+	public void setFixedRate(int hz) {
+		if(hz <= 0)
+			throw new IllegalArgumentException("The fixed rate must be more than 0. hz=" + hz);
+		fixedDeltaTime = 1000000000L/hz;
+	}
+
+	/**
+	 * Sets the most fixed steps the Engine runs in one step to catch up. Defaults to 8.
+	 * @param steps At least 1.
+	 */
+	public void setMaxCatchUp(int steps) {
+		if(steps < 1)
+			throw new IllegalArgumentException("At least one fixed step must be allowed. steps=" + steps);
+		maxCatchUp = steps;
+	}
+
+	/** The most fixed steps the Engine runs in one step to catch up */
+	public int getMaxCatchUp() {
+		return maxCatchUp;
+	}
+
+	/**
+	 * Turns dilation on or off. It is off by default.<br>
+	 * With it off, fixed steps beyond getMaxCatchUp() are dropped. With it on, time is held back so
+	 * there are never more than that to run, and the game runs slower than real time while overloaded.
+	 * @param dilation true to dilate.
+	 */
+	public void setDilation(boolean dilation) {
+		this.dilation = dilation;
+	}
+
+	/** Returns true if time is dilated instead of fixed steps being dropped. See setDilation(). */
+	public boolean isDilation() {
+		return dilation;
+	}
+
+	/** The number of fixed steps that have been dropped to catch up */
+	public long getDroppedSteps() {
+		return droppedSteps;
+	}
+
+	/** The nanoseconds of real time that dilation has left unsimulated */
+	public long getDilatedNanos() {
+		return dilatedNanos;
+	}
+
+	/** Progress time by nanos, held back so there are no more than getMaxCatchUp() fixed steps due if dilating */
+	void progressTime(long nanos) {
+		if(dilation) {
+			long most = maxCatchUp*fixedDeltaTime - (time - fixedTime);
+			if(nanos > most) {
+				long held = nanos - Math.max(most, 0);
+				dilatedNanos += held;
+				nanos -= held;
+			}
+		}
+		lastTime = time;
+		time = time + nanos;
+	}
+
+	/**
+	 * Works out how many fixed steps to run now. Drops any beyond getMaxCatchUp() by moving the fixed time past them.
+	 * @return The fixed steps to run, each one by calling progressFixedTime() then fixedTick().
+	 */
+	int fixedStepsDue() {
+		int steps = stepsDue(time - fixedTime, fixedDeltaTime);
+		int max = maxCatchUp;
+		if(steps > max) {
+			fixedTime += (steps - max)*fixedDeltaTime;
+			droppedSteps += steps - max;
+			steps = max;
+		}
+		return steps;
+	}
+
+	/** Progress fixedTime by fixedDeltaTime */
+	void progressFixedTime() {
+		fixedTime = fixedTime + fixedDeltaTime;
+	}
+
+	/** Makes getFixedDeltaTime() and getFixedTime() read group, or the Clock's own again if null */
+	void setStepping(FixedRateGroup group) {
+		stepping = group;
+	}
+
+	/** The fixed steps of length step needed for a fixed time behind by behind to catch up. <b>O(1)</b> */
+	static int stepsDue(long behind, long step) {
+		if(behind <= 0) return 0;
+		return (int) Math.min((behind + step - 1)/step, Integer.MAX_VALUE);
+	}
+
+	/** Converts the given nanoseconds to seconds */
+	static float nanosToSeconds(long nanos) {
+		return nanos*0.000000001f;
+	}
+
+	/** Converts the given seconds to nanoseconds */
+	static long secondsToNanos(float seconds) {
+		return (long) (seconds*1000000000L);
+	}
+
+}
@@ -7,7 +7,7 @@ import org.apache.logging.log4j.Logger;
  * A Component is put inside an Entity. A Component can only be in one Entity at a time.
  * @author Hamish Rae-Hodgson.
  */
-public class Component {
+public class Component implements Cloneable {
 	protected static final Logger log = LogManager.getLogger();
 
 	/** The Entity that this component is attached to - null if not attached to anything */
@@ -38,6 +38,22 @@ public class Component {
 		return owner;
 	}
 
+	/**
+	 * Makes a copy of this Component that has no owner, for Prefabs to stamp out.<br>
+	 * Fields are copied shallowly so the copy shares any objects this Component refers to, like a Mesh
+	 * or a Material. Override it to deep copy state that each copy needs its own instance of.
+	 * @return The copy.
+	 */
+	protected Component copy() {
+		try {
+			Component copy = (Component)super.clone();
+			copy.owner = null;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new Error("Failed copying '" + getClass().getName() + "'\n" + e);
+		}
+	}
+
 	/**
 	 * Tests whether the Entity that owns this Component also owns an instance of each of the provided Component Classes.
 	 * @param components The components you need on this Components owner Entity.
@@ -0,0 +1,274 @@
+package engine.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The ComponentStore owns every Archetype and moves Entities between them as components
+ * are attached and detached.<br>
+ * Structural changes are synchronized on the store. Component lookups are not, they only
+ * read the Archetype and index an Entity was last placed at.
+ * @author Hamish Rae-Hodgson.
+ */
+final class ComponentStore {
+
+	/** Every Archetype keyed by its list of component types */
+	private final Map<List<Class<? extends Component>>, Archetype> lookup = new HashMap<List<Class<? extends Component>>, Archetype>();
+
+	/** Every Archetype in the order they were created. Archetypes are never removed. */
+	private final List<Archetype> archetypes = new CopyOnWriteArrayList<Archetype>();
+
+	/** Read-only view of archetypes handed out to iterate over */
+	private final List<Archetype> view = Collections.unmodifiableList(archetypes);
+	
+	/** Structural changes made while deferring, waiting to be played back */
+	private final EntityCommandBuffer commands = new EntityCommandBuffer();
+	
+	/** While true the Chunks are being iterated over, so structural changes are recorded instead of applied */
+	private boolean deferring = false;
+	
+	/** Every Query that has been asked for, keyed by its types. Shared between callers asking for the same types. */
+	private final Map<List<Class<?>>, Query> queries = new HashMap<List<Class<?>>, Query>();
+
+	/**
+	 * Gives a new Entity its components without placing it into a Chunk yet.
+	 * Until place(entity) is called it can be looked up, but it is not iterated over.
+	 * @param entity The Entity. It must not be in storage yet.
+	 * @param components The components of the Entity in attachment order.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized void prepare(Entity entity, Component[] components) {
+		Class<? extends Component>[] types = (Class<? extends Component>[]) new Class<?>[components.length];
+		for(int i = 0; i < components.length; i++)
+			types[i] = components[i].getClass();
+		entity.archetype = getArchetype(types);
+		entity.detached = components;
+		entity.index = -1;
+	}
+
+	/**
+	 * Gives a new Entity its components, already known to make up archetype, without placing it into a Chunk yet.
+	 * @param entity The Entity. It must not be in storage yet.
+	 * @param archetype The Archetype whose types match components.
+	 * @param components The components of the Entity in attachment order.
+	 */
+	void prepare(Entity entity, Archetype archetype, Component[] components) {
+		entity.archetype = archetype;
+		entity.detached = components;
+		entity.index = -1;
+	}
+
+	/**
+	 * Places count prepared Entities into Chunks in one go, making room for all of them up front.
+	 * Each is deferred until playback while deferring.
+	 * @param entities The Entities. They must all have the same Archetype.
+	 * @param count The number of Entities to place from the start of the array.
+	 */
+	synchronized void placeAll(Entity[] entities, int count) {
+		if(count == 0) return;
+		if(!deferring)
+			entities[0].archetype.reserve(count);
+		for(int i = 0; i < count; i++)
+			place(entities[i]);
+	}
+
+	/**
+	 * Places a prepared Entity into a Chunk of its Archetype so it is iterated over.
+	 * Deferred until playback while deferring.
+	 * @param entity The Entity.
+	 */
+	synchronized void place(Entity entity) {
+		if(entity.index >= 0) return;
+		if(deferring) {
+			commands.create(entity);
+			return;
+		}
+		Component[] row = entity.detached;
+		entity.detached = null;
+		entity.archetype.add(entity, row);
+	}
+
+	/**
+	 * Takes the Entity out of storage. Its components are kept on the Entity so
+	 * they can still be looked up, but it is no longer iterated over.
+	 * Deferred until playback while deferring.
+	 * @param entity The Entity to remove.
+	 * @return true if the Entity was in a Chunk and was taken out now - false if it wasn't or it was deferred.
+	 */
+	synchronized boolean remove(Entity entity) {
+		if(entity.index < 0) return false;
+		if(deferring) {
+			commands.destroy(entity);
+			return false;
+		}
+		Archetype archetype = entity.archetype;
+		entity.detached = archetype.copyRow(entity.index, new Component[archetype.getColumnCount()]);
+		archetype.remove(entity.index);
+		entity.index = -1;
+		return true;
+	}
+
+	/**
+	 * Moves the Entity to the Archetype that has component appended to its current layout,
+	 * and makes the Entity the owner of component.<br>
+	 * Deferred until playback while deferring, unless the Entity is not in a Chunk.
+	 * @param entity The Entity to attach to.
+	 * @param component The component being attached.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized void attach(Entity entity, Component component) {
+		if(commands.isAttaching(component))
+			throw new IllegalStateException("Component cannot have an owner. " + component + " is already being attached.");
+		if(deferring && entity.index >= 0) {
+			commands.attach(entity, component);
+			return;
+		}
+		Archetype from = entity.archetype;
+		Class<? extends Component> type = component.getClass();
+		Archetype to = from.getAttachEdge(type);
+		if(to == null) {
+			Class<? extends Component>[] types = Arrays.copyOf(from.getTypes(), from.getColumnCount()+1);
+			types[types.length-1] = type;
+			to = getArchetype(types);
+			from.setAttachEdge(type, to);
+		}
+		Component[] row = copyRow(entity, new Component[to.getColumnCount()]);
+		row[row.length-1] = component;
+		move(entity, to, row);
+		component.setOwner(entity);
+	}
+
+	/**
+	 * Moves the Entity to the Archetype that has component removed from its current layout,
+	 * and clears the owner of component.<br>
+	 * Deferred until playback while deferring, unless the Entity is not in a Chunk.
+	 * @param entity The Entity to detach from.
+	 * @param component The component being detached.
+	 * @return true if the component was attached to the Entity - otherwise false.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized boolean detach(Entity entity, Component component) {
+		int column = columnOf(entity, component);
+		if(column < 0) return false;
+		if(deferring && entity.index >= 0) {
+			commands.detach(entity, component);
+			return true;
+		}
+
+		Archetype from = entity.archetype;
+		Archetype to = from.getDetachEdge(column);
+		if(to == null) {
+			Class<? extends Component>[] types = (Class<? extends Component>[]) new Class<?>[from.getColumnCount()-1];
+			for(int i = 0, j = 0; i < from.getColumnCount(); i++)
+				if(i != column) types[j++] = from.getType(i);
+			to = getArchetype(types);
+			from.setDetachEdge(column, to);
+		}
+		Component[] full = copyRow(entity, new Component[from.getColumnCount()]);
+		Component[] row = new Component[to.getColumnCount()];
+		for(int i = 0, j = 0; i < full.length; i++)
+			if(i != column) row[j++] = full[i];
+		move(entity, to, row);
+		component.setOwner(null);
+		return true;
+	}
+
+	/**
+	 * Starts recording structural changes instead of applying them, so the Chunks can be
+	 * iterated over without taking the lock.
+	 */
+	synchronized void beginDeferring() {
+		deferring = true;
+	}
+
+	/** Stops deferring and plays back every structural change recorded since beginDeferring() */
+	synchronized void endDeferring() {
+		deferring = false;
+		commands.playback(this);
+	}
+
+	/** The structural changes waiting to be played back */
+	EntityCommandBuffer getCommandBuffer() {
+		return commands;
+	}
+
+	/**
+	 * Finds the column the component is stored in for the given Entity.
+	 * @return The column, or -1 if the component is not attached to the Entity.
+	 */
+	int columnOf(Entity entity, Component component) {
+		for(int column : entity.archetype.columnsOf(component.getClass()))
+			if(entity.component(column) == component)
+				return column;
+		return -1;
+	}
+
+	/**
+	 * Gets the cached Query for types, building it from the existing Archetypes the first time it is asked for.
+	 * @param types The component types to match.
+	 * @return The live Query.
+	 */
+	synchronized Query query(Class<?>[] types) {
+		List<Class<?>> key = Arrays.<Class<?>>asList(types.clone());
+		Query query = queries.get(key);
+		if(query == null) {
+			query = new Query(types.clone());
+			for(Archetype archetype : archetypes)
+				query.offer(archetype);
+			queries.put(key, query);
+		}
+		return query;
+	}
+
+	/**
+	 * Gets this store's Archetype with the same types as archetype, which may belong to another store.
+	 * @param archetype The Archetype.
+	 * @return archetype itself if it belongs to this store - otherwise this store's equivalent.
+	 */
+	synchronized Archetype adopt(Archetype archetype) {
+		return getArchetype(archetype.getTypes().clone());
+	}
+
+	/** Every Archetype that has been created. A live, read-only view. */
+	List<Archetype> getArchetypes() {
+		return view;
+	}
+
+	/** Copies the current components of entity into out */
+	private Component[] copyRow(Entity entity, Component[] out) {
+		if(entity.index < 0)
+			System.arraycopy(entity.detached, 0, out, 0, entity.detached.length);
+		else entity.archetype.copyRow(entity.index, out);
+		return out;
+	}
+
+	/** Moves the Entity out of its current Archetype and into to with the given components */
+	private void move(Entity entity, Archetype to, Component[] row) {
+		if(entity.index < 0) {
+			entity.archetype = to;
+			entity.detached = row;
+		} else {
+			entity.archetype.remove(entity.index);
+			to.add(entity, row);
+		}
+	}
+
+	/** Gets the shared Archetype for types, creating it if this is the first time it is needed */
+	private Archetype getArchetype(Class<? extends Component>[] types) {
+		List<Class<? extends Component>> key = Arrays.asList(types);
+		Archetype archetype = lookup.get(key);
+		if(archetype == null) {
+			archetype = new Archetype(types);
+			lookup.put(key, archetype);
+			archetypes.add(archetype);
+			for(Query query : queries.values())
+				query.offer(archetype);
+		}
+		return archetype;
+	}
+
+}
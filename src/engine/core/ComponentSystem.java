@@ -0,0 +1,167 @@
+package engine.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ComponentSystem works on every Entity that has a given set of components, a Chunk at a time.<br>
+ * Where a Behaviour is called once per component, a ComponentSystem is handed Spans - the
+ * components of up to Chunk.CAPACITY Entities laid out in one array per type - so it can walk
+ * them in a tight loop with no virtual call per Entity:
+ * <pre>
+ * class Gravity extends ComponentSystem {
+ *     Gravity() { super(Transform.class, Body.class); }
+ *     protected void update(Span span) {
+ *         Transform[] transforms = span.get(0);
+ *         Body[] bodies = span.get(1);
+ *         for(int i = 0; i &lt; span.size(); i++) ...
+ *     }
+ * }
+ * </pre>
+ * Register it with Engine.addSystem(system, phase). It is run once per tick or fixed tick, on the
+ * stepping thread, with structural changes deferred just like they are for Behaviours.
+ * @author Hamish Rae-Hodgson.
+ */
+public abstract class ComponentSystem {
+
+	/** When a ComponentSystem is run relative to the Behaviours */
+	public enum Phase {
+		/** Every tick, before update() is called on the Behaviours */
+		BEFORE_TICK,
+		/** Every tick, after update() is called on the Behaviours */
+		AFTER_TICK,
+		/** Every fixed tick, before fixedUpdate() is called on the Behaviours */
+		BEFORE_FIXED_TICK,
+		/** Every fixed tick, after fixedUpdate() is called on the Behaviours and the Tasks are run */
+		AFTER_FIXED_TICK
+	}
+
+	/** The component types an Entity needs at least one of each of to be processed */
+	private final List<Class<? extends Component>> signature;
+
+	/** The same types, as handed to World.query() */
+	private final Class<?>[] types;
+
+	/** The matching Entities of the World this is registered with, null until registered */
+	private Query query;
+
+	/** The column of each signature type in the Archetype being processed */
+	private int[] columns;
+
+	/** Reused for every Chunk */
+	private final Span span;
+
+	/**
+	 * Creates a ComponentSystem that processes every Entity with at least one component of each of signature.
+	 * @param signature The component types, in the order Span.get(index) hands them out.
+	 */
+	@SafeVarargs
+	protected ComponentSystem(Class<? extends Component>... signature) {
+		if(signature.length == 0)
+			throw new IllegalArgumentException("A ComponentSystem needs at least one component type.");
+		List<Class<? extends Component>> copy = new ArrayList<Class<? extends Component>>(signature.length);
+		for(Class<? extends Component> type : signature)
+			copy.add(type);
+		this.signature = Collections.unmodifiableList(copy);
+		this.types = copy.toArray(new Class<?>[copy.size()]);
+		this.columns = new int[signature.length];
+		this.span = new Span(signature.length);
+	}
+
+	/** The component types this ComponentSystem processes, in the order Span.get(index) hands them out */
+	public List<Class<? extends Component>> getSignature() {
+		return signature;
+	}
+
+	/** Called once each run before the first Span. Does nothing by default. */
+	protected void begin() { }
+
+	/**
+	 * Process the Entities of one Chunk.
+	 * @param span The components of the Entities. Only valid until this call returns.
+	 */
+	protected abstract void update(Span span);
+
+	/** Called once each run after the last Span. Does nothing by default. */
+	protected void end() { }
+
+	/** Binds this to the World it was registered with. A ComponentSystem can only be registered with one. */
+	void register(World world) {
+		if(query != null)
+			throw new IllegalStateException(this + " is already registered with an Engine.");
+		query = world.query(types);
+	}
+
+	/** Hands every non-empty Chunk of the matching Archetypes to update() */
+	void run() {
+		begin();
+		for(int a = 0; a < query.getArchetypeCount(); a++) {
+			Archetype archetype = query.getArchetype(a);
+			if(archetype.size() == 0) continue;
+			for(int i = 0; i < types.length; i++) //where there is more than one, the first attached is used
+				columns[i] = archetype.columnsOf(types[i])[0];
+			for(int c = 0; c < archetype.getChunkCount(); c++) {
+				Chunk chunk = archetype.getChunk(c);
+				if(chunk.size() == 0) continue;
+				span.set(chunk, columns);
+				update(span);
+			}
+		}
+		span.set(null, columns);
+		end();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + signature;
+	}
+
+	/**
+	 * The components of the Entities in one Chunk, one array per signature type.<br>
+	 * The arrays are the Chunk's own storage. Only the first size() elements are valid and they
+	 * must not be modified - read and change the components themselves.
+	 */
+	public static final class Span {
+
+		private Chunk chunk;
+
+		private final Component[][] arrays;
+
+		private Span(int length) {
+			this.arrays = new Component[length][];
+		}
+
+		private void set(Chunk chunk, int[] columns) {
+			this.chunk = chunk;
+			for(int i = 0; i < arrays.length; i++)
+				arrays[i] = chunk == null ? null : chunk.getColumn(columns[i]);
+		}
+
+		/** The number of Entities in this Span */
+		public int size() {
+			return chunk.size();
+		}
+
+		/**
+		 * Gets the components of the type at index of the signature.
+		 * @param index The index of the type in the signature.
+		 * @return The array of components, indexed the same as every other array of this Span.
+		 */
+		@SuppressWarnings("unchecked")
+		public <E extends Component> E[] get(int index) {
+			return (E[])arrays[index];
+		}
+
+		/** Gets the Entity at row */
+		public Entity getEntity(int row) {
+			return chunk.getEntity(row);
+		}
+
+		/** The Chunk being processed */
+		public Chunk getChunk() {
+			return chunk;
+		}
+	}
+
+}
@@ -1,70 +1,461 @@
 package engine.core;
 
-import java.util.concurrent.locks.LockSupport;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 import engine.components.Behaviour;
-import engine.tasks.TaskManager;
+import engine.metrics.Counter;
+import engine.metrics.Gauge;
+import engine.metrics.MetricRegistry;
+import engine.profiling.Allocations;
+import engine.profiling.CostAccounting;
+import engine.profiling.FixedTickEvent;
+import engine.profiling.FrameEvent;
+import engine.profiling.Histogram;
+import engine.profiling.Profiler;
+import engine.profiling.Profiler.Phase;
+import engine.profiling.Watchdog;
+import engine.tasks.Task;
 
+/**
+ * The Engine steps a World - advancing its Clock, updating its Behaviours, running its Tasks
+ * and rendering it if it has a Renderer. Every World has its own, see World.getEngine().
+ * @author Hamish Rae-Hodgson.
+ */
 public class Engine {
 	
-	private static long then;
+	/** The number of steps a second the Engine aims for */
+	static final int FRAME_RATE = 60;
 	
-	private static boolean runningSlow = false;
+	/** The World being stepped */
+	private final World world;
 	
-	private static final long FPS60 = (long) ((1D/60)*1000000000);
+	private long then;
 	
-	public static void start() {
-		Time.reset();
-		then = System.nanoTime();
-		new Thread(new Runnable() {
+	/** True until the first step or reset, so a World stepped by hand doesn't start with a huge delta */
+	private boolean fresh = true;
+	
+	private volatile boolean running = false;
+	
+	/** The thread started by start(), or null */
+	private Thread thread;
+	
+	/** Updates every Behaviour, in parallel where it is safe to */
+	private final BehaviourScheduler scheduler;
+	
+	/** Draws the World at the end of each step, null to run headless */
+	private volatile Renderer renderer;
+	
+	/** True to draw each frame on another thread while the next one is simulated */
+	private volatile boolean pipelined = false;
+	
+	/** Holds start() to the frame rate */
+	private final FramePacer pacer = new FramePacer(FramePacer.Mode.FIXED, FRAME_RATE);
+	
+	/** Times the phases of every step */
+	private final Profiler profiler = new Profiler();
+	
+	/** What each class of Behaviour, GL2Renderer and Task costs, when enabled */
+	private final CostAccounting costs = new CostAccounting();
+	
+	/** Reports steps that take too long, once started */
+	private final Watchdog watchdog = new Watchdog(Component.class, Task.class);
+	
+	/** What the Engine knows about its World, for JMX */
+	private final MetricRegistry metrics = new MetricRegistry();
+	private final Counter steps = metrics.counter("steps");
+	private final Histogram fixedTicksPerStep = metrics.histogram("fixedTicks.perStep");
+	private final Histogram behavioursPerTick = metrics.histogram("behaviours.perTick");
+	private final Histogram behavioursPerFixedTick = metrics.histogram("behaviours.perFixedTick");
+	
+	/** The groups stepped at rates of their own after the fixed ticks, in the order they were added */
+	private final List<FixedRateGroup> groups = new CopyOnWriteArrayList<FixedRateGroup>();
+	
+	/** The ComponentSystems run in each Phase, in the order they were added */
+	private final Map<ComponentSystem.Phase, List<ComponentSystem>> systems = new EnumMap<ComponentSystem.Phase, List<ComponentSystem>>(ComponentSystem.Phase.class);
+	
+	/** Package-private constructor. Every World owns one. */
+	Engine(World world) {
+		this.world = world;
+		this.scheduler = new BehaviourScheduler(world, costs);
+		world.getTaskManager().setCostAccounting(costs);
+		for(ComponentSystem.Phase phase : ComponentSystem.Phase.values())
+			systems.put(phase, new CopyOnWriteArrayList<ComponentSystem>());
+		registerMetrics();
+	}
+	
+	/** Adds the gauges read from the World to metrics */
+	private void registerMetrics() {
+		metrics.gauge("entities", new Gauge() {
+			public long getValue() {
+				return world.getEntityCount();
+			}
+		});
+		metrics.gauges("components", new Gauge.Family() {
+			public Map<String, Long> getValues() {
+				Map<String, Long> counts = new TreeMap<String, Long>();
+				synchronized(world.getStructureLock()) {
+					for(Archetype archetype : world.getArchetypes()) {
+						for(int column = 0; column < archetype.getColumnCount(); column++) {
+							String type = archetype.getType(column).getName();
+							Long count = counts.get(type);
+							counts.put(type, (count == null ? 0 : count) + archetype.size());
+						}
+					}
+				}
+				return counts;
+			}
+		});
+		metrics.gauge("fixedTicks.dropped", new Gauge() {
+			public long getValue() {
+				return world.getClock().getDroppedSteps();
+			}
+		});
+		metrics.gauge("tasks.queued", new Gauge() {
+			public long getValue() {
+				return world.getTaskManager().getQueueDepth();
+			}
+		});
+		metrics.gauge("tasks.timers", new Gauge() {
+			public long getValue() {
+				return world.getTaskManager().getPendingTimers();
+			}
+		});
+		metrics.gauge("tasks.executed", new Gauge() {
+			public long getValue() {
+				return world.getTaskManager().getTasksExecuted();
+			}
+		});
+		metrics.gauge("tasks.budgetOverruns", new Gauge() {
+			public long getValue() {
+				return world.getTaskManager().getBudgetOverruns();
+			}
+		});
+		metrics.gauge("frames.paced", new Gauge() {
+			public long getValue() {
+				return pacer.getFrameCount();
+			}
+		});
+		metrics.gauge("frames.slow", new Gauge() {
+			public long getValue() {
+				return pacer.getSlowFrameCount();
+			}
+		});
+	}
+	
+	/** The World being stepped */
+	public World getWorld() {
+		return world;
+	}
+	
+	/**
+	 * Starts stepping the World on a thread of its own, paced by getPacer().
+	 * @throws IllegalStateException If it has already been started.
+	 */
+	public synchronized void start() {
+		if(thread != null && thread.isAlive())
+			throw new IllegalStateException("The Engine of this World is already running.");
+		running = true;
+		reset();
+		thread = new Thread(new Runnable() {
 			public void run() {
-				for(;;) {
+				World.bind(world);
+				pacer.reset();
+				while(running) {
 					step();
+					profiler.begin(Phase.SLEEP);
+					pacer.pace();
+					profiler.end(Phase.SLEEP);
 				}
 			}
-		}).start();
+		}, "Engine");
+		thread.start();
+	}
+	
+	/** Stops the thread started by start() after the step it is on */
+	public void stop() {
+		running = false;
+	}
+	
+	/**
+	 * Sets the pool ThreadSafe Behaviours are updated on. Defaults to the common ForkJoinPool.
+	 * @param pool The pool, or null to update every Behaviour on the stepping thread.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		scheduler.setPool(pool);
+	}
+	
+	/** The pool ThreadSafe Behaviours are updated on, or null if they are updated on the stepping thread */
+	public ForkJoinPool getPool() {
+		return scheduler.getPool();
+	}
+	
+	/**
+	 * Pins when Behaviours of type are updated relative to other Behaviour classes. Every Behaviour
+	 * of a class is updated before any of the next class. Classes with a lower order are updated first,
+	 * classes with the same order in the order they were first seen. Defaults to 0.
+	 * @param type The concrete Behaviour class.
+	 * @param order The execution order.
+	 */
+	public void setExecutionOrder(Class<? extends Behaviour> type, int order) {
+		scheduler.setExecutionOrder(type, order);
+	}
+	
+	/** The execution order of type. See setExecutionOrder(). */
+	public int getExecutionOrder(Class<? extends Behaviour> type) {
+		return scheduler.getExecutionOrder(type);
+	}
+	
+	/**
+	 * Registers a ComponentSystem to be run every step in the given phase.
+	 * Systems in the same phase are run in the order they were added.
+	 * @param system The ComponentSystem. It can only be added to one Engine, once.
+	 * @param phase When to run it.
+	 */
+	public void addSystem(ComponentSystem system, ComponentSystem.Phase phase) {
+		system.register(world);
+		systems.get(phase).add(system);
 	}
 	
-	private static void step() {
-		long now = System.nanoTime();
-		Time.progressTime(now - then);
-		then = now;
-		tick();
-		while(Time.getFixedTime() < Time.getTime()) {
-			Time.progressFixedTime();
-			fixedTick();
+	/**
+	 * Stops running a ComponentSystem. It can't be added again.
+	 * @param system The ComponentSystem.
+	 * @return true if it was registered with this Engine.
+	 */
+	public boolean removeSystem(ComponentSystem system) {
+		for(List<ComponentSystem> list : systems.values())
+			if(list.remove(system))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Adds a group of ComponentSystems and Behaviour fixed updates stepped at a fixed rate of their own, after the
+	 * fixed ticks of each step. Groups are stepped in the order they were added.
+	 * @param name The name of the group.
+	 * @param hz The steps a second, more than 0.
+	 * @return The group, add ComponentSystems and Behaviour classes to it.
+	 */
+	public FixedRateGroup addFixedRateGroup(String name, int hz) {
+		FixedRateGroup group = new FixedRateGroup(world, scheduler, name, hz);
+		group.reset(world.getClock().getTimeNanos());
+		groups.add(group);
+		return group;
+	}
+	
+	/**
+	 * Stops stepping a FixedRateGroup. The fixedUpdate() of its Behaviour classes goes back to the Engine's fixed steps.
+	 * @param group The group.
+	 * @return true if it was added to this Engine.
+	 */
+	public boolean removeFixedRateGroup(FixedRateGroup group) {
+		scheduler.removeFixedRateGroup(group);
+		return groups.remove(group);
+	}
+	
+	/**
+	 * Sets what draws the World at the end of each step. A Display sets itself as the Renderer of the World it displays.
+	 * @param renderer The Renderer, or null to run headless.
+	 */
+	public void setRenderer(Renderer renderer) {
+		this.renderer = renderer;
+	}
+	
+	/** What draws the World at the end of each step, or null if headless */
+	public Renderer getRenderer() {
+		return renderer;
+	}
+	
+	/**
+	 * Sets how many times a second start() steps the World. Defaults to 60.
+	 * @param framesPerSecond The target frame rate, or 0 to step as fast as possible.
+	 */
+	public void setFrameRate(int framesPerSecond) {
+		if(framesPerSecond < 0)
+			throw new IllegalArgumentException("The frame rate can't be negative. framesPerSecond=" + framesPerSecond);
+		if(framesPerSecond == 0) {
+			pacer.setMode(FramePacer.Mode.UNCAPPED);
+		} else {
+			pacer.setFrameRate(framesPerSecond);
+			if(pacer.getMode() == FramePacer.Mode.UNCAPPED)
+				pacer.setMode(FramePacer.Mode.FIXED);
 		}
-		render();
-		sleepforabit(FPS60-(System.nanoTime()-now));
 	}
 	
-	private static void tick() {
-		for(Entity e : World.getEntities()) {
-			for(Behaviour b : e.getComponents(Behaviour.class)) {
-				b.update();
+	/** What holds start() to the frame rate. Use it to change the Mode or read the pacing statistics. */
+	public FramePacer getPacer() {
+		return pacer;
+	}
+	
+	/**
+	 * Turns pipelining on or off. It is off by default.<br>
+	 * While pipelined, rendering a frame doesn't hold up simulating the next one. At the end of each step
+	 * the Renderer captures what is on screen and draws it on another thread while the next step is
+	 * simulated, so a frame takes about as long as the slower of the two rather than both added up.
+	 * What was captured is interpolated between the last two fixed steps. See Renderer.
+	 * @param pipelined true to pipeline.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+	
+	/** Times the phases of every step. See Profiler. */
+	public Profiler getProfiler() {
+		return profiler;
+	}
+	
+	/** What each class of Behaviour, GL2Renderer and Task costs. Off until enabled, see CostAccounting. */
+	public CostAccounting getCostAccounting() {
+		return costs;
+	}
+	
+	/** Reports steps that take too long. Off until started, see Watchdog. */
+	public Watchdog getWatchdog() {
+		return watchdog;
+	}
+	
+	/**
+	 * Counters, gauges and histograms of the World, like its Entity count and Task queue depth,
+	 * that can be published over JMX. Renderers add their own. See MetricRegistry.
+	 */
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+	
+	/** Returns true if rendering is pipelined with simulation. See setPipelined(). */
+	public boolean isPipelined() {
+		return pipelined;
+	}
+	
+	/** Returns true until stop() is called on an Engine that has been started */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/** Returns true if the last step took longer than a frame */
+	public boolean isRunningSlow() {
+		return pacer.isRunningSlow();
+	}
+	
+	/** Resets the World's Clock so that the next step() starts from time 0 */
+	public void reset() {
+		world.getClock().reset();
+		for(FixedRateGroup group : groups)
+			group.reset(0);
+		then = System.nanoTime();
+		fresh = false;
+	}
+	
+	/**
+	 * Steps the World once on the calling thread, by however long it has been since the last step.<br>
+	 * Use it to step a World yourself instead of with start(), for example to run many headless
+	 * Worlds from a thread pool. A World must only be stepped by one thread at a time.
+	 */
+	public void step() {
+		World previous = World.bind(world);
+		FrameEvent event = new FrameEvent();
+		long allocated = event.isEnabled() ? Allocations.currentThread() : 0;
+		int fixedSteps = 0;
+		event.begin();
+		watchdog.beginStep();
+		profiler.begin(Phase.FRAME);
+		profiler.begin(Phase.TIME);
+		try {
+			long now = System.nanoTime();
+			if(fresh) {
+				then = now;
+				fresh = false;
+			}
+			Clock clock = world.getClock();
+			clock.progressTime(now - then);
+			then = now;
+			profiler.end(Phase.TIME);
+			
+			//Behaviours and Tasks may create, destroy, attach and detach while we walk the Chunks.
+			//Those changes are recorded and played back together once the simulation is done.
+			//Frames are captured while the changes are still deferred, so both captures see the same Entities
+			Renderer renderer = this.renderer;
+			boolean capture = renderer != null && pipelined;
+			world.getStore().beginDeferring();
+			try {
+				profiler.begin(Phase.TICK);
+				tick();
+				profiler.end(Phase.TICK);
+				//Run the fixed steps that are due, at most the Clock's max catch up of them
+				for(int steps = clock.fixedStepsDue(); steps > 0; steps--) {
+					profiler.begin(Phase.FIXED_TICK);
+					FixedTickEvent fixedEvent = new FixedTickEvent();
+					fixedEvent.begin();
+					clock.progressFixedTime();
+					if(capture) //before every fixed step, so the last one is interpolated from
+						renderer.capturePrevious(world);
+					fixedTick();
+					fixedSteps++;
+					if(fixedEvent.shouldCommit()) {
+						fixedEvent.fixedTime = clock.getFixedTimeNanos();
+						fixedEvent.commit();
+					}
+					profiler.end(Phase.FIXED_TICK);
+				}
+				if(!groups.isEmpty()) {
+					profiler.begin(Phase.GROUPS);
+					for(FixedRateGroup group : groups)
+						group.step(clock);
+					profiler.end(Phase.GROUPS);
+				}
+				if(capture)
+					renderer.captureCurrent(world, 1 - (float) (clock.getFixedTimeNanos() - clock.getTimeNanos()) / clock.getFixedDeltaNanos());
+			} finally {
+				world.getStore().endDeferring();
+			}
+			if(renderer != null) {
+				profiler.begin(Phase.RENDER);
+				if(capture) renderer.present(world);
+				else renderer.render(world);
+				profiler.end(Phase.RENDER);
 			}
+		} finally {
+			watchdog.endStep();
+			World.bind(previous);
+		}
+		profiler.end(Phase.FRAME);
+		profiler.roll();
+		costs.endFrame();
+		steps.increment();
+		fixedTicksPerStep.record(fixedSteps);
+		if(event.shouldCommit()) {
+			event.entities = world.getEntityCount();
+			event.archetypes = world.getArchetypes().size();
+			event.fixedSteps = fixedSteps;
+			event.droppedSteps = world.getClock().getDroppedSteps();
+			event.allocated = Allocations.currentThread() - allocated;
+			event.commit();
 		}
 	}
 	
-	private static void fixedTick() {
-		for(Entity e : World.getEntities())
-			for(Behaviour b : e.getComponents(Behaviour.class))
-				b.fixedUpdate();
-		
-		TaskManager.tick();
+	private void tick() {
+		run(ComponentSystem.Phase.BEFORE_TICK);
+		behavioursPerTick.record(scheduler.update());
+		run(ComponentSystem.Phase.AFTER_TICK);
 	}
 	
-	private static void render() {
-		Display.render();
+	private void fixedTick() {
+		run(ComponentSystem.Phase.BEFORE_FIXED_TICK);
+		behavioursPerFixedTick.record(scheduler.fixedUpdate());
+		
+		profiler.begin(Phase.TASKS);
+		world.getTaskManager().tick(world.getClock().getFixedDeltaNanos());
+		profiler.end(Phase.TASKS);
+		run(ComponentSystem.Phase.AFTER_FIXED_TICK);
 	}
 	
-	private static void sleepforabit(long nanos) {
-		if(nanos > 0)  {
-			runningSlow = false;
-			LockSupport.parkNanos(nanos);
-		} else {
-			runningSlow = true;
-		}
+	private void run(ComponentSystem.Phase phase) {
+		for(ComponentSystem system : systems.get(phase))
+			system.run();
 	}
 
 }
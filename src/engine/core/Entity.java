@@ -1,28 +1,47 @@
 package engine.core;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import engine.components.Transform;
 import engine.util.Ensure;
 
 /**
- * The Entity class is a container for Components.
+ * The Entity class is a container for Components.<br>
+ * The components themselves live in the Chunks of the Entities Archetype, the Entity
+ * only remembers where it was placed.<br>
+ * Where it was placed is not safely published. getComponent(), getComponents(), hasComponent() and contains()
+ * may only be called from the thread stepping the World - Behaviours, Tasks and ComponentSystems, including
+ * Behaviours updated in parallel, as changes are deferred while they run - or while holding
+ * World.getStructureLock(). Any other thread may see an Entity half way through moving between Archetypes.
  * @author Hamish Rae-Hodgson.
  */
 public class Entity {
 	
-	/** A unique ID in the system. */
-	private final int uniqueID;
+	/** The World this Entity belongs to */
+	private final World world;
+	
+	/** A unique ID in the system. 0 while this Entity is waiting in a pool to be reused. */
+	private volatile int uniqueID;
 	
 	/** The name of this Entity */
 	private String name;
 	
-	/** This Entities components in the order they were added */
-	private final Set<Component> components = Collections.synchronizedSet(new LinkedHashSet<Component>());
+	/** The tags of this Entity. Null until the first tag is added. */
+	private volatile Set<String> tags;
+	
+	/** The Archetype this Entities components are stored in. Maintained by the ComponentStore, read unlocked, see the class comment. */
+	Archetype archetype;
+	
+	/** The index of this Entity in its Archetype. -1 once destroyed. Maintained by the ComponentStore. */
+	int index = -1;
+	
+	/** This Entities components once it has been taken out of storage. Maintained by the ComponentStore. */
+	Component[] detached;
 	
 	/** This Entities Transform */
 	private Transform transform;
@@ -30,27 +49,64 @@ public class Entity {
 	/**
 	 * Creates a new empty Entity with the given unique ID.<br>
 	 * Package-private constructor.
+	 * @param world The World this Entity belongs to.
 	 * @param uniqueID A unique ID to define this Entity.
 	 */
-	Entity(int uniqueID, String name) {
+	Entity(World world, int uniqueID, String name) {
+		this.world = world;
 		this.uniqueID = uniqueID;
 		this.name = name;
 		this.attachDefaultComponents();
 	}
 	
+	/**
+	 * Creates an Entity from an instance of a Prefab.<br>
+	 * Package-private constructor.
+	 * @param world The World this Entity belongs to.
+	 * @param uniqueID A unique ID to define this Entity.
+	 * @param archetype The Archetype of the Prefab.
+	 * @param components The components in Archetype order. The first one is the Transform.
+	 */
+	Entity(World world, int uniqueID, String name, Archetype archetype, Component[] components) {
+		this.world = world;
+		this.uniqueID = uniqueID;
+		this.name = name;
+		this.transform = (Transform)components[0];
+		world.getStore().prepare(this, archetype, components);
+		for(Component component : components)
+			component.setOwner(this);
+	}
+	
+	/**
+	 * Gives a recycled Entity a new identity. Its Transform has already been reset.
+	 * @param uniqueID The new unique ID.
+	 * @param name The new name.
+	 */
+	void reuse(int uniqueID, String name) {
+		this.uniqueID = uniqueID;
+		this.name = name;
+	}
+	
+	/** Strips a destroyed Entity of its identity before it goes into a pool */
+	void recycle() {
+		this.uniqueID = 0;
+		this.name = null;
+		this.tags = null;
+	}
+	
 	/** Attaches the default components to the entity */
 	private void attachDefaultComponents() {
-		synchronized(components) {
-			//Every entity must have these components
-			this.transform = new Transform();
-			components.add(this.transform);
-			((Component)this.transform).setOwner(this);
-		}
+		//Every entity must have these components
+		this.transform = new Transform();
+		world.getStore().prepare(this, new Component[] { this.transform });
+		((Component)this.transform).setOwner(this);
 	}
 	
 	/** Set the name of this Entity */
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+		world.rename(this, oldName, name);
 	}
 	
 	/** Get the name of this Entity */
@@ -58,29 +114,80 @@ public class Entity {
 		return name;
 	}
 	
-	/** Get the unique ID bound to this Entity */
+	/**
+	 * Tags this Entity so it can be found with World.getEntitiesWithTag(tag).
+	 * @param tag The tag. Cannot be null.
+	 */
+	public void addTag(String tag) {
+		Ensure.that(tag).isNotNull();
+		synchronized(this) {
+			if(tags == null)
+				tags = new CopyOnWriteArraySet<String>();
+			if(!tags.add(tag))
+				return;
+		}
+		world.tag(this, tag, true);
+	}
+	
+	/**
+	 * Removes a tag from this Entity.
+	 * @param tag The tag.
+	 * @return true if this Entity had the tag - otherwise false.
+	 */
+	public boolean removeTag(String tag) {
+		synchronized(this) {
+			if(tags == null || !tags.remove(tag))
+				return false;
+		}
+		world.tag(this, tag, false);
+		return true;
+	}
+	
+	/** Returns true if this Entity has been given the tag */
+	public boolean hasTag(String tag) {
+		Set<String> tags = this.tags;
+		return tags != null && tags.contains(tag);
+	}
+	
+	/** Get the tags of this Entity. An empty Set if it has none. Never null. */
+	public Set<String> getTags() {
+		Set<String> tags = this.tags;
+		return tags == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(tags);
+	}
+	
+	/** Get the World this Entity belongs to */
+	public World getWorld() {
+		return world;
+	}
+	
+	/**
+	 * Get the unique ID bound to this Entity.<br>
+	 * The ID is a generational handle, once this Entity is destroyed World.getEntity(id) returns null for it.
+	 */
 	public int getID() {
 		return uniqueID;
 	}
 	
 	/**
 	 * Attach the given component to this Entity.<br>
-	 * Respectively sets the owner of the component to be this Entity.
+	 * Respectively sets the owner of the component to be this Entity.<br>
+	 * While the Engine is updating, attaching to an Entity that is already being updated is
+	 * deferred until the end of the step. See EntityCommandBuffer.
 	 * @param component The component to add to this Entity.
 	 * @return The attached Component or null if it couldn't be added.
 	 */
 	public <E extends Component> E attachComponent(E component) {
 		Ensure.that(component).isNotNull().hasNoOwner().isNotOfType(Transform.class);
+		if(uniqueID == 0)
+			throw new IllegalStateException("This Entity has been destroyed and recycled. You can't attach to it.");
 		
-		synchronized(components) {
-			components.add(component);
-			component.setOwner(this);
-			return component;
-		}
+		world.getStore().attach(this, component);
+		return component;
 	}
 
 	/**
 	 * Attach a new instance of the given component to this Entity.<br>
+	 * While pooling is on, a recycled instance is attached if there is one.<br>
 	 * Respectively sets the owner of the component to be this Entity.
 	 * @throws NullPointerException If param is null.
 	 * @throws IllegalStateException If the Component is already attached to an Entity
@@ -89,8 +196,11 @@ public class Entity {
 	 */
 	public <E extends Component> E attachComponent(Class<E> type) {
 		try {
-			return attachComponent((E)(type.newInstance()));
-		} catch (InstantiationException | IllegalAccessException e) {
+			E component = world.obtainComponent(type);
+			return attachComponent(component != null ? component : type.getDeclaredConstructor().newInstance());
+		} catch (InvocationTargetException e) {
+			throw new Error("Failed attaching '" + type.getName() + "'\n" + e.getCause());
+		} catch (ReflectiveOperationException e) {
 			throw new Error("Failed attaching '" + type.getName() + "'\n" + e);
 		}
 	}
@@ -98,51 +208,46 @@ public class Entity {
 	
 	/**
 	 * Returns the first Component that matches type.
+	 * Only call it while stepping the World or holding World.getStructureLock().
 	 * @param type Class of the Component you are looking for.
 	 * @return The matching component - or null if not found.
 	 */
 	@SuppressWarnings("unchecked")
 	public <E extends Component> E getComponent(Class<E> type) {
-		synchronized(components) {
-			for(Component component : components)
-				if(type.isAssignableFrom(component.getClass()))
-					return (E)component;
-			return null;
-		}
+		if(type == Transform.class)
+			return (E)transform;
+		int[] columns = archetype.columnsOf(type);
+		return columns.length == 0 ? null : (E)component(columns[0]);
 	}
 
 	/**
 	 * Returns a List containing all the Components that match the provided type.
+	 * Only call it while stepping the World or holding World.getStructureLock().
 	 * @param type Class of the Components you are looking for.
 	 * @return The List of matching components - or an empty list if none were found.
 	 */
 	@SuppressWarnings("unchecked")
 	public <E extends Component> List<E> getComponents(Class<E> type) {
-		synchronized(components) {
-			List<E> out = new LinkedList<E>();
-			for(Component component : components)
-				if(type.isAssignableFrom(component.getClass()))
-					out.add((E)component);
-			return out;
-		}
+		int[] columns = archetype.columnsOf(type);
+		List<E> out = new ArrayList<E>(columns.length);
+		for(int column : columns)
+			out.add((E)component(column));
+		return out;
 	}	
 	
 	/**
 	 * Detaches the specified component from this Entity.<br>
 	 * If the component was present, the components Owner gets set to null.<br>
-	 * Then the component can be freely attached to other Entities.
+	 * Then the component can be freely attached to other Entities.<br>
+	 * While the Engine is updating, detaching from an Entity that is already being updated is
+	 * deferred until the end of the step. See EntityCommandBuffer.
 	 * @param component The component to remove.
 	 * @return true if the component was present and successfully detached - otherwise false.
 	 */
 	public <E extends Component> boolean detachComponent(E component) {
 		Ensure.that(component).isNotNull().isNotOfType(Transform.class).ownerIs(this);
 		
-		synchronized(components) {
-			if(this.components.remove(component)) {
-				component.setOwner(null);
-				return true;
-			} else return false;
-		}
+		return world.getStore().detach(this, component);
 	}
 	
 	/**
@@ -151,18 +256,22 @@ public class Entity {
 	 * @return Returns true if the component was present - false otherwise.
 	 */
 	public <E extends Component> boolean contains(E component) {
-		synchronized(components) {
-			return components.contains(component);
-		}
+		return world.getStore().columnOf(this, component) >= 0;
 	}
 	
 	/**
 	 * Returns true if this Entity has at least one instance of a component of the type specified.
+	 * Only call it while stepping the World or holding World.getStructureLock().
 	 * @param type The type of Component to enquire about.
 	 * @return True if this Entity has an instance of the Component. False if it doesn't.
 	 */
 	public <E extends Component> boolean hasComponent(Class<E> type) {
-		return getComponent(type) != null;
+		return archetype.columnsOf(type).length != 0;
+	}
+	
+	/** Get the component stored in column of this Entities Archetype */
+	Component component(int column) {
+		return index < 0 ? detached[column] : archetype.get(index, column);
 	}
 	
 	//
@@ -0,0 +1,128 @@
+package engine.core;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * An EntityCommandBuffer records structural changes - placing a new Entity, destroying an Entity,
+ * attaching and detaching components - so they can be played back together later.<br>
+ * While the Engine is iterating over Chunks the ComponentStore records into its buffer instead of
+ * moving Entities between Chunks, and plays the buffer back at the end of the simulation part of
+ * Engine.step(). Until then:<br>
+ * - A created Entity can be found through World and have components attached straight away,
+ * but it is not iterated over.<br>
+ * - A destroyed Entity can no longer be found through World, but is still iterated over.<br>
+ * - A component attached to or detached from an existing Entity has no owner change until playback,
+ * but can't be attached anywhere else in the meantime.<br>
+ * - An Entity created and destroyed before playback is never placed, and is recycled at playback.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class EntityCommandBuffer {
+
+	private static final byte CREATE = 0;
+	private static final byte DESTROY = 1;
+	private static final byte ATTACH = 2;
+	private static final byte DETACH = 3;
+
+	private byte[] ops = new byte[64];
+	private Entity[] entities = new Entity[64];
+	private Component[] components = new Component[64];
+	private int size = 0;
+
+	/** The components with an attach waiting, so they can't be attached twice */
+	private final IdentityHashMap<Component, Entity> attaching = new IdentityHashMap<Component, Entity>();
+
+	/** Package-private constructor. The ComponentStore owns the buffer. */
+	EntityCommandBuffer() { }
+
+	/** The number of changes waiting to be played back */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if there are no changes waiting to be played back */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Records that a newly created Entity needs placing into its Archetype */
+	void create(Entity entity) {
+		record(CREATE, entity, null);
+	}
+
+	/** Records that a destroyed Entity needs taking out of its Archetype */
+	void destroy(Entity entity) {
+		record(DESTROY, entity, null);
+	}
+
+	/**
+	 * Records that component needs attaching to entity.
+	 * @throws IllegalStateException if component is already waiting to be attached.
+	 */
+	void attach(Entity entity, Component component) {
+		if(attaching.containsKey(component))
+			throw new IllegalStateException("Component cannot have an owner. " + component + " is already being attached to " + attaching.get(component));
+		attaching.put(component, entity);
+		record(ATTACH, entity, component);
+	}
+
+	/** Returns true if component is waiting to be attached */
+	boolean isAttaching(Component component) {
+		return attaching.containsKey(component);
+	}
+
+	/** Records that component needs detaching from entity */
+	void detach(Entity entity, Component component) {
+		record(DETACH, entity, component);
+	}
+
+	/**
+	 * Applies every recorded change to the store in the order they were recorded, then clears the buffer.
+	 * @param store The store to apply the changes to. The caller must hold its lock and have stopped deferring.
+	 */
+	void playback(ComponentStore store) {
+		attaching.clear();
+		for(int i = 0; i < size; i++) {
+			Entity entity = entities[i];
+			switch(ops[i]) {
+			case CREATE :
+				if(entity.getWorld().getEntity(entity.getID()) == entity) //it may have been destroyed before it was placed
+					store.place(entity);
+				break;
+			case DESTROY :
+				store.remove(entity);
+				break;
+			case ATTACH :
+				store.attach(entity, components[i]);
+				break;
+			case DETACH :
+				store.detach(entity, components[i]);
+				break;
+			}
+		}
+		//Only recycle once everything has been applied, later changes may still refer to a destroyed Entity
+		for(int i = 0; i < size; i++) {
+			Entity entity = entities[i];
+			if(ops[i] == DESTROY && entity.index < 0)
+				entity.getWorld().recycle(entity);
+			else if(ops[i] == CREATE && entity.index < 0 && entity.getID() != 0 && entity.getWorld().getEntity(entity.getID()) != entity)
+				entity.getWorld().recycle(entity); //created and destroyed before it was ever placed
+			entities[i] = null;
+			components[i] = null;
+		}
+		size = 0;
+	}
+
+	private void record(byte op, Entity entity, Component component) {
+		if(size == ops.length) {
+			ops = Arrays.copyOf(ops, size*2);
+			entities = Arrays.copyOf(entities, size*2);
+			components = Arrays.copyOf(components, size*2);
+		}
+		ops[size] = op;
+		entities[size] = entity;
+		components[size] = component;
+		size++;
+	}
+
+}
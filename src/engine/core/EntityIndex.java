@@ -0,0 +1,81 @@
+package engine.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A multi-map from a String key (a name or a tag) to the Entities that have it.<br>
+ * Writes are synchronized, reads never lock so lookups don't contend with whoever is
+ * creating and destroying Entities.
+ * @author Hamish Rae-Hodgson.
+ */
+final class EntityIndex {
+
+	/** The Entities filed under each key */
+	private final ConcurrentHashMap<String, Set<Entity>> entries = new ConcurrentHashMap<String, Set<Entity>>();
+
+	/** Every key in order, for prefix lookups */
+	private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<String>();
+
+	/** Files entity under key. Null keys are not indexed. */
+	synchronized void add(String key, Entity entity) {
+		if(key == null) return;
+		Set<Entity> set = entries.get(key);
+		if(set == null) {
+			set = Collections.newSetFromMap(new ConcurrentHashMap<Entity, Boolean>());
+			entries.put(key, set);
+			keys.add(key);
+		}
+		set.add(entity);
+	}
+
+	/** Removes entity from under key */
+	synchronized void remove(String key, Entity entity) {
+		if(key == null) return;
+		Set<Entity> set = entries.get(key);
+		if(set == null) return;
+		set.remove(entity);
+		if(set.isEmpty()) {
+			entries.remove(key);
+			keys.remove(key);
+		}
+	}
+
+	/** <b>O(1)</b> - Get any one of the Entities filed under key, or null if there are none */
+	Entity getAny(String key) {
+		if(key == null) return null;
+		Set<Entity> set = entries.get(key);
+		if(set != null)
+			for(Entity entity : set)
+				return entity;
+		return null;
+	}
+
+	/** <b>O(1)</b> - Copy the Entities filed under key into out */
+	List<Entity> get(String key, List<Entity> out) {
+		if(key == null) return out;
+		Set<Entity> set = entries.get(key);
+		if(set != null)
+			out.addAll(set);
+		return out;
+	}
+
+	/** <b>O(log k + m)</b> - Copy the Entities filed under every key that starts with prefix into out */
+	List<Entity> getWithPrefix(String prefix, List<Entity> out) {
+		for(String key : keys.tailSet(prefix)) {
+			if(!key.startsWith(prefix)) break;
+			get(key, out);
+		}
+		return out;
+	}
+
+	/** The number of Entities filed under key */
+	int count(String key) {
+		Set<Entity> set = key == null ? null : entries.get(key);
+		return set == null ? 0 : set.size();
+	}
+
+}
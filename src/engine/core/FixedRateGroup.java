@@ -0,0 +1,156 @@
+package engine.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import engine.components.Behaviour;
+
+/**
+ * A FixedRateGroup runs its ComponentSystems, and the fixedUpdate() of the Behaviour classes given to it,
+ * at a fixed rate of its own alongside the Clock's fixed steps. Physics might step at 120Hz while AI thinks at 10Hz.<br>
+ * Each group keeps its own fixed time and catches it up to the Clock's time every Engine step, running
+ * no more than getMaxCatchUp() steps and dropping the rest. While one of its systems or Behaviours runs,
+ * Time.getFixedDeltaTime() and Time.getFixedTime() read the group's.<br>
+ * Get one with Engine.addFixedRateGroup(name, hz).
+ * @author Hamish Rae-Hodgson.
+ */
+public final class FixedRateGroup {
+
+	/** The World whose Engine steps this group */
+	private final World world;
+
+	/** Updates the Behaviours given to this group */
+	private final BehaviourScheduler scheduler;
+
+	private final String name;
+
+	/** The length of a step in nanoseconds */
+	private final long fixedDeltaTime;
+
+	/** The fixed time this group has simulated in nanoseconds */
+	private long fixedTime = 0;
+
+	/** The most steps run in one Engine step */
+	private volatile int maxCatchUp = 8;
+
+	private volatile long droppedSteps = 0;
+
+	/** Run every step in the order they were added */
+	private final List<ComponentSystem> systems = new CopyOnWriteArrayList<ComponentSystem>();
+
+	/** Package-private constructor. See Engine.addFixedRateGroup(). */
+	FixedRateGroup(World world, BehaviourScheduler scheduler, String name, int hz) {
+		if(hz <= 0)
+			throw new IllegalArgumentException("The fixed rate must be more than 0. hz=" + hz);
+		this.world = world;
+		this.scheduler = scheduler;
+		this.name = name;
+		this.fixedDeltaTime = 1000000000L/hz;
+	}
+
+	/** The name given to Engine.addFixedRateGroup() */
+	public String getName() {
+		return name;
+	}
+
+	/** The length of a step in nanoseconds */
+	public long getFixedDeltaNanos() {
+		return fixedDeltaTime;
+	}
+
+	/** The fixed time this group has simulated in nanoseconds */
+	public long getFixedTimeNanos() {
+		return fixedTime;
+	}
+
+	/**
+	 * Sets the most steps this group runs in one Engine step to catch up. Defaults to 8.
+	 * @param steps At least 1.
+	 */
+	public void setMaxCatchUp(int steps) {
+		if(steps < 1)
+			throw new IllegalArgumentException("At least one fixed step must be allowed. steps=" + steps);
+		maxCatchUp = steps;
+	}
+
+	/** The most steps this group runs in one Engine step to catch up */
+	public int getMaxCatchUp() {
+		return maxCatchUp;
+	}
+
+	/** The number of steps that have been dropped to catch up */
+	public long getDroppedSteps() {
+		return droppedSteps;
+	}
+
+	/**
+	 * Registers a ComponentSystem to be run every step of this group, after those already added.
+	 * @param system The ComponentSystem. It can only be added to one Engine, once.
+	 */
+	public void addSystem(ComponentSystem system) {
+		system.register(world);
+		systems.add(system);
+	}
+
+	/**
+	 * Stops running a ComponentSystem. It can't be added again.
+	 * @param system The ComponentSystem.
+	 * @return true if it was in this group.
+	 */
+	public boolean removeSystem(ComponentSystem system) {
+		return systems.remove(system);
+	}
+
+	/**
+	 * Moves the fixedUpdate() of type and its subclasses into this group, so they are called every step of
+	 * this group instead of every fixed step of the Engine. update() is still called every frame.
+	 * A class can only be in one group; adding it to another moves it.
+	 * @param type The Behaviour class.
+	 */
+	public void addBehaviour(Class<? extends Behaviour> type) {
+		scheduler.setFixedRateGroup(type, this);
+	}
+
+	/**
+	 * Gives the fixedUpdate() of type back to the Engine's fixed steps.
+	 * @param type The Behaviour class.
+	 * @return true if it was in this group.
+	 */
+	public boolean removeBehaviour(Class<? extends Behaviour> type) {
+		return scheduler.removeFixedRateGroup(type, this);
+	}
+
+	/** Starts the group again from the given fixed time in nanoseconds */
+	void reset(long fixedTime) {
+		this.fixedTime = fixedTime;
+	}
+
+	/** Runs every step that is due by the Clock's time, up to getMaxCatchUp() of them */
+	void step(Clock clock) {
+		int steps = Clock.stepsDue(clock.getTimeNanos() - fixedTime, fixedDeltaTime);
+		int max = maxCatchUp;
+		if(steps > max) {
+			fixedTime += (steps - max)*fixedDeltaTime;
+			droppedSteps += steps - max;
+			steps = max;
+		}
+		if(steps == 0) return;
+		clock.setStepping(this);
+		try {
+			for(int i = 0; i < steps; i++) {
+				fixedTime += fixedDeltaTime;
+				for(ComponentSystem system : systems)
+					system.run();
+				scheduler.fixedUpdate(this);
+			}
+		} finally {
+			clock.setStepping(null);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FixedRateGroup [name=" + name + ", hz=" + 1000000000L/fixedDeltaTime + ", systems=" + systems.size() + "]";
+	}
+
+}
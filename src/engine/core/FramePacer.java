@@ -0,0 +1,256 @@
+package engine.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A FramePacer holds a loop to a frame rate. Call reset() before the first frame and pace() at the
+ * end of every frame, and pace() waits out whatever is left of the frame.<br>
+ * Parking alone oversleeps by anything from 50us to a millisecond depending on the kernel, so the
+ * wait parks until it is close to the deadline and then yields until it arrives. How close is learnt
+ * from how late the parks have been waking up.<br>
+ * Deadlines follow on from each other rather than from when pace() returned, so the rate doesn't
+ * drift. A frame that overruns by more than a whole frame starts the deadlines again from now instead
+ * of rushing the frames after it.<br>
+ * A FramePacer must only be paced by one thread. Its settings and statistics can be used from any.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class FramePacer {
+
+	/** How a FramePacer waits */
+	public enum Mode {
+		/** Don't wait at all, run as fast as possible */
+		UNCAPPED,
+		/** Wait out every frame at the frame rate */
+		FIXED,
+		/** Like FIXED, but while frames can't keep up drop to a whole fraction of the frame rate (60, 30, 20, 15...) so they stay evenly spaced */
+		ADAPTIVE
+	}
+
+	/** The most time the wait will spend yielding instead of parking */
+	private static final long MAX_SPIN = 2000000;
+
+	/** The slow frames in a row before ADAPTIVE drops to the next fraction */
+	private static final int SLOW_TO_DROP = 3;
+
+	/** The frames in a row with headroom at the next fraction up before ADAPTIVE climbs back */
+	private static final int FAST_TO_CLIMB = 60;
+
+	private volatile Mode mode;
+
+	/** The time a frame should take at the frame rate */
+	private volatile long frameNanos;
+
+	/** What the frame rate is divided by in ADAPTIVE mode, always 1 otherwise */
+	private volatile int divisor = 1;
+
+	/** When the current frame should end */
+	private long deadline;
+
+	/** When the current frame started, the last time pace() returned */
+	private long frameStart;
+
+	/** How early to stop parking and start yielding, learnt from how late parks wake */
+	private long spin = 500000;
+
+	private int slowInARow, fastInARow;
+
+	//statistics
+	private volatile boolean runningSlow = false;
+	private volatile long frames, slowFrames;
+	private volatile long lastError, maxError, totalError;
+	private volatile long lastWork;
+
+	/**
+	 * Creates a FramePacer.
+	 * @param mode How to wait.
+	 * @param framesPerSecond The frame rate. Ignored while UNCAPPED.
+	 */
+	public FramePacer(Mode mode, int framesPerSecond) {
+		setMode(mode);
+		setFrameRate(framesPerSecond);
+		reset();
+	}
+
+	/** How this FramePacer waits */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/** Sets how this FramePacer waits */
+	public void setMode(Mode mode) {
+		if(mode == null)
+			throw new IllegalArgumentException("The mode can't be null.");
+		this.mode = mode;
+		this.divisor = 1;
+	}
+
+	/**
+	 * Sets the frame rate FIXED and ADAPTIVE aim for.
+	 * @param framesPerSecond The frame rate, more than 0.
+	 */
+	public void setFrameRate(int framesPerSecond) {
+		if(framesPerSecond <= 0)
+			throw new IllegalArgumentException("The frame rate must be more than 0. framesPerSecond=" + framesPerSecond);
+		frameNanos = (long) ((1D/framesPerSecond)*1000000000);
+		divisor = 1;
+	}
+
+	/** The frame rate FIXED and ADAPTIVE aim for */
+	public int getFrameRate() {
+		return (int) Math.round(1000000000D/frameNanos);
+	}
+
+	/** The frame rate being paced to right now. Lower than getFrameRate() while ADAPTIVE has dropped, 0 while UNCAPPED. */
+	public float getEffectiveFrameRate() {
+		return mode == Mode.UNCAPPED ? 0 : 1000000000f/(frameNanos*divisor);
+	}
+
+	/** Starts the first frame now. Call it before the loop starts. Statistics are kept, see resetStatistics(). */
+	public void reset() {
+		frameStart = System.nanoTime();
+		deadline = frameStart + frameNanos*divisor;
+		slowInARow = 0;
+		fastInARow = 0;
+	}
+
+	/**
+	 * Waits until the current frame should end and starts the next one. Call it once at the end of every frame.<br>
+	 * Returns early if the thread is interrupted, leaving it interrupted.
+	 */
+	public void pace() {
+		long now = System.nanoTime();
+		long work = now - frameStart;
+		lastWork = work;
+		frames++;
+
+		Mode mode = this.mode;
+		if(mode == Mode.UNCAPPED) {
+			runningSlow = false;
+			frameStart = now;
+			deadline = now;
+			return;
+		}
+		if(mode == Mode.ADAPTIVE)
+			adapt(work);
+		long period = frameNanos*divisor;
+		deadline = frameStart + period;
+
+		if(now >= deadline) {
+			runningSlow = true;
+			slowFrames++;
+			record(now - deadline);
+			frameStart = now - deadline < period ? deadline : now; //a whole frame behind, start again from now
+			return;
+		}
+		runningSlow = false;
+		long woke = waitUntil(deadline);
+		record(woke - deadline);
+		frameStart = deadline;
+	}
+
+	/** Moves the divisor down while frames overrun it and back up once they have room at the next one up */
+	private void adapt(long work) {
+		int divisor = this.divisor;
+		if(work > frameNanos*divisor) {
+			fastInARow = 0;
+			if(++slowInARow >= SLOW_TO_DROP) {
+				slowInARow = 0;
+				divisor++;
+			}
+		} else {
+			slowInARow = 0;
+			if(divisor > 1 && work < frameNanos*(divisor-1)*0.8f) {
+				if(++fastInARow >= FAST_TO_CLIMB) {
+					fastInARow = 0;
+					divisor--;
+				}
+			} else {
+				fastInARow = 0;
+			}
+		}
+		this.divisor = divisor;
+	}
+
+	/** Parks until spin before deadline, then yields until deadline. Returns when it actually woke. */
+	private long waitUntil(long deadline) {
+		Thread thread = Thread.currentThread();
+		long now = System.nanoTime();
+		while(deadline - now > spin && !thread.isInterrupted()) {
+			long wake = deadline - spin;
+			LockSupport.parkNanos(wake - now);
+			now = System.nanoTime();
+			long late = now - wake;
+			//jump up to a late wake straight away, creep back down when they are on time
+			spin = late > spin ? Math.min(late, MAX_SPIN) : spin - (spin - Math.max(late, 0))/16;
+		}
+		while(now < deadline && !thread.isInterrupted()) {
+			Thread.yield();
+			now = System.nanoTime();
+		}
+		return now;
+	}
+
+	private void record(long error) {
+		lastError = error;
+		totalError += error;
+		if(error > maxError)
+			maxError = error;
+	}
+
+	/** Returns true if the last frame took longer than it should have */
+	public boolean isRunningSlow() {
+		return runningSlow;
+	}
+
+	/** The number of frames paced since the statistics were reset */
+	public long getFrameCount() {
+		return frames;
+	}
+
+	/** The number of those frames that overran */
+	public long getSlowFrameCount() {
+		return slowFrames;
+	}
+
+	/** How long the work of the last frame took in nanoseconds, not counting the wait */
+	public long getLastWorkNanos() {
+		return lastWork;
+	}
+
+	/** How far past its deadline the last frame ended in nanoseconds. 0 while UNCAPPED. */
+	public long getLastErrorNanos() {
+		return lastError;
+	}
+
+	/** The furthest past its deadline a frame has ended in nanoseconds */
+	public long getMaxErrorNanos() {
+		return maxError;
+	}
+
+	/** How far past their deadlines frames have ended on average in nanoseconds */
+	public double getMeanErrorNanos() {
+		long frames = this.frames;
+		return frames == 0 ? 0 : (double) totalError/frames;
+	}
+
+	/** How early the wait stops parking and starts yielding in nanoseconds */
+	public long getSpinNanos() {
+		return spin;
+	}
+
+	/** Zeroes the frame counts and errors */
+	public void resetStatistics() {
+		frames = 0;
+		slowFrames = 0;
+		lastError = 0;
+		maxError = 0;
+		totalError = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FramePacer [mode=%s, fps=%.1f, frames=%d, slow=%d, meanError=%.1fus, maxError=%.1fus]",
+				mode, getEffectiveFrameRate(), frames, slowFrames, getMeanErrorNanos()/1000, maxError/1000f);
+	}
+
+}
@@ -1,7 +1,5 @@
 package engine.core;
 
-import java.util.concurrent.locks.LockSupport;
-
 /**
  * The GameLoop class provides abstract methods for you to implement and <br>
  * then calls these methods at regular intervals
@@ -10,21 +8,22 @@ import java.util.concurrent.locks.LockSupport;
  */
 public abstract class GameLoop extends Thread {
 	private boolean running = true;
-	private boolean runningSlow = false;
 	
 	//standard time
 	//nanos
 	private long timeGameStart;
 	private long timeLastFrame;
+	private long timeElapsed;
 	//seconds
-	private float timeElapsed;
 	private float deltaTime;
 	
 	//fixed time
-	private float fixedDeltaTime;;
-	private float fixedTime; //elapsed time in seconds
+	//nanos, so nothing drifts
+	private long fixedDeltaTime;
+	private long fixedTime;
+	private int maxCatchUp = 8;
 	
-	private long syncRate;
+	private final FramePacer pacer;
 	
 	/**
 	 * Creates a new GameLoop with the given parameters
@@ -32,8 +31,8 @@ public abstract class GameLoop extends Thread {
 	 * @param fixedUPS fixedUpdate() calls per second.
 	 */
 	public GameLoop(int fps, int fixedUPS) {
-		syncRate = (long) ((1D/fps)*1000000000); //fps in nanoseconds.
-		fixedDeltaTime = 1f/fixedUPS;// fixed updates per seconds in seconds.
+		pacer = new FramePacer(FramePacer.Mode.FIXED, fps);
+		fixedDeltaTime = 1000000000L/fixedUPS;// fixed updates per seconds in nanoseconds.
 	}
 	
 	/**
@@ -41,7 +40,26 @@ public abstract class GameLoop extends Thread {
 	 * @return True if no time is spare after an update loop.
 	 */
 	public boolean isRunningSlow() {
-		return runningSlow;
+		return pacer.isRunningSlow();
+	}
+	
+	/**
+	 * Returns the FramePacer that holds this loop to its fps.
+	 * @return Use it to change the Mode or read the pacing statistics.
+	 */
+	public FramePacer getPacer() {
+		return pacer;
+	}
+	
+	/**
+	 * Sets the most fixedTick() calls made in one loop to catch up after a slow frame.
+	 * Any more are skipped. Defaults to 8.
+	 * @param steps At least 1.
+	 */
+	public void setMaxCatchUp(int steps) {
+		if(steps < 1)
+			throw new IllegalArgumentException("At least one fixed step must be allowed. steps=" + steps);
+		maxCatchUp = steps;
 	}
 	
 	@Override
@@ -49,13 +67,18 @@ public abstract class GameLoop extends Thread {
 		setupTime();
 		while(running) {
 			updateTime();
-			while(fixedTime < timeElapsed) {
-				fixedTick(fixedDeltaTime);
+			int steps = Clock.stepsDue(timeElapsed - fixedTime, fixedDeltaTime);
+			if(steps > maxCatchUp) { //skip the oldest rather than spiral
+				fixedTime += (steps - maxCatchUp)*fixedDeltaTime;
+				steps = maxCatchUp;
+			}
+			for(; steps > 0; steps--) {
+				fixedTick(Clock.nanosToSeconds(fixedDeltaTime));
 				fixedTime += fixedDeltaTime;
 			}
 			tick(deltaTime);
 			render();
-			sleepforabit(syncRate-(System.nanoTime()-timeLastFrame)); //syncRate - (time taken)
+			pacer.pace();
 		}
 	}
 	
@@ -68,6 +91,7 @@ public abstract class GameLoop extends Thread {
 		timeElapsed = 0;
 		deltaTime = 0;
 		fixedTime = 0;
+		pacer.reset();
 	}
 	
 	/**
@@ -75,7 +99,7 @@ public abstract class GameLoop extends Thread {
 	 */
 	private void updateTime() {
 		long now = System.nanoTime();
-		timeElapsed = (now-timeGameStart)*0.000000001f;
+		timeElapsed = now-timeGameStart;
 		deltaTime = (now-timeLastFrame)*0.000000001f;
 		timeLastFrame = now;
 	}
@@ -98,17 +122,4 @@ public abstract class GameLoop extends Thread {
 	 */
 	protected abstract void render();
 	
-	/** 
-	 * If nanos is greater than 0 sleeps the thread for the length of nanos.
-	 * @param nanos Desired sleep duration in nanoseconds.
-	 */
-	private void sleepforabit(long nanos) {
-		if(nanos > 0)  {
-			runningSlow = false;
-			LockSupport.parkNanos(nanos);
-		} else {
-			runningSlow = true;
-		}
-	}
-	
 }
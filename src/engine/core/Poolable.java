@@ -0,0 +1,16 @@
+package engine.core;
+
+/**
+ * A Component that implements Poolable is recycled instead of thrown away when its Entity
+ * is destroyed while pooling is on. See World.setPooling(boolean).
+ * @author Hamish Rae-Hodgson.
+ */
+public interface Poolable {
+
+	/**
+	 * Put this component back the way a freshly constructed one would be.<br>
+	 * Called as it goes into the pool, so it must also drop references it no longer needs.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,65 @@
+package engine.core;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per type free lists of recycled Entities and components.
+ * @author Hamish Rae-Hodgson.
+ */
+final class Pools {
+
+	private final Map<Class<?>, ArrayDeque<Object>> pools = new HashMap<Class<?>, ArrayDeque<Object>>();
+
+	/** The most objects of a single type kept around */
+	private int capacity = 1024;
+
+	/**
+	 * Takes a recycled object of exactly the given type out of its pool.
+	 * @param type The type of object.
+	 * @return The object, or null if the pool is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized <E> E obtain(Class<E> type) {
+		ArrayDeque<Object> pool = pools.get(type);
+		return pool == null ? null : (E)pool.poll();
+	}
+
+	/**
+	 * Puts an object into the pool for its type.
+	 * @param object The object. It must already be reset.
+	 * @return true if it was kept - false if the pool was full.
+	 */
+	synchronized boolean free(Object object) {
+		ArrayDeque<Object> pool = pools.get(object.getClass());
+		if(pool == null) {
+			pool = new ArrayDeque<Object>();
+			pools.put(object.getClass(), pool);
+		}
+		if(pool.size() >= capacity)
+			return false;
+		pool.push(object);
+		return true;
+	}
+
+	/** The number of recycled objects of exactly the given type waiting to be reused */
+	synchronized int size(Class<?> type) {
+		ArrayDeque<Object> pool = pools.get(type);
+		return pool == null ? 0 : pool.size();
+	}
+
+	/** Set the most objects of a single type kept around */
+	synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+		for(ArrayDeque<Object> pool : pools.values())
+			while(pool.size() > capacity)
+				pool.pop();
+	}
+
+	/** Throws away everything that was pooled */
+	synchronized void clear() {
+		pools.clear();
+	}
+
+}
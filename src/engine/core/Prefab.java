@@ -0,0 +1,60 @@
+package engine.core;
+
+/**
+ * A Prefab is a snapshot of an Entity's components that can be stamped out many times with
+ * World.instantiate(prefab, count), in the World it was made in or any other.<br>
+ * The components are captured once with Component.copy() when the Prefab is made, and each
+ * instance gets copies of those, so instantiating never uses reflection. Objects the components
+ * refer to, like a Mesh or a Material, are shared by every instance.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Prefab {
+
+	/** The name every instance is given */
+	private final String name;
+
+	/** The Archetype every instance is placed in */
+	private final Archetype archetype;
+
+	/** The captured components in Archetype order. The Transform is always first. */
+	private final Component[] templates;
+
+	/**
+	 * Captures the components of template as they are right now. Later changes to template
+	 * do not change the Prefab.
+	 * @param template The Entity to capture.
+	 */
+	public Prefab(Entity template) {
+		synchronized(template.getWorld().getStore()) {
+			this.name = template.getName();
+			this.archetype = template.archetype;
+			this.templates = new Component[archetype.getColumnCount()];
+			for(int column = 0; column < templates.length; column++)
+				templates[column] = template.component(column).copy();
+		}
+	}
+
+	/** The name every instance is given */
+	public String getName() {
+		return name;
+	}
+
+	/** The Archetype every instance is placed in */
+	public Archetype getArchetype() {
+		return archetype;
+	}
+
+	/** Makes the components for one instance, copied from the captured ones */
+	Component[] newRow() {
+		Component[] row = new Component[templates.length];
+		for(int column = 0; column < row.length; column++)
+			row[column] = templates[column].copy();
+		return row;
+	}
+
+	@Override
+	public String toString() {
+		return "Prefab [name=" + name + ", archetype=" + archetype + "]";
+	}
+
+}
@@ -0,0 +1,84 @@
+package engine.core;
+
+import java.util.Arrays;
+
+/**
+ * A Query is a live view of every Entity that has at least one component of each of a set of types.<br>
+ * It keeps the Archetypes that match, so attaching, detaching and destroying just moves Entities
+ * in or out of those Archetypes and the Query is never rebuilt. New Archetypes are offered to the
+ * Query by the ComponentStore as they are created.<br>
+ * Get one with World.query(types...).
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Query {
+
+	/** The types an Entity needs at least one component of to match */
+	private final Class<?>[] types;
+
+	/** The matching Archetypes. Only the first count are valid. Replaced, never modified, when it grows. */
+	private volatile Archetype[] archetypes = new Archetype[4];
+
+	/** The number of matching Archetypes */
+	private volatile int count = 0;
+
+	/**
+	 * Creates a Query matching Entities that have each of types.<br>
+	 * Package-private constructor.
+	 * @param types The component types to match.
+	 */
+	Query(Class<?>[] types) {
+		this.types = types;
+	}
+
+	/** The component types this Query matches. DO NOT MODIFY. */
+	public Class<?>[] getTypes() {
+		return types;
+	}
+
+	/** The number of matching Archetypes. Some of them may be empty. */
+	public int getArchetypeCount() {
+		return count;
+	}
+
+	/** Get the matching Archetype at index */
+	public Archetype getArchetype(int index) {
+		return archetypes[index];
+	}
+
+	/** <b>O(a)</b> - The number of Entities that currently match, where a is the number of matching Archetypes */
+	public int size() {
+		Archetype[] archetypes = this.archetypes;
+		int size = 0;
+		for(int i = 0, n = count; i < n; i++)
+			size += archetypes[i].size();
+		return size;
+	}
+
+	/** Tests whether Entities in the given Archetype match this Query */
+	boolean matches(Archetype archetype) {
+		for(Class<?> type : types)
+			if(archetype.columnsOf(type).length == 0)
+				return false;
+		return true;
+	}
+
+	/** Adds the Archetype if it matches. Called by the ComponentStore when an Archetype is created. */
+	void offer(Archetype archetype) {
+		if(!matches(archetype)) return;
+		Archetype[] archetypes = this.archetypes;
+		if(count == archetypes.length)
+			archetypes = Arrays.copyOf(archetypes, count*2);
+		archetypes[count] = archetype;
+		this.archetypes = archetypes;
+		count++;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder names = new StringBuilder();
+		for(Class<?> type : types)
+			names.append(names.length() == 0 ? "" : ", ").append(type.getSimpleName());
+		return "Query [types=(" + names + "), archetypes=" + count + "]";
+	}
+
+}
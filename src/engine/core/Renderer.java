@@ -0,0 +1,40 @@
+package engine.core;
+
+/**
+ * Draws a World at the end of each of its Engine's steps. See Engine.setRenderer().<br>
+ * An Engine without a Renderer runs headless - it never renders and never loads anything to do with it.
+ * @author Hamish Rae-Hodgson.
+ */
+public interface Renderer {
+
+	/**
+	 * Draws world as it is now. Called on the stepping thread at the end of each step, unless the Engine is pipelined.
+	 * @param world The World to draw.
+	 */
+	public void render(World world);
+
+	/**
+	 * Captures where things are before a fixed step, to interpolate from.
+	 * Called on the stepping thread before every fixed step while the Engine is pipelined, so the last call of a
+	 * frame is the one to keep. Frames without a fixed step don't call it, and should keep interpolating from
+	 * the poses before the last fixed step. Structural changes are deferred, so it sees the same Entities as captureCurrent().
+	 * @param world The World to capture.
+	 */
+	public void capturePrevious(World world);
+
+	/**
+	 * Captures everything needed to draw the frame without touching world again.
+	 * Called on the stepping thread at the end of each step while the Engine is pipelined, before structural changes are played back.
+	 * @param world The World to capture.
+	 * @param alpha How far through the next fixed step the frame is, 0..1.
+	 */
+	public void captureCurrent(World world, float alpha);
+
+	/**
+	 * Hands the captured frame off to be drawn, without waiting for it to be drawn.
+	 * Called on the stepping thread after captureCurrent().
+	 * @param world The World that was captured.
+	 */
+	public void present(World world);
+
+}
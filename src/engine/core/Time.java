@@ -3,72 +3,63 @@ package engine.core;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Reads the Clock of the current World, see World.current().
+ * @author Hamish Rae-Hodgson.
+ */
 public class Time {
 	
-	/** Time simulated */
-	private static long time = 0;
-	private static long lastTime = 0;
-
-	/** Fixed time simulated */
-	private static long fixedTime = 0;
-	private static final long fixedDeltaTime = secondsToNanos(1/120f);
-	
 	private Time() { /* Private constructor to prevent instantiation */ }
 	
-	/** Reset the Time */
-	static void reset() {
-		time = lastTime = fixedTime = 0;
-	}
-	
 	/** The delta time to advance the simulation */
 	public static float getDeltaTime() {
-		return nanosToSeconds(time - lastTime);
+		return World.current().getClock().getDeltaTime();
 	}
 	
 	/** The unchanging delta time to advance simulation inside fixedTick() */
 	public static float getFixedDeltaTime() {
-		return nanosToSeconds(fixedDeltaTime);
+		return World.current().getClock().getFixedDeltaTime();
 	}
 	
 	/** The time in seconds since the start of the game */
 	public static float getTime() {
-		return nanosToSeconds(time);
+		return World.current().getClock().getTime();
 	}
 	
 	/** The time in seconds that has been passed in fixedTick updates */
 	public static float getFixedTime() {
-		return nanosToSeconds(fixedTime);
+		return World.current().getClock().getFixedTime();
 	}
 	
-	/** Progress time by nanos */
-	static void progressTime(long nanos) {
-		lastTime = time;
-		time = time + nanos;
+	/** The delta time to advance the simulation in nanoseconds */
+	public static long getDeltaNanos() {
+		return World.current().getClock().getDeltaNanos();
 	}
 	
-	/** Progress fixedTime by fixedDeltaTime */
-	static void progressFixedTime() {
-		fixedTime = fixedTime + fixedDeltaTime;
+	/** The unchanging delta time of a fixed step in nanoseconds */
+	public static long getFixedDeltaNanos() {
+		return World.current().getClock().getFixedDeltaNanos();
 	}
 	
-	/** Converts the given nanoseconds to seconds */
-	private static float nanosToSeconds(long nanos) {
-		return nanos*0.000000001f;
+	/** The time in nanoseconds since the start of the game */
+	public static long getTimeNanos() {
+		return World.current().getClock().getTimeNanos();
 	}
-
-	/** Converts the given seconds to nanoseconds */
-	private static long secondsToNanos(float seconds) {
-		return (long) (seconds*1000000000L);
+	
+	/** The time in nanoseconds that has been passed in fixedTick updates */
+	public static long getFixedTimeNanos() {
+		return World.current().getClock().getFixedTimeNanos();
 	}
 	
 	public static void main(String[] args) {
 		Logger log = LogManager.getLogger();
+		Clock clock = World.current().getClock();
 		log.trace("dt={} fdt={}, t={} ft={}", getDeltaTime(), getFixedDeltaTime(), getTime(), getFixedTime());
 		for(int i = 0; i < 60000; i++) {
-			progressTime(secondsToNanos(1/60f));
-			progressFixedTime();
+			clock.progressTime(Clock.secondsToNanos(1/60f));
+			clock.progressFixedTime();
 			log.trace("dt={} fdt={}, t={} ft={}", getDeltaTime(), getFixedDeltaTime(), getTime(), getFixedTime());
-			progressFixedTime();
+			clock.progressFixedTime();
 			log.trace("dt={} fdt={}, t={} ft={}", getDeltaTime(), getFixedDeltaTime(), getTime(), getFixedTime());
 			log.trace("--------------------------------------------------------");
 		}
@@ -1,30 +1,212 @@
 package engine.core;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+
+import engine.components.Transform;
+import engine.profiling.EntityEvent;
+import engine.tasks.TaskManager;
 
 /**
- * The world acts as both a container and factory for entities.
+ * The world acts as both a container and factory for entities.<br>
+ * Each World owns its Entities, its Clock, its TaskManager, its Camera and the Engine that steps it,
+ * and shares nothing with any other World, so many can be stepped at once on their own threads.
+ * While a World is being stepped it is the current World of the stepping thread, see World.current().<br>
+ * Entity IDs are generational handles. The low INDEX_BITS bits are the index of the slot the
+ * Entity lives in, the bits above are the generation of that slot. A slot's generation is bumped
+ * every time its Entity is destroyed, so an old ID never finds the Entity that reused its slot.
+ * Generations wrap after GENERATION_MASK reuses, so freed slots are reused oldest first and only once
+ * more than MIN_FREE of them are waiting, which takes over half a million destroys to bring an old ID back.
  * @author Hamish Rae-Hodgson.
  */
 public class World {
 
-	/** All the Entities in the world */
-	private static Map<Integer, Entity> entities = Collections.synchronizedMap(new HashMap<Integer, Entity>());
-	
-	private World() { /* Private constructor to prevent instantiation */ }
+	/** The number of bits of an ID that index into the slots */
+	public static final int INDEX_BITS = 22;
+
+	/** The maximum number of Entities that can be alive at once */
+	public static final int MAX_ENTITIES = 1 << INDEX_BITS;
+
+	private static final int INDEX_MASK = MAX_ENTITIES - 1;
+
+	/** Generations wrap within 9 bits, keeping IDs positive */
+	private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+	/** The freed slots left waiting before the oldest is reused, so one slot isn't churned through its generations */
+	static final int MIN_FREE = 1024;
+
+	/** The World each thread is stepping, or null if it isn't stepping one */
+	private static final ThreadLocal<World> bound = new ThreadLocal<World>();
+
+	/** The World used by threads that aren't stepping one */
+	private static final World defaultWorld = new World();
+
+	/** All the Entities in the world, indexed by slot. Replaced, never shrunk, when it grows. */
+	private volatile Entity[] slots = new Entity[1024];
+
+	/** The generation the next Entity in each slot will get. Never 0 so that 0 is never a valid ID. */
+	private int[] generations = newGenerations(0, 1024);
+
+	/**
+	 * Slots freed by destroyed Entities, a ring of freeCount slots from freeHead, oldest first.
+	 * May hold slots that have since been taken by createEntity(id, name). Its length is a power of two.
+	 */
+	private int[] free = new int[2048];
+	private int freeHead = 0;
+	private int freeCount = 0;
+
+	/** Every slot at or past this index has never been handed out by getFreeID() */
+	private int highWater = 0;
+
+	/** The number of Entities alive in the world */
+	private volatile int count = 0;
+
+	/** Every Entity in the world filed by name */
+	private final EntityIndex names = new EntityIndex();
+
+	/** Every Entity in the world filed by each of its tags */
+	private final EntityIndex tags = new EntityIndex();
+
+	/** The view handed out by getEntities() */
+	private final Collection<Entity> entityView = new AbstractCollection<Entity>() {
+
+		@Override
+		public Iterator<Entity> iterator() {
+			final Entity[] slots = World.this.slots;
+			return new Iterator<Entity>() {
+				private int index = 0;
+				private Entity upcoming = advance();
+
+				/** Finds the next Entity, reading each slot once so a concurrent destroy can't hand out null */
+				private Entity advance() {
+					while(index < slots.length) {
+						Entity entity = slots[index++];
+						if(entity != null) return entity;
+					}
+					return null;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return upcoming != null;
+				}
+
+				@Override
+				public Entity next() {
+					if(upcoming == null) throw new NoSuchElementException();
+					Entity entity = upcoming;
+					upcoming = advance();
+					return entity;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException("Use World.destroy(entity)");
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+	};
+
+	/** Recycled Entities and components, used while pooling is on */
+	private final Pools pools = new Pools();
+
+	private volatile boolean pooling = false;
+
+	/** Where the components of every Entity in the world are stored */
+	private final ComponentStore store = new ComponentStore();
+
+	/** The simulated time of this world */
+	private final Clock clock = new Clock();
+
+	/** The Tasks run every fixed step of this world */
+	private final TaskManager tasks = new TaskManager();
+
+	/** The Camera this world is viewed through */
+	private final Camera camera = new Camera();
+
+	/** The Engine that steps this world */
+	private final Engine engine;
+
+	/**
+	 * Creates a new empty World with its own Entities, Clock, TaskManager, Camera and Engine.<br>
+	 * Nothing is shared with any other World. Start it with getEngine().start().
+	 */
+	public World() {
+		this.engine = new Engine(this);
+	}
+
+	/**
+	 * Gets the World being stepped by the calling thread. Behaviours and Tasks are always
+	 * updated with their own World current. Threads that aren't stepping a World get the default World.
+	 * @return The current World. Never null.
+	 */
+	public static World current() {
+		World world = bound.get();
+		return world != null ? world : defaultWorld;
+	}
+
+	/**
+	 * Makes world the current World of the calling thread.
+	 * @param world The World, or null to go back to the default World.
+	 * @return The World that was bound before, or null if there wasn't one.
+	 */
+	static World bind(World world) {
+		World previous = bound.get();
+		if(world == null) bound.remove();
+		else bound.set(world);
+		return previous;
+	}
+
+	/**
+	 * Runs runnable on the calling thread with this as the current World, for threads of
+	 * your own that work on it while it is being stepped.
+	 * @param runnable What to run.
+	 */
+	public void run(Runnable runnable) {
+		World previous = bind(this);
+		try {
+			runnable.run();
+		} finally {
+			bind(previous);
+		}
+	}
+
+	/** The simulated time of this world */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/** The Tasks run every fixed step of this world */
+	public TaskManager getTaskManager() {
+		return tasks;
+	}
+
+	/** The Camera this world is viewed through */
+	public Camera getCamera() {
+		return camera;
+	}
+
+	/** The Engine that steps this world */
+	public Engine getEngine() {
+		return engine;
+	}
 
 	/**
 	 * Create an Entity with the given name and register it in this world.
 	 * @param name The name of the Entity.
 	 * @return The Entity that was created and added to this world.
 	 */
-	public static Entity createEntity(String name) {
+	public synchronized Entity createEntity(String name) {
 		return createEntity(getFreeID(), name);
 	}
 
@@ -36,24 +218,87 @@ public class World {
 	 * @param name The name of the Entity.
 	 * @return The entity.
 	 */
-	public static Entity createEntity(int id, String name) {
-		if(getEntity(id) != null)
+	public synchronized Entity createEntity(int id, String name) {
+		if(id <= 0)
+			throw new IllegalArgumentException("You can't create an Entity with id=" + id + " because ids are positive.");
+
+		int index = id & INDEX_MASK;
+		if(index < slots.length && slots[index] != null)
 			throw new IllegalStateException("You can't create an Entity with id=" + id + " because one already exists.");
 
-		synchronized(entities) {
-			Entity entity = new Entity(id, name);
-			entities.put(entity.getID(), entity);
-			return entity;
+		ensureCapacity(index+1);
+		generations[index] = id >>> INDEX_BITS;
+		Entity entity = pooling ? pools.obtain(Entity.class) : null;
+		if(entity == null) entity = new Entity(this, id, name);
+		else entity.reuse(id, name);
+		slots[index] = entity;
+		count++;
+		names.add(name, entity);
+		store.place(entity);
+		EntityEvent event = new EntityEvent();
+		if(event.shouldCommit()) {
+			event.id = id;
+			event.name = name;
+			event.count = 1;
+			event.entities = count;
+			event.commit();
+		}
+		return entity;
+	}
+
+	/**
+	 * Creates an Entity from the Prefab and registers it in this world.
+	 * @param prefab The Prefab to copy.
+	 * @return The Entity.
+	 */
+	public Entity instantiate(Prefab prefab) {
+		return instantiate(prefab, 1)[0];
+	}
+
+	/**
+	 * Creates count Entities from the Prefab in one batch and registers them in this world.<br>
+	 * Room is made in the Prefab's Archetype for all of them up front and every component is
+	 * copied from the Prefab without reflection.
+	 * @param prefab The Prefab to copy.
+	 * @param count The number of Entities to create.
+	 * @return The Entities in the order they were created.
+	 */
+	public synchronized Entity[] instantiate(Prefab prefab, int count) {
+		if(count < 0)
+			throw new IllegalArgumentException("count can't be negative. count=" + count);
+		if(count + this.count > MAX_ENTITIES)
+			throw new IllegalStateException("The world is full. It can't hold more than " + MAX_ENTITIES + " Entities.");
+
+		Entity[] out = new Entity[count];
+		String name = prefab.getName();
+		Archetype archetype = store.adopt(prefab.getArchetype()); //the Prefab may have been made in another World
+		for(int i = 0; i < count; i++) {
+			int id = getFreeID();
+			Entity entity = new Entity(this, id, name, archetype, prefab.newRow());
+			slots[id & INDEX_MASK] = entity;
+			names.add(name, entity);
+			out[i] = entity;
+		}
+		this.count += count;
+		store.placeAll(out, count);
+		EntityEvent event = new EntityEvent();
+		if(count > 0 && event.shouldCommit()) {
+			event.id = out[0].getID();
+			event.name = name;
+			event.count = count;
+			event.entities = this.count;
+			event.commit();
 		}
+		return out;
 	}
-	
+
 	/**
 	 * Destroys the given entity from the world.
 	 * @param entity The entity to destroy.
 	 * @return true if the entity was in the world and it was removed<br>
 	 * false if the entity was not in the world - thus no removal was performed.
 	 */
-	public static boolean destroy(Entity entity) {
+	public boolean destroy(Entity entity) {
 		return destroyEntity(entity.getID());
 	}
 
@@ -63,72 +308,298 @@ public class World {
 	 * @return Returns true if there was an Entity with the id and it was removed.<br>
 	 * 		   Returns false if there was no Entity meaning no removal.
 	 */
-	public static boolean destroyEntity(int id) {
-		synchronized(entities) {
-			return entities.remove(id) != null;
+	public synchronized boolean destroyEntity(int id) {
+		Entity entity = getEntity(id);
+		if(entity == null)
+			return false;
+
+		int index = id & INDEX_MASK;
+		slots[index] = null;
+		int generation = (generations[index] + 1) & GENERATION_MASK;
+		generations[index] = generation == 0 ? 1 : generation;
+		if(freeCount == free.length) {
+			int[] grown = new int[free.length*2];
+			for(int i = 0; i < freeCount; i++)
+				grown[i] = free[(freeHead + i) & (free.length - 1)];
+			free = grown;
+			freeHead = 0;
 		}
+		free[(freeHead + freeCount++) & (free.length - 1)] = index;
+		count--;
+
+		names.remove(entity.getName(), entity);
+		for(String tag : entity.getTags())
+			tags.remove(tag, entity);
+		EntityEvent event = new EntityEvent();
+		if(event.shouldCommit()) {
+			event.destroyed = true;
+			event.id = id;
+			event.name = entity.getName();
+			event.count = 1;
+			event.entities = count;
+			event.commit();
+		}
+		if(store.remove(entity))
+			recycle(entity);
+		return true;
 	}
 
 	/**
 	 * <b>O(1)</b> - Get the Entity in this world that has the id.
+	 * Does not lock. Returns null for the id of an Entity that has been destroyed,
+	 * even if another Entity has since been created in the same slot.
 	 * @param id The id of the Entity you want.
 	 * @return The Entity, or null if not found.
 	 */
-	public static Entity getEntity(int id) {
-		synchronized(entities) {
-			return entities.get(id);
-		}
+	public Entity getEntity(int id) {
+		Entity[] slots = this.slots;
+		int index = id & INDEX_MASK;
+		if(index >= slots.length) return null;
+		Entity entity = slots[index];
+		return entity != null && entity.getID() == id ? entity : null;
+	}
+
+	/**
+	 * <b>O(1)</b> - Tests whether id is the handle of an Entity that is still in the world.
+	 * @param id The id to test.
+	 * @return true if the Entity has not been destroyed.
+	 */
+	public boolean isAlive(int id) {
+		return getEntity(id) != null;
+	}
+
+	/** The number of Entities in the world */
+	public int getEntityCount() {
+		return count;
 	}
-	
+
 	/**
-	 * <b>O(n)</b> - Returns an Entity with the given name. If more than one entity with 
-	 * the name exist there is no guarantee which one will be returned.
+	 * <b>O(1)</b> - Returns an Entity with the given name. If more than one entity with 
+	 * the name exist there is no guarantee which one will be returned. Does not lock.
 	 * @param name The name of the Entity you are searching for.
 	 * @return The Entity or null if none is found.
 	 */
-	public static Entity getEntity(String name) {
-		synchronized(entities) {
-			for(Entity entity : entities.values())
-				if(entity.getName().equals(name))
-					return entity;
-		}
-		return null;
+	public Entity getEntity(String name) {
+		return names.getAny(name);
 	}
 
 	/**
-	 * <b>O(n)</b> - Gets a List of Entities from this world that have the given name.
+	 * <b>O(1)</b> - Gets a List of Entities from this world that have the given name. Does not lock.
 	 * @param name The name of the Entity.
 	 * @return The list of entities. An empty list if none found. Never null.
 	 */
-	public static List<Entity> getEntities(String name) {
-		List<Entity> out = new ArrayList<Entity>(2);
-		synchronized(entities) {
-			for(Entity entity : entities.values())
-				if(entity.getName().equals(name))
-					out.add(entity);
-		}
-		return out;
+	public List<Entity> getEntities(String name) {
+		return names.get(name, new ArrayList<Entity>(Math.max(2, names.count(name))));
 	}
 
 	/**
-	 * Gets a snapshot of the entities currently in the world.
+	 * <b>O(log k + m)</b> - Gets a List of Entities whose name starts with prefix, where k is the
+	 * number of distinct names and m the number of matches. Does not lock.
+	 * @param prefix The start of the names to match. "Teddy" matches "Teddy", "Teddy1" and "TeddyBear".
+	 * @return The list of entities. An empty list if none found. Never null.
+	 */
+	public List<Entity> getEntitiesWithPrefix(String prefix) {
+		return names.getWithPrefix(prefix, new ArrayList<Entity>());
+	}
+
+	/**
+	 * <b>O(1)</b> - Gets a List of Entities that have been given the tag with Entity.addTag(tag). Does not lock.
+	 * @param tag The tag.
+	 * @return The list of entities. An empty list if none found. Never null.
+	 */
+	public List<Entity> getEntitiesWithTag(String tag) {
+		return tags.get(tag, new ArrayList<Entity>(Math.max(2, tags.count(tag))));
+	}
+
+	/**
+	 * Gets a live, read-only view of the entities currently in the world.<br>
+	 * Entities can be created and destroyed while iterating over it. Ones created or destroyed
+	 * part way through may or may not be visited.
 	 * @return The Collection of Entities.
 	 */
-	public static synchronized Collection<Entity> getEntities() {
-		synchronized(entities) {
-			return new LinkedList<Entity>(entities.values());
+	public Collection<Entity> getEntities() {
+		return entityView;
+	}
+
+	/**
+	 * <b>O(1)</b> - Gets a live view of every Entity that has at least one component of each of the given types.<br>
+	 * The Query is kept up to date as components are attached and detached and Entities are destroyed,
+	 * and is shared with anyone else asking for the same types, so hold on to it rather than
+	 * asking again each frame.
+	 * @param types The component types an Entity must have.
+	 * @return The Query.
+	 */
+	public Query query(Class<?>... types) {
+		if(types.length == 0)
+			throw new IllegalArgumentException("A query needs at least one component type.");
+		return store.query(types);
+	}
+
+	/**
+	 * Gets every Archetype in the world. Iterate over their Chunks to visit components
+	 * without looking them up Entity by Entity. Archetypes may be empty.
+	 * @return A live, read-only List of the Archetypes.
+	 */
+	public List<Archetype> getArchetypes() {
+		return store.getArchetypes();
+	}
+
+	/**
+	 * Turns pooling on or off. It is off by default.<br>
+	 * While pooling is on, destroyed Entities are recycled along with their Transform and any
+	 * components that implement Poolable. createEntity() and Entity.attachComponent(type) reuse them
+	 * before allocating new ones.<br>
+	 * A recycled Entity object becomes a different Entity when it is reused, so never hold on to
+	 * an Entity after destroying it. Hold its ID and check it with isAlive(id) instead.
+	 * @param enabled true to turn pooling on. Turning it off throws away everything pooled.
+	 */
+	public void setPooling(boolean enabled) {
+		pooling = enabled;
+		if(!enabled)
+			pools.clear();
+	}
+
+	/** Returns true if pooling is on */
+	public boolean isPooling() {
+		return pooling;
+	}
+
+	/**
+	 * Sets the most recycled objects of a single type that are kept for reuse. Defaults to 1024.
+	 * @param capacity The capacity of each pool.
+	 */
+	public void setPoolCapacity(int capacity) {
+		pools.setCapacity(capacity);
+	}
+
+	/**
+	 * Gets the number of recycled objects of exactly the given type waiting to be reused.
+	 * @param type Entity.class or a component type.
+	 * @return The number pooled.
+	 */
+	public int getPooledCount(Class<?> type) {
+		return pools.size(type);
+	}
+
+	/**
+	 * Takes a recycled component out of its pool while pooling is on.
+	 * @return The component, or null if there isn't one and a new one should be made.
+	 */
+	<E extends Component> E obtainComponent(Class<E> type) {
+		return pooling ? pools.obtain(type) : null;
+	}
+
+	/**
+	 * Recycles a destroyed Entity that has been taken out of its Chunk, while pooling is on.<br>
+	 * Every component but the Transform is detached, Poolable ones are reset and pooled.
+	 * The Entity keeps its Transform, reset, and is pooled too.
+	 */
+	void recycle(Entity entity) {
+		if(!pooling) return;
+		Transform transform = entity.getTransform();
+		Component[] row = entity.detached;
+		store.prepare(entity, new Component[] { transform });
+		for(Component component : row) {
+			if(component == transform) continue;
+			component.setOwner(null);
+			if(component instanceof Poolable) {
+				((Poolable)component).reset();
+				pools.free(component);
+			}
 		}
+		transform.reset();
+		entity.recycle();
+		pools.free(entity);
+	}
+
+	/** Refiles entity under its new name. Called by Entity.setName(). */
+	synchronized void rename(Entity entity, String oldName, String newName) {
+		if(getEntity(entity.getID()) != entity) return;
+		names.remove(oldName, entity);
+		names.add(newName, entity);
+	}
+
+	/** Files or unfiles entity under tag. Called by Entity.addTag() and Entity.removeTag(). */
+	synchronized void tag(Entity entity, String tag, boolean add) {
+		if(getEntity(entity.getID()) != entity) return;
+		if(add) tags.add(tag, entity);
+		else tags.remove(tag, entity);
+	}
+
+	/**
+	 * Gets the buffer holding the structural changes made while the Engine is updating.
+	 * They are played back at the end of the simulation part of each step.
+	 * @return The EntityCommandBuffer.
+	 */
+	public EntityCommandBuffer getCommandBuffer() {
+		return store.getCommandBuffer();
+	}
+
+	/**
+	 * Gets the lock held while Entities are moved between Chunks. Hold it to iterate over the Chunks
+	 * from a thread other than the one stepping the World.
+	 * @return The lock.
+	 */
+	public Object getStructureLock() {
+		return store;
+	}
+
+	/** Gets the store every Entity keeps its components in */
+	ComponentStore getStore() {
+		return store;
 	}
 
 	/**
-	 * Gets an ID that doesn't clash with any of the other Entities in the world.
+	 * <b>O(1)</b> (amortized) - Gets an ID that doesn't clash with any of the other Entities in the world.<br>
+	 * Reuses the oldest slot of a destroyed Entity once more than MIN_FREE are waiting, otherwise takes
+	 * fresh slots in order, and when there are none left reuses whatever has been freed.
 	 * @return The available/free ID.
 	 */
-	private static int getFreeID() {
-		int id;
-		while(getEntity((id = ((int)(Math.random()*Integer.MAX_VALUE)))) != null);
-		return id;
+	private int getFreeID() {
+		int index = freeCount > MIN_FREE ? takeFree() : -1;
+		if(index < 0) {
+			while(highWater < slots.length && slots[highWater] != null)
+				highWater++;
+			if(highWater < MAX_ENTITIES)
+				index = highWater++;
+			else if((index = takeFree()) < 0)
+				throw new IllegalStateException("The world is full. It can't hold more than " + MAX_ENTITIES + " Entities.");
+		}
+		ensureCapacity(index+1);
+		return (generations[index] << INDEX_BITS) | index;
 	}
 
+	/** Takes the oldest freed slot that is still empty off the ring, or returns -1 if there isn't one */
+	private int takeFree() {
+		while(freeCount > 0) {
+			int candidate = free[freeHead];
+			freeHead = (freeHead + 1) & (free.length - 1);
+			freeCount--;
+			if(slots[candidate] == null)
+				return candidate;
+		}
+		return -1;
+	}
+
+	/** Grows the slots so that at least capacity of them exist */
+	private void ensureCapacity(int capacity) {
+		if(capacity <= slots.length) return;
+		int length = slots.length;
+		while(length < capacity) length *= 2;
+		Entity[] grown = new Entity[Math.min(length, MAX_ENTITIES)];
+		System.arraycopy(slots, 0, grown, 0, slots.length);
+		int[] grownGenerations = newGenerations(slots.length, grown.length);
+		System.arraycopy(generations, 0, grownGenerations, 0, generations.length);
+		generations = grownGenerations;
+		slots = grown;
+	}
+
+	/** Makes a generations array of the given length with every slot from start on at generation 1 */
+	private static int[] newGenerations(int start, int length) {
+		int[] generations = new int[length];
+		for(int index = start; index < length; index++)
+			generations[index] = 1;
+		return generations;
+	}
 
 }
@@ -3,6 +3,7 @@ package engine.input;
 import java.awt.AWTException;
 import java.awt.Component;
 import java.awt.Cursor;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.Robot;
 import java.awt.Toolkit;
@@ -24,7 +25,8 @@ public class Mouse implements MouseListener, MouseMotionListener, MouseWheelList
 	public static final int MIDDLE_BUTTON = MouseEvent.BUTTON2;
 	public static final int RIGHT_BUTTON = MouseEvent.BUTTON3;
 	
-	public static Cursor CURSOR_INVISIBLE = Toolkit.getDefaultToolkit().createCustomCursor(new BufferedImage(1, 1, BufferedImage.TRANSLUCENT), new Point(0,0), "inviscursor");
+	/** Null when headless, there is no Toolkit to make it with */
+	public static Cursor CURSOR_INVISIBLE = GraphicsEnvironment.isHeadless() ? null : Toolkit.getDefaultToolkit().createCustomCursor(new BufferedImage(1, 1, BufferedImage.TRANSLUCENT), new Point(0,0), "inviscursor");
 	public static Cursor CURSOR_CROSSHAIR = Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR);
 	public static Cursor CURSOR_DEFAULT = Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR);
 	
@@ -36,9 +38,8 @@ public class Mouse implements MouseListener, MouseMotionListener, MouseWheelList
 	/** The component that this Mouse is listening to events on */
 	private static Component component = null;
 	
-	/** This Robot is used for resetting the mouse to the center of the screen */
+	/** This Robot is used for resetting the mouse to the center of the screen. Made when first registered, so headless use never needs one. */
 	private static Robot robot;
-	static { try { robot = new Robot(); } catch (AWTException e) { e.printStackTrace(); } }
 	
 	private static final Set<Integer> pressedButtons = new HashSet<Integer>();
 	
@@ -59,6 +60,8 @@ public class Mouse implements MouseListener, MouseMotionListener, MouseWheelList
 	 * @param component The component to attach the Mouse to.
 	 */
 	public static void register(Component component) {
+		if(robot == null)
+			try { robot = new Robot(); } catch (AWTException e) { e.printStackTrace(); }
 		component.addMouseListener(instance);
 		component.addMouseWheelListener(instance);
 		component.addMouseMotionListener(instance);
@@ -0,0 +1,42 @@
+package engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Counter counts something that only goes up, like frames stepped or draw calls made.
+ * Get one from a MetricRegistry. It can be added to from any thread.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Counter {
+
+	private final AtomicLong count = new AtomicLong();
+
+	/** Package-private constructor. See MetricRegistry.counter(name). */
+	Counter() { }
+
+	/** <b>O(1)</b> - Adds one */
+	public void increment() {
+		count.incrementAndGet();
+	}
+
+	/** <b>O(1)</b> - Adds amount */
+	public void add(long amount) {
+		count.addAndGet(amount);
+	}
+
+	/** The count so far */
+	public long get() {
+		return count.get();
+	}
+
+	/** Starts counting from 0 again */
+	public void reset() {
+		count.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+
+}
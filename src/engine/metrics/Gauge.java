@@ -0,0 +1,27 @@
+package engine.metrics;
+
+import java.util.Map;
+
+/**
+ * A Gauge reads a value that goes up and down, like the number of Entities alive, each time it is
+ * looked at. Register one with MetricRegistry.gauge(name, gauge). It is read on the thread looking,
+ * which is usually not the one stepping the World, so it should only read volatile or locked state.
+ * @author Hamish Rae-Hodgson.
+ */
+public interface Gauge {
+
+	/** The value now */
+	public long getValue();
+
+	/**
+	 * A Family is a group of gauges whose names aren't known up front, like the number of each type of
+	 * Component. Each name it returns is published as prefix.name.
+	 */
+	public interface Family {
+
+		/** The value of each gauge in the family now */
+		public Map<String, Long> getValues();
+
+	}
+
+}
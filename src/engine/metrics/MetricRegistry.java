@@ -0,0 +1,194 @@
+package engine.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import engine.profiling.Histogram;
+
+/**
+ * A MetricRegistry holds named Counters, Gauges and Histograms, and publishes them as the attributes
+ * of an MBean so anything that reads JMX can scrape them:
+ * <pre>
+ * world.getEngine().getMetrics().publish("server-1");
+ * //engine.metrics:type=World,name="server-1"
+ * </pre>
+ * Every Engine has one, filled with what it knows about its World. Add your own the same way.<br>
+ * A Histogram is published as name.count, name.mean, name.p50, name.p90, name.p99 and name.max,
+ * over everything recorded since it was made. A Gauge.Family is published as prefix.name for each of its names.<br>
+ * Metrics can be added and read from any thread. Gauges are only read when something looks at them.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class MetricRegistry {
+
+	/** The domain of the ObjectNames metrics are published under */
+	public static final String DOMAIN = "engine.metrics";
+
+	/** Counters, Gauges, Gauge.Families and Histograms by name */
+	private final ConcurrentSkipListMap<String, Object> metrics = new ConcurrentSkipListMap<String, Object>();
+
+	/** The name this is published under, null while it isn't */
+	private ObjectName published;
+
+	/**
+	 * <b>O(log n)</b> - Gets the Counter called name, making it if there isn't one.
+	 * @throws IllegalStateException if name is taken by something other than a Counter.
+	 */
+	public Counter counter(String name) {
+		Object metric = metrics.get(name);
+		if(metric == null) metric = add(name, new Counter());
+		return cast(name, metric, Counter.class);
+	}
+
+	/**
+	 * <b>O(log n)</b> - Gets the Histogram called name, making it if there isn't one.
+	 * Only one thread may record into it at a time.
+	 * @throws IllegalStateException if name is taken by something other than a Histogram.
+	 */
+	public Histogram histogram(String name) {
+		Object metric = metrics.get(name);
+		if(metric == null) metric = add(name, new Histogram());
+		return cast(name, metric, Histogram.class);
+	}
+
+	/**
+	 * Registers gauge as name, replacing whatever was called name.
+	 * @param name The name.
+	 * @param gauge What to read.
+	 */
+	public void gauge(String name, Gauge gauge) {
+		if(gauge == null)
+			throw new IllegalArgumentException("Can't register a null Gauge as " + name);
+		metrics.put(name, gauge);
+	}
+
+	/**
+	 * Registers family as prefix, replacing whatever was called prefix.
+	 * @param prefix Put in front of every name in the family, with a dot.
+	 * @param family What to read.
+	 */
+	public void gauges(String prefix, Gauge.Family family) {
+		if(family == null)
+			throw new IllegalArgumentException("Can't register a null Gauge.Family as " + prefix);
+		metrics.put(prefix, family);
+	}
+
+	/** Forgets the metric called name. Returns true if there was one. */
+	public boolean remove(String name) {
+		return metrics.remove(name) != null;
+	}
+
+	/** The names of every metric, in order */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(metrics.keySet());
+	}
+
+	/** The metric called name, one of Counter, Gauge, Gauge.Family or Histogram, or null if there isn't one */
+	public Object get(String name) {
+		return metrics.get(name);
+	}
+
+	/** Adds metric as name unless another thread got there first. Returns whichever won. */
+	private Object add(String name, Object metric) {
+		Object raced = metrics.putIfAbsent(name, metric);
+		return raced != null ? raced : metric;
+	}
+
+	private static <T> T cast(String name, Object metric, Class<T> type) {
+		if(!type.isInstance(metric))
+			throw new IllegalStateException("The metric " + name + " is a " + metric.getClass().getSimpleName() + " not a " + type.getSimpleName());
+		return type.cast(metric);
+	}
+
+	/**
+	 * <b>O(n)</b> - Reads every metric as it is published, Gauges, Gauge.Families and Histograms flattened into
+	 * one value per name. Values are Longs except the mean of a Histogram, which is a Double.
+	 * @return The values by name, in order.
+	 */
+	public Map<String, Number> snapshot() {
+		Map<String, Number> values = new LinkedHashMap<String, Number>();
+		for(Map.Entry<String, Object> entry : metrics.entrySet()) {
+			String name = entry.getKey();
+			Object metric = entry.getValue();
+			if(metric instanceof Counter) {
+				values.put(name, ((Counter) metric).get());
+			} else if(metric instanceof Gauge) {
+				values.put(name, ((Gauge) metric).getValue());
+			} else if(metric instanceof Gauge.Family) {
+				for(Map.Entry<String, Long> value : ((Gauge.Family) metric).getValues().entrySet())
+					values.put(name + "." + value.getKey(), value.getValue());
+			} else if(metric instanceof Histogram) {
+				Histogram histogram = (Histogram) metric;
+				values.put(name + ".count", histogram.getCount());
+				values.put(name + ".mean", histogram.getMean());
+				values.put(name + ".p50", histogram.getPercentile(50));
+				values.put(name + ".p90", histogram.getPercentile(90));
+				values.put(name + ".p99", histogram.getPercentile(99));
+				values.put(name + ".max", histogram.getMax());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Publishes the metrics on the platform MBeanServer as engine.metrics:type=World,name="name",
+	 * moving them if they were already published under another name.
+	 * @param name Tells this registry apart from the others in the process.
+	 * @throws IllegalStateException if the MBean couldn't be registered, for example because the name is taken.
+	 */
+	public synchronized void publish(String name) {
+		ObjectName objectName;
+		try {
+			objectName = new ObjectName(DOMAIN + ":type=World,name=" + ObjectName.quote(name));
+		} catch (JMException e) {
+			throw new IllegalArgumentException("Can't publish metrics as " + name, e);
+		}
+		if(objectName.equals(published)) return;
+		unpublish();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed publishing metrics as " + objectName, e);
+		}
+		published = objectName;
+	}
+
+	/** Stops publishing the metrics. Does nothing if they aren't published. */
+	public synchronized void unpublish() {
+		if(published == null) return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if(server.isRegistered(published))
+				server.unregisterMBean(published);
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed unpublishing metrics as " + published, e);
+		}
+		published = null;
+	}
+
+	/** The name the metrics are published under, or null if they aren't */
+	public synchronized ObjectName getPublishedName() {
+		return published;
+	}
+
+	/** One line per value, see snapshot() */
+	public String dump() {
+		StringBuilder out = new StringBuilder("Metrics");
+		for(Map.Entry<String, Number> value : snapshot().entrySet())
+			out.append(System.lineSeparator()).append("  ").append(value.getKey()).append('=').append(value.getValue());
+		return out.toString();
+	}
+
+	@Override
+	public String toString() {
+		return dump();
+	}
+
+}
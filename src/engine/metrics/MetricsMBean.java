@@ -0,0 +1,72 @@
+package engine.metrics;
+
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Publishes a MetricRegistry over JMX. Every value in MetricRegistry.snapshot() is a read only attribute,
+ * and the attributes are listed again each time the MBeanInfo is asked for, so metrics added later show up.
+ * @author Hamish Rae-Hodgson.
+ */
+final class MetricsMBean implements DynamicMBean {
+
+	private final MetricRegistry registry;
+
+	MetricsMBean(MetricRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Number value = registry.snapshot().get(attribute);
+		if(value == null)
+			throw new AttributeNotFoundException("No metric called " + attribute);
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String, Number> values = registry.snapshot();
+		AttributeList list = new AttributeList();
+		for(String attribute : attributes) {
+			Number value = values.get(attribute);
+			if(value != null)
+				list.add(new Attribute(attribute, value));
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read only. " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList(); //none of them could be set
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics have no operations");
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		Map<String, Number> values = registry.snapshot();
+		MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+		int i = 0;
+		for(Map.Entry<String, Number> value : values.entrySet())
+			attributes[i++] = new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(), value.getKey(), true, false, false);
+		return new MBeanInfo(MetricRegistry.class.getName(), "Engine metrics", attributes, null, new MBeanOperationInfo[0], null);
+	}
+
+}
@@ -0,0 +1,277 @@
+package engine.opengl;
+
+import static javax.media.opengl.GL.GL_BLEND;
+import static javax.media.opengl.GL.GL_COLOR_BUFFER_BIT;
+import static javax.media.opengl.GL.GL_CULL_FACE;
+import static javax.media.opengl.GL.GL_DEPTH_BUFFER_BIT;
+import static javax.media.opengl.GL.GL_DEPTH_TEST;
+import static javax.media.opengl.GL.GL_FRONT;
+import static javax.media.opengl.GL.GL_LEQUAL;
+import static javax.media.opengl.GL.GL_ONE_MINUS_SRC_ALPHA;
+import static javax.media.opengl.GL.GL_SRC_ALPHA;
+import static javax.media.opengl.fixedfunc.GLLightingFunc.GL_AMBIENT_AND_DIFFUSE;
+import static javax.media.opengl.fixedfunc.GLLightingFunc.GL_COLOR_MATERIAL;
+import static javax.media.opengl.fixedfunc.GLLightingFunc.GL_LIGHT0;
+import static javax.media.opengl.fixedfunc.GLLightingFunc.GL_LIGHTING;
+import static javax.media.opengl.fixedfunc.GLMatrixFunc.GL_MODELVIEW;
+import static javax.media.opengl.fixedfunc.GLMatrixFunc.GL_PROJECTION;
+
+import java.awt.Dimension;
+
+import javax.media.opengl.GL2;
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.glu.GLU;
+import javax.swing.JFrame;
+import javax.swing.WindowConstants;
+
+import engine.common.Quaternion;
+import engine.common.Vec3;
+import engine.components.Transform;
+import engine.core.Archetype;
+import engine.core.Chunk;
+import engine.core.Query;
+import engine.core.Renderer;
+import engine.core.World;
+import engine.input.Keyboard;
+import engine.input.Mouse;
+import engine.metrics.Counter;
+import engine.metrics.Gauge;
+import engine.profiling.Allocations;
+import engine.profiling.CostAccounting;
+
+/**
+ * The window a World is displayed in. It renders the World as the Renderer of the World's Engine.
+ * @author Hamish Rae-Hodgson.
+ */
+public class Display extends GameCanvas implements Renderer {
+	private static final long serialVersionUID = 4730629068123218844L;
+
+	private static Display instance = null;
+	
+	private static JFrame frame = null;
+
+	//gluPerspective params
+	private static final float FIELD_OF_VIEW = 60;
+	private static final float ZNEAR = 0.1f;
+	private static final float ZFAR = 200;
+	
+	/** The metric names the Display fills in on the displayed World's Engine */
+	private static final String DRAW_CALLS = "render.drawCalls", TEXTURE_BYTES_UPLOADED = "render.textureBytesUploaded";
+	
+	/** The World being displayed */
+	private volatile World world;
+	
+	/** The draw calls made displaying world, one of its Engine's metrics */
+	private volatile Counter drawCalls;
+	
+	/** Passes snapshots of each frame to the render thread while the Engine is pipelined */
+	private final RenderPipeline pipeline = new RenderPipeline();
+	
+	/** Draws the snapshots while the Engine is pipelined */
+	private final RenderThread renderThread = new RenderThread(pipeline, new Runnable() {
+		public void run() {
+			display();
+		}
+	});
+	
+	/** Drawn behind everything, centred on the Camera. Null for just the clear colour. */
+	private volatile Mesh skybox_mesh;
+	private volatile Material skybox_material;
+	
+	private Display() { /* Private constructor to prevent instantiation */ }
+	
+	/** Creates the window, displaying the current World. See World.current(). */
+	public static void create(int width, int height) {
+		if(instance == null) { //Only create once.
+			instance = new Display();
+			setWorld(World.current());
+			
+			frame = new JFrame();
+			frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+			
+			instance.setPreferredSize(new Dimension(width, height));
+			Mouse.register(instance);
+			Keyboard.register(instance);
+			
+			frame.getContentPane().add(instance);
+			
+			frame.pack();
+			frame.setVisible(true);
+		}
+	}
+	
+	public static void setTitle(String title) {
+		frame.setTitle(title);
+	}
+	
+	/**
+	 * Changes which World is displayed, making the Display the Renderer of its Engine. Only one World
+	 * can be displayed at a time, the rest are stepped without being rendered.
+	 * @param world The World to display.
+	 */
+	public static void setWorld(World world) {
+		World old = instance.world;
+		if(old != null) {
+			if(old.getEngine().getRenderer() == instance)
+				old.getEngine().setRenderer(null);
+			old.getEngine().getMetrics().remove(TEXTURE_BYTES_UPLOADED);
+		}
+		instance.drawCalls = world.getEngine().getMetrics().counter(DRAW_CALLS);
+		instance.world = world;
+		world.getEngine().getMetrics().gauge(TEXTURE_BYTES_UPLOADED, new Gauge() {
+			public long getValue() {
+				return Texture.getBytesUploaded();
+			}
+		});
+		world.getEngine().setRenderer(instance);
+	}
+	
+	/**
+	 * Sets the skybox drawn behind everything.
+	 * @param mesh The Mesh, centred on the Camera. Null for no skybox.
+	 * @param material The Material to draw it with.
+	 */
+	public static void setSkybox(Mesh mesh, Material material) {
+		instance.skybox_material = material;
+		instance.skybox_mesh = mesh;
+	}
+	
+	@Override
+	public void render(World world) {
+		renderThread.stop(); //not pipelined any more, so draw the live World from here on
+		if(world == this.world)
+			display();
+	}
+	
+	@Override
+	public void capturePrevious(World world) {
+		pipeline.back().capturePrevious(world);
+	}
+	
+	@Override
+	public void captureCurrent(World world, float alpha) {
+		pipeline.back().captureCurrent(world, alpha, pipeline.last());
+	}
+	
+	@Override
+	public void present(World world) {
+		pipeline.publish();
+		renderThread.start();
+	}
+
+	@Override
+	public void init(GLAutoDrawable drawable) {
+		GL2 gl = drawable.getGL().getGL2();
+
+		gl.glClearColor(0, 0, 0.2f, 1);
+		gl.glEnable(GL_CULL_FACE);
+		gl.glClearDepth(1f);
+		gl.glDepthFunc(GL_LEQUAL);
+		gl.glEnable(GL_DEPTH_TEST);
+
+		gl.glEnable(GL_BLEND);
+		gl.glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+
+		gl.glEnable(GL_LIGHTING);
+		gl.glEnable(GL_LIGHT0);
+		gl.glEnable(GL_COLOR_MATERIAL);
+		gl.glColorMaterial(GL_FRONT, GL_AMBIENT_AND_DIFFUSE);
+	}
+
+	@Override
+	public void dispose(GLAutoDrawable drawable) { }
+
+	@Override
+	public void display(GLAutoDrawable drawable) {
+		GL2 gl = drawable.getGL().getGL2();
+		World world = this.world;
+		RenderSnapshot snapshot = renderThread.current();
+		Counter drawCalls = this.drawCalls;
+		float[] view = (snapshot != null ? snapshot.getCameraMatrix() : world.getCamera().getMatrix()).getData();
+		
+		gl.glClear(GL_DEPTH_BUFFER_BIT);
+
+		//clear the color buffer with the skybox.
+		Mesh skybox_mesh = this.skybox_mesh;
+		Material skybox_material = this.skybox_material;
+		if(skybox_mesh == null) gl.glClear(GL_COLOR_BUFFER_BIT);
+		else {
+		gl.glPushMatrix();
+			float[] m = view.clone();
+			m[12] = 0; m[13] = 0; m[14] = 0; //no translation
+			gl.glLoadMatrixf(m, 0);
+			gl.glDisable(GL_DEPTH_TEST);
+			if(skybox_material != null) skybox_material.bind(gl);
+			skybox_mesh.bind(gl);
+			skybox_mesh.draw(gl);
+			skybox_mesh.unbind(gl);
+			drawCalls.increment();
+			if(skybox_material != null) skybox_material.unbind(gl);
+			gl.glEnable(GL_DEPTH_TEST);
+		gl.glPopMatrix();
+		}
+
+		//render world
+		gl.glPushMatrix();
+			gl.glLoadMatrixf(view, 0);
+			CostAccounting costs = world.getEngine().getCostAccounting();
+			int drawn = 0;
+			if(snapshot != null) {
+				drawn = snapshot.draw(gl, costs);
+			} else synchronized(world.getStructureLock()) {
+				Query renderQuery = world.query(GL2Renderer.class); //cached by the World, every Entity with something to render
+				for(int a = 0; a < renderQuery.getArchetypeCount(); a++) {
+					Archetype archetype = renderQuery.getArchetype(a);
+					int[] columns = archetype.columnsOf(GL2Renderer.class);
+					for(int c = 0; c < archetype.getChunkCount(); c++) {
+						Chunk chunk = archetype.getChunk(c);
+						for(int row = 0; row < chunk.size(); row++) {
+							gl.glPushMatrix();
+								Transform transform = chunk.getEntity(row).getTransform();
+								Quaternion q = transform.worldRotation();
+								Vec3 t = transform.worldPosition();
+								gl.glTranslatef(t.x(), t.y(), t.z());
+								gl.glRotatef((float) (2D*Math.acos(q.w())*180f / Math.PI), q.x(), q.y(), q.z());
+								for(int column : columns) {
+									render((GL2Renderer)chunk.get(column, row), gl, costs);
+									drawn++;
+								}
+							gl.glPopMatrix();
+						}
+					}
+				}
+			}
+		gl.glPopMatrix();
+		drawCalls.add(drawn);
+
+		checkError(gl); //prints out error code if we get an error.
+	}
+
+	/** Renders drawable, timing it if costs are being recorded */
+	static void render(Drawable drawable, GL2 gl, CostAccounting costs) {
+		if(!costs.isEnabled()) {
+			drawable.render(gl);
+			return;
+		}
+		boolean counted = costs.isAllocationTracking();
+		long bytes = counted ? Allocations.currentThread() : 0;
+		long start = System.nanoTime();
+		drawable.render(gl);
+		long nanos = System.nanoTime() - start;
+		costs.record(drawable.getClass(), CostAccounting.Kind.RENDER, nanos, 1, counted ? Allocations.currentThread() - bytes : 0);
+	}
+
+	@Override
+	public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+		GL2 gl = drawable.getGL().getGL2();
+
+		gl.glMatrixMode(GL_PROJECTION);
+		gl.glLoadIdentity();
+		GLU.createGLU(gl).gluPerspective(FIELD_OF_VIEW, width/height, ZNEAR, ZFAR);
+		gl.glMatrixMode(GL_MODELVIEW);
+		gl.glLoadIdentity();
+
+		gl.glViewport(0, 0, width, height);
+	}
+
+}
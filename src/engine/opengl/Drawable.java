@@ -0,0 +1,19 @@
+package engine.opengl;
+
+import javax.media.opengl.GL2;
+
+/**
+ * Something that can be drawn to an OpenGL context.<br>
+ * Every GL2Renderer is one. GL2Renderer.capture() hands out Drawables that don't change, so a
+ * frame can be drawn on the render thread while the next one is being simulated.
+ * @author Hamish Rae-Hodgson.
+ */
+public interface Drawable {
+
+	/**
+	 * Render to the provided gl context.
+	 * @param gl The OpenGL context.
+	 */
+	public void render(GL2 gl);
+
+}
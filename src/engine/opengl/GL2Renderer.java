@@ -9,7 +9,7 @@ import engine.core.Component;
  * @author Hamish Rae-Hodgson.
  *
  */
-public abstract class GL2Renderer extends Component {
+public abstract class GL2Renderer extends Component implements Drawable {
 
 	/**
 	 * Render this component to the provided gl context.
@@ -17,4 +17,13 @@ public abstract class GL2Renderer extends Component {
 	 */
 	public abstract void render(GL2 gl);
 	
+	/**
+	 * Captures what render() needs to draw this frame, for when the Engine is pipelined and frames
+	 * are drawn on the render thread while the next one is simulated.<br>
+	 * The Drawable is rendered on the render thread, so it must not change once it is handed out -
+	 * copy whatever render() reads into it rather than returning this.
+	 * @return The Drawable to render.
+	 */
+	public abstract Drawable capture();
+	
 }
@@ -1,13 +1,14 @@
 package engine.opengl;
 
 import engine.core.Component;
+import engine.core.Poolable;
 
 /**
  * A MeshFilter is the component you use to get at a Mesh on an Entity.
  * @author Hamish Rae-Hodgson.
  *
  */
-public class MeshFilter extends Component {
+public class MeshFilter extends Component implements Poolable {
 
 	private Mesh mesh;
 
@@ -18,6 +19,11 @@ public class MeshFilter extends Component {
 	public void setMesh(Mesh mesh) {
 		this.mesh = mesh;
 	}
+
+	@Override
+	public void reset() {
+		mesh = null;
+	}
 	
 
 }
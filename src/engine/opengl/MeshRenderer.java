@@ -2,9 +2,14 @@ package engine.opengl;
 
 import javax.media.opengl.GL2;
 
-public class MeshRenderer extends GL2Renderer {
+import engine.core.Poolable;
+
+public class MeshRenderer extends GL2Renderer implements Poolable {
 
 	private Material material;
+	
+	/** The last Drawable handed out by capture(), reused while the Mesh and Material stay the same */
+	private MeshDrawable captured;
 
 	/**
 	 * Sets the Material that this MeshRenderer uses.
@@ -18,11 +23,29 @@ public class MeshRenderer extends GL2Renderer {
 		return material;
 	}
 
+	@Override
+	public void reset() {
+		material = null;
+		captured = null;
+	}
+
 	@Override
 	public void render(GL2 gl) {
 		requires(MeshFilter.class);
 
-		Mesh mesh = getOwner().getComponent(MeshFilter.class).getMesh();
+		draw(gl, getOwner().getComponent(MeshFilter.class).getMesh(), material);
+	}
+
+	@Override
+	public Drawable capture() {
+		MeshFilter filter = getOwner().getComponent(MeshFilter.class);
+		Mesh mesh = filter == null ? null : filter.getMesh();
+		if(captured == null || captured.mesh != mesh || captured.material != material)
+			captured = new MeshDrawable(mesh, material);
+		return captured;
+	}
+
+	private static void draw(GL2 gl, Mesh mesh, Material material) {
 		if(mesh == null) return;
 
 		if(material != null) material.bind(gl);
@@ -32,4 +55,20 @@ public class MeshRenderer extends GL2Renderer {
 		if(material != null) material.unbind(gl);
 	}
 
+	/** A Mesh and Material captured by capture() */
+	private static final class MeshDrawable implements Drawable {
+		private final Mesh mesh;
+		private final Material material;
+
+		MeshDrawable(Mesh mesh, Material material) {
+			this.mesh = mesh;
+			this.material = material;
+		}
+
+		@Override
+		public void render(GL2 gl) {
+			draw(gl, mesh, material);
+		}
+	}
+
 }
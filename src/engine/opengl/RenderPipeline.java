@@ -0,0 +1,76 @@
+package engine.opengl;
+
+/**
+ * Three RenderSnapshots passed between the stepping thread and the render thread, so neither
+ * ever waits on the other to finish with one.<br>
+ * The stepping thread fills back() and publishes it. The render thread takes the latest published
+ * snapshot to draw. Frames that are published faster than they are drawn are skipped.
+ * @author Hamish Rae-Hodgson.
+ */
+final class RenderPipeline {
+
+	/** Being filled by the stepping thread */
+	private RenderSnapshot back = new RenderSnapshot();
+
+	/** The latest published snapshot */
+	private RenderSnapshot ready = new RenderSnapshot();
+
+	/** Being drawn by the render thread */
+	private RenderSnapshot front = new RenderSnapshot();
+
+	/** True if ready hasn't been taken yet */
+	private boolean fresh = false;
+
+	/** The snapshot published last, null before the first. Only used by the stepping thread. */
+	private RenderSnapshot last;
+
+	/** The snapshot for the stepping thread to fill. Only valid until publish(). */
+	RenderSnapshot back() {
+		return back;
+	}
+
+	/**
+	 * The snapshot published last, or null. The render thread may be drawing it, so only read it.
+	 * Only call on the stepping thread.
+	 */
+	RenderSnapshot last() {
+		return last;
+	}
+
+	/**
+	 * Drops the snapshot published last, whether or not it was taken, so the next render thread
+	 * doesn't draw it and the next snapshot doesn't carry poses over from it.
+	 * Only call on the stepping thread, while nothing is taking.
+	 */
+	synchronized void clear() {
+		last = null;
+		fresh = false;
+	}
+
+	/** Makes back() the latest snapshot and hands the stepping thread another to fill */
+	synchronized void publish() {
+		RenderSnapshot published = back;
+		last = published;
+		back = ready;
+		ready = published;
+		fresh = true;
+		notifyAll();
+	}
+
+	/**
+	 * Waits for a snapshot to be published since the last take(), and takes it to draw.
+	 * The snapshot is the render thread's until its next call to take().
+	 * @return The latest snapshot.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	synchronized RenderSnapshot take() throws InterruptedException {
+		while(!fresh)
+			wait();
+		RenderSnapshot taken = ready;
+		ready = front;
+		front = taken;
+		fresh = false;
+		return taken;
+	}
+
+}
@@ -0,0 +1,179 @@
+package engine.opengl;
+
+import java.util.Arrays;
+
+import javax.media.opengl.GL2;
+
+import engine.common.Mat44;
+import engine.common.Quaternion;
+import engine.common.Vec3;
+import engine.core.Archetype;
+import engine.core.Camera;
+import engine.core.Chunk;
+import engine.core.Entity;
+import engine.core.Query;
+import engine.core.World;
+import engine.profiling.CostAccounting;
+
+/**
+ * Everything needed to draw one frame of a World without touching the World - where every renderable
+ * Entity and the Camera were before and after the last fixed step of the frame, and what to draw for each.<br>
+ * Poses are interpolated between the two by alpha, the fraction of a fixed step the frame is through, so
+ * movement made in fixedUpdate() looks smooth whatever the frame rate. A frame without a fixed step keeps
+ * interpolating from the poses the last snapshot had before its fixed step.<br>
+ * Filled in on the stepping thread while structural changes are deferred, so both captures see the same Entities.
+ * @author Hamish Rae-Hodgson.
+ */
+final class RenderSnapshot {
+
+	/** Floats in a pose - position x, y, z then rotation w, x, y, z */
+	private static final int POSE = 7;
+
+	/** The number of Entities captured */
+	private int count = 0;
+
+	/** The poses of the Entities before and after the last fixed step */
+	private float[] previous = new float[POSE*64];
+	private float[] current = new float[POSE*64];
+
+	/** The number of Entities captured in previous, -1 if it wasn't captured this frame */
+	private int previousCount = -1;
+
+	/** The Entities captured, so the next snapshot can tell which poses it can carry over */
+	private Entity[] entities = new Entity[64];
+
+	/** The Drawables of Entity i are drawables[offsets[i]] to drawables[offsets[i+1]-1] */
+	private int[] offsets = new int[65];
+	private Drawable[] drawables = new Drawable[64];
+
+	/** The poses of the Camera before and after the last fixed step */
+	private final float[] cameraPrevious = new float[POSE];
+	private final float[] cameraCurrent = new float[POSE];
+
+	/** How far between previous and current to draw, 0..1 */
+	private float alpha = 1;
+
+	/** Captures the poses before a fixed step of the frame. Called before each one, so the last fixed step's are kept. */
+	void capturePrevious(World world) {
+		Query query = world.query(GL2Renderer.class);
+		world.getCamera().getTransform().worldPose(cameraPrevious, 0);
+		previousCount = 0;
+		for(int a = 0; a < query.getArchetypeCount(); a++) {
+			Archetype archetype = query.getArchetype(a);
+			for(int c = 0; c < archetype.getChunkCount(); c++) {
+				Chunk chunk = archetype.getChunk(c);
+				for(int row = 0; row < chunk.size(); row++) {
+					if(POSE*(previousCount+1) > previous.length)
+						previous = Arrays.copyOf(previous, previous.length*2);
+					chunk.getEntity(row).getTransform().worldPose(previous, POSE*previousCount++);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Captures the poses and Drawables at the end of the frame.
+	 * @param alpha How far through the next fixed step the frame is, 0..1.
+	 * @param last The snapshot captured before this one, to carry the poses before the fixed step over from
+	 * if there wasn't one this frame. Only read. May be null.
+	 */
+	void captureCurrent(World world, float alpha, RenderSnapshot last) {
+		Query query = world.query(GL2Renderer.class);
+		this.alpha = Math.max(0, Math.min(1, alpha));
+		world.getCamera().getTransform().worldPose(cameraCurrent, 0);
+		Arrays.fill(drawables, null);
+		Arrays.fill(entities, 0, count, null);
+		count = 0;
+		int drawableCount = 0;
+		for(int a = 0; a < query.getArchetypeCount(); a++) {
+			Archetype archetype = query.getArchetype(a);
+			int[] columns = archetype.columnsOf(GL2Renderer.class);
+			for(int c = 0; c < archetype.getChunkCount(); c++) {
+				Chunk chunk = archetype.getChunk(c);
+				for(int row = 0; row < chunk.size(); row++) {
+					if(POSE*(count+1) > current.length)
+						current = Arrays.copyOf(current, current.length*2);
+					if(count+2 > offsets.length)
+						offsets = Arrays.copyOf(offsets, offsets.length*2);
+					if(count == entities.length)
+						entities = Arrays.copyOf(entities, count*2);
+					entities[count] = chunk.getEntity(row);
+					entities[count].getTransform().worldPose(current, POSE*count);
+					offsets[count] = drawableCount;
+					for(int column : columns) {
+						if(drawableCount == drawables.length)
+							drawables = Arrays.copyOf(drawables, drawables.length*2);
+						drawables[drawableCount++] = ((GL2Renderer)chunk.get(column, row)).capture();
+					}
+					count++;
+				}
+			}
+		}
+		offsets[count] = drawableCount;
+		if(previousCount != count) //no fixed step this frame, keep interpolating from before the last one
+			carry(last);
+		previousCount = -1;
+	}
+
+	/** Takes the poses before the last fixed step from last for every Entity it captured too, and the current pose for the rest */
+	private void carry(RenderSnapshot last) {
+		if(previous.length < current.length)
+			previous = new float[current.length];
+		System.arraycopy(last != null ? last.cameraPrevious : cameraCurrent, 0, cameraPrevious, 0, POSE);
+		for(int i = 0; i < count; i++) {
+			//Entities are captured in Chunk order, so they line up unless the World changed shape
+			boolean same = last != null && i < last.count && last.entities[i] == entities[i];
+			System.arraycopy(same ? last.previous : current, POSE*i, previous, POSE*i, POSE);
+		}
+	}
+
+	/** The view matrix of the interpolated Camera */
+	Mat44 getCameraMatrix() {
+		float[] pose = new float[POSE];
+		interpolate(cameraPrevious, cameraCurrent, 0, pose);
+		return Camera.getMatrix(new Vec3(pose[0], pose[1], pose[2]), new Quaternion(pose[3], pose[4], pose[5], pose[6]));
+	}
+
+	/** Puts the interpolated pose of the index-th Entity captured in out - position x, y, z then rotation w, x, y, z */
+	void getPose(int index, float[] out) {
+		interpolate(previous, current, POSE*index, out);
+	}
+
+	/** Draws every captured Entity at its interpolated pose, recording what each Drawable class costs in costs. Returns the number of Drawables drawn. */
+	int draw(GL2 gl, CostAccounting costs) {
+		float[] pose = new float[POSE];
+		for(int i = 0; i < count; i++) {
+			getPose(i, pose);
+			gl.glPushMatrix();
+				gl.glTranslatef(pose[0], pose[1], pose[2]);
+				gl.glRotatef((float) (2D*Math.acos(pose[3])*180f / Math.PI), pose[4], pose[5], pose[6]);
+				for(int d = offsets[i]; d < offsets[i+1]; d++)
+					Display.render(drawables[d], gl, costs);
+			gl.glPopMatrix();
+		}
+		return offsets[count];
+	}
+
+	/** Lerps the position and nlerps the rotation of the poses at offset of a and b by alpha into out */
+	private void interpolate(float[] a, float[] b, int offset, float[] out) {
+		float t = alpha;
+		for(int i = 0; i < 3; i++)
+			out[i] = a[offset+i] + (b[offset+i] - a[offset+i])*t;
+		float dot = 0;
+		for(int i = 3; i < POSE; i++)
+			dot += a[offset+i]*b[offset+i];
+		float sign = dot < 0 ? -1 : 1; //take the short way round
+		float length = 0;
+		for(int i = 3; i < POSE; i++) {
+			out[i] = (1-t)*a[offset+i] + t*sign*b[offset+i];
+			length += out[i]*out[i];
+		}
+		length = (float)Math.sqrt(length);
+		for(int i = 3; i < POSE; i++)
+			out[i] /= length;
+		if(out[3] < 0) //keep w positive so acos gives the angle of the shorter rotation
+			for(int i = 3; i < POSE; i++)
+				out[i] = -out[i];
+	}
+
+}
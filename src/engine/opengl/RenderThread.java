@@ -0,0 +1,76 @@
+package engine.opengl;
+
+/**
+ * Draws the snapshots published to a RenderPipeline on a thread of its own, while the Engine is pipelined.<br>
+ * Started by the first frame presented, and stopped once the Engine renders on the stepping thread again,
+ * so the last snapshot isn't left to be drawn over the live World.
+ * @author Hamish Rae-Hodgson.
+ */
+final class RenderThread {
+
+	private final RenderPipeline pipeline;
+
+	/** Draws current(). Called on the render thread for each snapshot taken. */
+	private final Runnable draw;
+
+	/** The thread drawing, null while stopped. Only started and stopped by the stepping thread. */
+	private volatile Thread thread;
+
+	/** The snapshot being drawn, null while stopped */
+	private volatile RenderSnapshot current;
+
+	RenderThread(RenderPipeline pipeline, Runnable draw) {
+		this.pipeline = pipeline;
+		this.draw = draw;
+	}
+
+	/** Starts drawing the snapshots published from now on, if it isn't already. Only call on the stepping thread. */
+	void start() {
+		if(thread != null) return;
+		Thread starting = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while(thread == Thread.currentThread()) {
+						current = pipeline.take();
+						draw.run();
+					}
+				} catch (InterruptedException e) {
+					//stop drawing
+				}
+			}
+		}, "Render");
+		starting.setDaemon(true);
+		thread = starting;
+		starting.start();
+	}
+
+	/**
+	 * Stops drawing, waiting for the frame being drawn to finish, and forgets the snapshot it drew last.
+	 * Does nothing if it isn't drawing. Only call on the stepping thread.
+	 */
+	void stop() {
+		Thread stopping = thread;
+		if(stopping == null) return;
+		thread = null;
+		stopping.interrupt();
+		boolean interrupted = false;
+		for(;;) {
+			try {
+				stopping.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+		current = null;
+		pipeline.clear();
+	}
+
+	/** The snapshot being drawn, or null if it isn't drawing */
+	RenderSnapshot current() {
+		return current;
+	}
+
+}
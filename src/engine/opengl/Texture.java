@@ -7,12 +7,15 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.media.opengl.GL2;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import engine.profiling.TextureUploadEvent;
+
 /**
  * Texture represents a Texture. The first time you bind it it will load it into graphics memory
  * storing the handle returned and nullifying the picel array that was passed in.
@@ -22,6 +25,9 @@ import org.apache.logging.log4j.Logger;
 public class Texture {
 	private static final Logger log = LogManager.getLogger();
 
+	/** The bytes of every Texture uploaded to graphics memory so far */
+	private static final AtomicLong uploaded = new AtomicLong();
+
 	private int id = -1; //-1 means not yet registered with OpenGL
 	private int width;
 	private int height;
@@ -53,6 +59,14 @@ public class Texture {
 		this.pixels = pixels;
 	}
 	
+	/**
+	 * The bytes uploaded to graphics memory by every Texture loaded so far, at 4 bytes a pixel.
+	 * Textures are never deleted from graphics memory, so it only ever grows.
+	 */
+	public static long getBytesUploaded() {
+		return uploaded.get();
+	}
+	
 	/**
 	 * Bind this Texture to the gl context.
 	 * @param gl The gl context.
@@ -68,6 +82,8 @@ public class Texture {
 	 * @param gl The gl context.
 	 */
 	private void loadImageIntoGL(GL2 gl) {
+		TextureUploadEvent event = new TextureUploadEvent();
+		event.begin();
 		int[] id = new int[1];
 		gl.glGenTextures(1, id, 0);
 		log.trace("loadImageIntoGL: id={}", id[0]);
@@ -79,9 +95,17 @@ public class Texture {
 		if(gl.glGetError() == GL_NO_ERROR) {
 			this.id = id[0];
 			pixels = null;
+			uploaded.addAndGet(4L*width*height);
 		} else {
 			log.error("Failed binding texture. GL_ERROR={}", errorCode);
 		}
+		if(event.shouldCommit()) {
+			event.width = width;
+			event.height = height;
+			event.bytes = 4L*width*height;
+			event.succeeded = this.id != -1;
+			event.commit();
+		}
 	}
 	
 	/**
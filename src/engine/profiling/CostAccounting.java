@@ -0,0 +1,271 @@
+package engine.profiling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CostAccounting adds up the time spent in, and the number of calls to, each concrete class of
+ * Behaviour, GL2Renderer and Task, per frame and in total. It is off by default, turn it on with
+ * setEnabled(true) when you need to find out what is making frames slow.<br>
+ * Behaviours are timed a class at a time, as the BehaviourScheduler updates every Behaviour of a
+ * class in one go, so the cost of turning it on doesn't grow with the number of Behaviours.
+ * GL2Renderers and Tasks are timed a call at a time.<br>
+ * With allocation tracking on, the bytes each class allocates are counted as well, see Allocations,
+ * and getTopAllocators() lists the classes allocating the most per frame.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class CostAccounting {
+
+	/** What was being called */
+	public enum Kind {
+		UPDATE, FIXED_UPDATE, RENDER, TASK
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+
+	/** The time and calls of one class doing one Kind of thing */
+	public static final class Cost {
+		private final Class<?> type;
+		private final Kind kind;
+
+		/** This frame so far */
+		private long frameCalls, frameNanos, frameBytes;
+
+		/** The last whole frame */
+		private long lastCalls, lastNanos, lastBytes;
+
+		private long calls, nanos, maxFrameNanos;
+		private long bytes, maxFrameBytes;
+
+		Cost(Class<?> type, Kind kind) {
+			this.type = type;
+			this.kind = kind;
+		}
+
+		synchronized void add(long nanos, long calls, long bytes) {
+			frameNanos += nanos;
+			frameCalls += calls;
+			frameBytes += bytes;
+		}
+
+		/** Ends the frame. Returns false if nothing was recorded in it. */
+		synchronized boolean roll() {
+			if(frameCalls == 0 && frameNanos == 0) {
+				lastCalls = lastNanos = lastBytes = 0;
+				return false;
+			}
+			lastCalls = frameCalls;
+			lastNanos = frameNanos;
+			lastBytes = frameBytes;
+			calls += frameCalls;
+			nanos += frameNanos;
+			bytes += frameBytes;
+			if(frameNanos > maxFrameNanos) maxFrameNanos = frameNanos;
+			if(frameBytes > maxFrameBytes) maxFrameBytes = frameBytes;
+			frameCalls = frameNanos = frameBytes = 0;
+			return true;
+		}
+
+		/** The class */
+		public Class<?> getType() {
+			return type;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/** The calls made in the last frame */
+		public synchronized long getLastFrameCalls() {
+			return lastCalls;
+		}
+
+		/** The time spent in the last frame in nanoseconds */
+		public synchronized long getLastFrameNanos() {
+			return lastNanos;
+		}
+
+		/** The calls made in every frame so far */
+		public synchronized long getCalls() {
+			return calls;
+		}
+
+		/** The time spent in every frame so far in nanoseconds */
+		public synchronized long getNanos() {
+			return nanos;
+		}
+
+		/** The most time spent in one frame in nanoseconds */
+		public synchronized long getMaxFrameNanos() {
+			return maxFrameNanos;
+		}
+
+		/** The bytes allocated in the last frame, 0 unless allocations are tracked */
+		public synchronized long getLastFrameBytes() {
+			return lastBytes;
+		}
+
+		/** The bytes allocated in every frame so far, 0 unless allocations are tracked */
+		public synchronized long getBytes() {
+			return bytes;
+		}
+
+		/** The most bytes allocated in one frame */
+		public synchronized long getMaxFrameBytes() {
+			return maxFrameBytes;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format("%-12s %-40s calls=%-9d total=%9.3fms lastFrame=%8.3fms (%d calls) maxFrame=%8.3fms bytes=%d lastFrameBytes=%d maxFrameBytes=%d",
+					kind, type.getName(), calls, nanos/1e6, lastNanos/1e6, lastCalls, maxFrameNanos/1e6, bytes, lastBytes, maxFrameBytes);
+		}
+	}
+
+	private volatile boolean enabled = false;
+
+	private volatile boolean tracking = false;
+
+	/** The Costs of each class, indexed by Kind */
+	private final ConcurrentHashMap<Class<?>, Cost[]> costs = new ConcurrentHashMap<Class<?>, Cost[]>();
+
+	/** The frames ended so far */
+	private volatile long frames = 0;
+
+	/** Turns accounting on or off. It is off by default. */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns on or off counting the bytes each class allocates while accounting is enabled. It is off by default.
+	 * Has no effect where Allocations.isSupported() is false.
+	 */
+	public void setAllocationTracking(boolean tracking) {
+		this.tracking = tracking && Allocations.isSupported();
+	}
+
+	/** Returns true if accounting is enabled and counting the bytes each class allocates */
+	public boolean isAllocationTracking() {
+		return enabled && tracking;
+	}
+
+	/**
+	 * Adds nanos and calls to what type has cost doing kind this frame. Does nothing while disabled.
+	 * Can be called from any thread.
+	 */
+	public void record(Class<?> type, Kind kind, long nanos, long calls) {
+		record(type, kind, nanos, calls, 0);
+	}
+
+	/**
+	 * Adds nanos, calls and bytes allocated to what type has cost doing kind this frame. Does nothing while disabled.
+	 * Can be called from any thread.
+	 */
+	public void record(Class<?> type, Kind kind, long nanos, long calls, long bytes) {
+		if(!enabled) return;
+		Cost[] row = costs.get(type);
+		if(row == null) {
+			row = new Cost[KINDS.length];
+			for(Kind k : KINDS)
+				row[k.ordinal()] = new Cost(type, k);
+			Cost[] raced = costs.putIfAbsent(type, row);
+			if(raced != null) row = raced;
+		}
+		row[kind.ordinal()].add(nanos, calls, bytes);
+	}
+
+	/** Ends the frame, moving what was recorded this frame into the last frame and the totals. The Engine calls it once a step. */
+	public void endFrame() {
+		if(!enabled) return;
+		for(Cost[] row : costs.values())
+			for(Cost cost : row)
+				cost.roll();
+		frames++;
+	}
+
+	/** The frames ended while enabled */
+	public long getFrameCount() {
+		return frames;
+	}
+
+	/** What type has cost doing kind, or null if it has never been recorded */
+	public Cost getCost(Class<?> type, Kind kind) {
+		Cost[] row = costs.get(type);
+		return row == null ? null : row[kind.ordinal()];
+	}
+
+	/** Every Cost that has been called, most total time first */
+	public List<Cost> getCosts() {
+		List<Cost> list = new ArrayList<Cost>();
+		for(Cost[] row : costs.values())
+			for(Cost cost : row)
+				if(cost.getCalls() > 0)
+					list.add(cost);
+		Collections.sort(list, new Comparator<Cost>() {
+			@Override
+			public int compare(Cost a, Cost b) {
+				return Long.compare(b.getNanos(), a.getNanos());
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * The Costs that have allocated the most bytes per frame, most first.
+	 * @param count The most to return.
+	 */
+	public List<Cost> getTopAllocators(int count) {
+		List<Cost> list = new ArrayList<Cost>();
+		for(Cost cost : getCosts())
+			if(cost.getBytes() > 0)
+				list.add(cost);
+		Collections.sort(list, new Comparator<Cost>() {
+			@Override
+			public int compare(Cost a, Cost b) {
+				return Long.compare(b.getBytes(), a.getBytes());
+			}
+		});
+		return list.size() > count ? new ArrayList<Cost>(list.subList(0, count)) : list;
+	}
+
+	/** The Cost that took the most time in the last frame, or null if nothing was recorded */
+	public Cost getWorstLastFrame() {
+		Cost worst = null;
+		for(Cost[] row : costs.values())
+			for(Cost cost : row)
+				if(cost.getLastFrameNanos() > 0 && (worst == null || cost.getLastFrameNanos() > worst.getLastFrameNanos()))
+					worst = cost;
+		return worst;
+	}
+
+	/** Forgets everything recorded */
+	public void reset() {
+		costs.clear();
+		frames = 0;
+	}
+
+	/** One line per Cost, most total time first */
+	public String dump() {
+		StringBuilder out = new StringBuilder("Costs over ").append(frames).append(" frames");
+		for(Cost cost : getCosts())
+			out.append(System.lineSeparator()).append("  ").append(cost);
+		long frames = Math.max(1, this.frames);
+		for(Cost cost : getTopAllocators(10))
+			out.append(System.lineSeparator()).append(String.format("  allocates %,d bytes/frame  %s %s", cost.getBytes()/frames, cost.getKind(), cost.getType().getName()));
+		return out.toString();
+	}
+
+	@Override
+	public String toString() {
+		return dump();
+	}
+
+}
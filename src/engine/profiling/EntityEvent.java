@@ -0,0 +1,40 @@
+package engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for Entities being created or destroyed. A batch from World.instantiate() is one event.
+ * Off unless a recording turns it on, as there can be many a frame.
+ * @author Hamish Rae-Hodgson.
+ */
+@Name("engine.Entity")
+@Label("Entity")
+@Category("Engine")
+@Enabled(false)
+@StackTrace(false)
+public final class EntityEvent extends jdk.jfr.Event {
+
+	@Label("Destroyed")
+	@Description("True if the Entities were destroyed, false if they were created")
+	public boolean destroyed;
+
+	@Label("Id")
+	@Description("The id of the Entity, or of the first of a batch")
+	public int id;
+
+	@Label("Name")
+	public String name;
+
+	@Label("Count")
+	public int count;
+
+	@Label("Entities")
+	@Description("The number of Entities in the World afterwards")
+	public int entities;
+
+}
@@ -0,0 +1,23 @@
+package engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JDK Flight Recorder event spanning one fixed step of an Engine step.
+ * @author Hamish Rae-Hodgson.
+ */
+@Name("engine.FixedTick")
+@Label("Fixed Tick")
+@Category("Engine")
+@StackTrace(false)
+public final class FixedTickEvent extends jdk.jfr.Event {
+
+	@Label("Fixed Time")
+	@Timespan
+	public long fixedTime;
+
+}
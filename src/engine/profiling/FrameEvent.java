@@ -0,0 +1,40 @@
+package engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event spanning one Engine step, so frame spikes line up against GC, JIT and I/O in a recording.
+ * @author Hamish Rae-Hodgson.
+ */
+@Name("engine.Frame")
+@Label("Frame")
+@Category("Engine")
+@Description("One Engine step, from advancing the Clock to rendering")
+@StackTrace(false)
+public final class FrameEvent extends jdk.jfr.Event {
+
+	@Label("Entities")
+	public int entities;
+
+	@Label("Archetypes")
+	public int archetypes;
+
+	@Label("Fixed Steps")
+	@Description("The fixed steps run in this step")
+	public int fixedSteps;
+
+	@Label("Dropped Steps")
+	@Description("The fixed steps dropped so far to catch up")
+	public long droppedSteps;
+
+	@Label("Allocated")
+	@Description("The bytes the stepping thread allocated, if allocation tracking is on")
+	@DataAmount
+	public long allocated;
+
+}
@@ -0,0 +1,111 @@
+package engine.profiling;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Histogram counts durations in nanoseconds into log-linear buckets, like an HdrHistogram: every
+ * power of two is split into SUB_BUCKETS equal buckets, so a percentile read back is within about 3%
+ * of the real value however large it is, and recording is a shift and an add.<br>
+ * One thread records while any thread reads. Recording never locks or allocates; reads may miss
+ * the values being recorded at the same moment.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Histogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/** Values at or above this are counted as this, about 68 seconds */
+	public static final long HIGHEST = (1L << 36) - 1;
+
+	/** The number of buckets needed to reach HIGHEST */
+	private static final int BUCKETS = index(HIGHEST) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private volatile long count = 0;
+	private volatile long total = 0;
+	private volatile long max = 0;
+
+	/** <b>O(1)</b> - Counts value. Only one thread may record at a time. */
+	public void record(long value) {
+		if(value < 0) value = 0;
+		if(value > HIGHEST) value = HIGHEST;
+		int index = index(value);
+		counts.lazySet(index, counts.get(index) + 1);
+		total += value;
+		if(value > max) max = value;
+		count++;
+	}
+
+	/** Adds every value counted in other to this one */
+	public void add(Histogram other) {
+		for(int i = 0; i < BUCKETS; i++) {
+			long n = other.counts.get(i);
+			if(n != 0) counts.lazySet(i, counts.get(i) + n);
+		}
+		total += other.total;
+		max = Math.max(max, other.max);
+		count += other.count;
+	}
+
+	/** Forgets every value. Only the recording thread may reset. */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++)
+			counts.lazySet(i, 0);
+		total = 0;
+		max = 0;
+		count = 0;
+	}
+
+	/** The number of values counted */
+	public long getCount() {
+		return count;
+	}
+
+	/** The largest value counted, exactly */
+	public long getMax() {
+		return max;
+	}
+
+	/** The mean of the values counted */
+	public double getMean() {
+		long count = this.count;
+		return count == 0 ? 0 : (double) total/count;
+	}
+
+	/**
+	 * <b>O(b)</b> - The value that percentile percent of the counted values are at or below.
+	 * @param percentile From 0 to 100, for example 99.9.
+	 * @return The highest value in the bucket the percentile falls in, no more than getMax(). 0 if nothing has been counted.
+	 */
+	public long getPercentile(double percentile) {
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++)
+			count += counts.get(i);
+		if(count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(count*Math.min(percentile, 100)/100));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if(seen >= rank)
+				return Math.min(highest(i), max);
+		}
+		return max;
+	}
+
+	/** The bucket value falls in */
+	static int index(long value) {
+		if(value < 2*SUB_BUCKETS) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (int) ((shift+1)*SUB_BUCKETS + ((value >>> shift) - SUB_BUCKETS));
+	}
+
+	/** The highest value that falls in bucket index */
+	static long highest(int index) {
+		if(index < 2*SUB_BUCKETS) return index;
+		int shift = index/SUB_BUCKETS - 1;
+		long sub = index%SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+
+}
@@ -0,0 +1,25 @@
+package engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event spanning the parse of an .obj file by OBJBuilder.
+ * @author Hamish Rae-Hodgson.
+ */
+@Name("engine.MeshParse")
+@Label("Mesh Parse")
+@Category({ "Engine", "Loading" })
+public final class MeshParseEvent extends jdk.jfr.Event {
+
+	@Label("Characters")
+	public int characters;
+
+	@Label("Vertices")
+	public int vertices;
+
+	@Label("Faces")
+	public int faces;
+
+}
@@ -0,0 +1,221 @@
+package engine.profiling;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A Profiler times the phases of every Engine step and keeps a Histogram of each over a sliding
+ * window, so you can see where frame time goes:
+ * <pre>
+ * Profiler profiler = world.getEngine().getProfiler();
+ * long p99 = profiler.getWindow(Profiler.Phase.TICK).getPercentile(99);
+ * </pre>
+ * The window is made of slices. Every slice period the oldest slice is forgotten, so the window
+ * always covers about the last slices*period of time. Optionally a summary of every phase is logged
+ * each time the window fills.<br>
+ * Timing a phase costs two System.nanoTime() calls and a bucket increment, so it can be left on.<br>
+ * With allocation tracking on, the bytes each phase allocates on the stepping thread are kept the same
+ * way, see getAllocationWindow(). Reading the count costs about as much again as timing.<br>
+ * Phases are recorded by the thread stepping the Engine, and read from any thread. A phase can't be
+ * begun again before it has ended, but different phases can nest.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Profiler {
+
+	private static final Logger log = LogManager.getLogger();
+
+	/** The parts of an Engine step */
+	public enum Phase {
+		/** The whole step, not counting the wait for the next frame */
+		FRAME,
+		/** Advancing the Clock */
+		TIME,
+		/** The ComponentSystems and update() of the Behaviours */
+		TICK,
+		/** One fixed step - the ComponentSystems, fixedUpdate() of the Behaviours and the Tasks. Counted once per fixed step. */
+		FIXED_TICK,
+		/** The TaskManager, part of each FIXED_TICK */
+		TASKS,
+		/** The FixedRateGroups */
+		GROUPS,
+		/** Drawing or capturing the frame */
+		RENDER,
+		/** Waiting for the next frame */
+		SLEEP
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private volatile boolean enabled = true;
+
+	/** The slices of each phase, slices[phase][slice] */
+	private final Histogram[][] slices;
+
+	/** The bytes allocated by each phase, in the same slices */
+	private final Histogram[][] allocated;
+
+	/** When each phase began, 0 if it isn't being timed, and the bytes allocated by then, -1 if not counted */
+	private final long[] began = new long[PHASES.length];
+	private final long[] bytes = new long[PHASES.length];
+
+	private volatile boolean tracking = false;
+
+	/** The slice being recorded into */
+	private volatile int current = 0;
+
+	/** How long each slice lasts in nanoseconds */
+	private final long period;
+
+	/** When the current slice started */
+	private long sliceStart = System.nanoTime();
+
+	/** The slices filled since the last summary was logged, and how many between summaries, 0 for never */
+	private int filled = 0;
+	private volatile boolean logging = false;
+
+	/** Creates a Profiler with a window of 10 one second slices */
+	public Profiler() {
+		this(10, 1);
+	}
+
+	/**
+	 * Creates a Profiler.
+	 * @param slices The number of slices in the window, at least 1.
+	 * @param seconds How long each slice lasts.
+	 */
+	public Profiler(int slices, float seconds) {
+		if(slices < 1 || !(seconds > 0))
+			throw new IllegalArgumentException("A Profiler needs at least one slice of more than 0 seconds. slices=" + slices + " seconds=" + seconds);
+		this.slices = new Histogram[PHASES.length][slices + 1]; //one more, being recorded into
+		this.allocated = new Histogram[PHASES.length][slices + 1];
+		for(int p = 0; p < PHASES.length; p++) {
+			for(int i = 0; i <= slices; i++) {
+				this.slices[p][i] = new Histogram();
+				this.allocated[p][i] = new Histogram();
+			}
+		}
+		this.period = (long) (seconds*1000000000D);
+	}
+
+	/** Turns timing on or off. It is on by default. */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns on or off counting the bytes each phase allocates. It is off by default.
+	 * Has no effect where Allocations.isSupported() is false.
+	 */
+	public void setAllocationTracking(boolean tracking) {
+		this.tracking = tracking && Allocations.isSupported();
+	}
+
+	public boolean isAllocationTracking() {
+		return tracking;
+	}
+
+	/** Turns on or off logging a summary each time the window fills. It is off by default. */
+	public void setLogging(boolean logging) {
+		this.logging = logging;
+	}
+
+	public boolean isLogging() {
+		return logging;
+	}
+
+	/** Starts timing phase */
+	public void begin(Phase phase) {
+		int p = phase.ordinal();
+		if(!enabled) {
+			began[p] = 0;
+			return;
+		}
+		bytes[p] = tracking ? Allocations.currentThread() : -1;
+		began[p] = System.nanoTime();
+	}
+
+	/** Records the time, and the bytes allocated if tracking, since phase began. Does nothing if it wasn't begun. */
+	public void end(Phase phase) {
+		int p = phase.ordinal();
+		long start = began[p];
+		if(start == 0) return;
+		long now = System.nanoTime();
+		began[p] = 0;
+		int current = this.current;
+		slices[p][current].record(now - start);
+		if(bytes[p] >= 0 && tracking)
+			allocated[p][current].record(Allocations.currentThread() - bytes[p]);
+	}
+
+	/**
+	 * Moves the window on if a slice period has passed, and logs a summary if it is time to.
+	 * The Engine calls it once a step, on the thread recording.
+	 */
+	public void roll() {
+		if(!enabled) return;
+		long now = System.nanoTime();
+		if(now - sliceStart < period) return;
+		sliceStart = now;
+		int next = (current + 1) % slices[0].length;
+		for(int p = 0; p < PHASES.length; p++) {
+			slices[p][next].reset();
+			allocated[p][next].reset();
+		}
+		current = next;
+		if(++filled >= slices[0].length - 1) {
+			filled = 0;
+			if(logging && log.isInfoEnabled())
+				log.info(summary());
+		}
+	}
+
+	/**
+	 * <b>O(s)</b> - Adds up the slices of phase in the window into a new Histogram.
+	 * @param phase The phase.
+	 * @return The window, including the slice being recorded into.
+	 */
+	public Histogram getWindow(Phase phase) {
+		Histogram window = new Histogram();
+		for(Histogram slice : slices[phase.ordinal()])
+			window.add(slice);
+		return window;
+	}
+
+	/**
+	 * <b>O(s)</b> - Adds up the bytes allocated by phase in the window into a new Histogram, one value each time the phase ran.
+	 * Empty unless allocation tracking is on.
+	 * @param phase The phase. FRAME gives the bytes allocated per frame on the stepping thread.
+	 * @return The window, including the slice being recorded into.
+	 */
+	public Histogram getAllocationWindow(Phase phase) {
+		Histogram window = new Histogram();
+		for(Histogram slice : allocated[phase.ordinal()])
+			window.add(slice);
+		return window;
+	}
+
+	/** One line per phase of count, mean, p50, p99, p99.9 and max over the window in milliseconds, and bytes allocated if tracking */
+	public String summary() {
+		StringBuilder out = new StringBuilder("Profile");
+		for(Phase phase : PHASES) {
+			Histogram window = getWindow(phase);
+			if(window.getCount() == 0) continue;
+			out.append(String.format("%n  %-10s n=%-7d mean=%7.3f p50=%7.3f p99=%7.3f p99.9=%7.3f max=%7.3f", phase, window.getCount(),
+					window.getMean()/1e6, window.getPercentile(50)/1e6, window.getPercentile(99)/1e6, window.getPercentile(99.9)/1e6, window.getMax()/1e6));
+			Histogram bytes = getAllocationWindow(phase);
+			if(bytes.getCount() > 0)
+				out.append(String.format(" bytes mean=%.0f p99=%d max=%d", bytes.getMean(), bytes.getPercentile(99), bytes.getMax()));
+		}
+		return out.toString();
+	}
+
+	@Override
+	public String toString() {
+		return summary();
+	}
+
+}
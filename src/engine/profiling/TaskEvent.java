@@ -0,0 +1,28 @@
+package engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A JDK Flight Recorder event spanning one Task.execute(). Off unless a recording turns it on, as there can be many a frame.
+ * @author Hamish Rae-Hodgson.
+ */
+@Name("engine.Task")
+@Label("Task")
+@Category("Engine")
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+public final class TaskEvent extends jdk.jfr.Event {
+
+	@Label("Task Class")
+	public Class<?> taskClass;
+
+	@Label("Scheduled")
+	public boolean scheduled;
+
+}
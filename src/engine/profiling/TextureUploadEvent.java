@@ -0,0 +1,30 @@
+package engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event spanning the upload of a Texture to graphics memory.
+ * @author Hamish Rae-Hodgson.
+ */
+@Name("engine.TextureUpload")
+@Label("Texture Upload")
+@Category({ "Engine", "Loading" })
+public final class TextureUploadEvent extends jdk.jfr.Event {
+
+	@Label("Width")
+	public int width;
+
+	@Label("Height")
+	public int height;
+
+	@Label("Size")
+	@DataAmount
+	public long bytes;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+
+}
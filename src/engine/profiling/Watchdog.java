@@ -0,0 +1,192 @@
+package engine.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A Watchdog watches the thread stepping an Engine, and when a step runs longer than a threshold it
+ * captures that thread's stack and names the component or Task it is in, so a hitch can be traced
+ * back to whatever caused it.<br>
+ * It runs on a daemon thread of its own, started with start(threshold). The Engine tells it when each
+ * step begins and ends, which costs two volatile writes. Reports are logged and the latest are kept,
+ * see getReports().
+ * @author Hamish Rae-Hodgson.
+ */
+public final class Watchdog {
+
+	private static final Logger log = LogManager.getLogger();
+
+	/** The number of reports kept */
+	private static final int KEPT = 32;
+
+	/** A step that ran over the threshold */
+	public static final class Report {
+		private final long frame;
+		private final long elapsed;
+		private final String thread;
+		private final String offender;
+		private final StackTraceElement[] stack;
+
+		Report(long frame, long elapsed, String thread, String offender, StackTraceElement[] stack) {
+			this.frame = frame;
+			this.elapsed = elapsed;
+			this.thread = thread;
+			this.offender = offender;
+			this.stack = stack;
+		}
+
+		/** The number of the step, counted from when the Watchdog started */
+		public long getFrame() {
+			return frame;
+		}
+
+		/** How long the step had been running when the stack was captured in nanoseconds */
+		public long getElapsedNanos() {
+			return elapsed;
+		}
+
+		/** The name of the class of the innermost component or Task on the stack, or null if there wasn't one */
+		public String getOffender() {
+			return offender;
+		}
+
+		/** The stack of the stepping thread when the threshold was passed */
+		public StackTraceElement[] getStack() {
+			return stack.clone();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder out = new StringBuilder(String.format("Frame %d on %s over %.3fms in %s", frame, thread, elapsed/1e6, offender == null ? "the engine" : offender));
+			for(StackTraceElement element : stack)
+				out.append(System.lineSeparator()).append("\tat ").append(element);
+			return out.toString();
+		}
+	}
+
+	/** The classes whose subclasses are named as offenders */
+	private final Class<?>[] suspects;
+
+	/** The thread in a step, and when the step started. 0 while not in one. */
+	private volatile Thread stepping;
+	private volatile long started = 0;
+	private volatile long frame = 0;
+
+	/** The last frame reported, so a long step is only reported once */
+	private long reported = -1;
+
+	private volatile long threshold;
+	private volatile Thread thread;
+
+	private final List<Report> reports = new ArrayList<Report>();
+
+	/**
+	 * Creates a Watchdog that names the innermost instance of any of suspects on the stack as the offender.
+	 * @param suspects Base classes, like Component and Task.
+	 */
+	public Watchdog(Class<?>... suspects) {
+		this.suspects = suspects.clone();
+	}
+
+	/**
+	 * Starts watching on a daemon thread.
+	 * @param thresholdMillis How long a step can take before it is reported.
+	 */
+	public synchronized void start(long thresholdMillis) {
+		if(thresholdMillis <= 0)
+			throw new IllegalArgumentException("The threshold must be more than 0. thresholdMillis=" + thresholdMillis);
+		threshold = thresholdMillis*1000000;
+		if(thread != null) return;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch();
+			}
+		}, "Watchdog");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Stops watching */
+	public synchronized void stop() {
+		Thread thread = this.thread;
+		this.thread = null;
+		if(thread != null)
+			thread.interrupt();
+	}
+
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	/** Called by the Engine as a step begins */
+	public void beginStep() {
+		if(thread == null) return;
+		stepping = Thread.currentThread();
+		frame++;
+		started = System.nanoTime();
+	}
+
+	/** Called by the Engine as a step ends */
+	public void endStep() {
+		started = 0;
+	}
+
+	/** The latest reports, oldest first */
+	public List<Report> getReports() {
+		synchronized(reports) {
+			return new ArrayList<Report>(reports);
+		}
+	}
+
+	/** Forgets every report */
+	public void clearReports() {
+		synchronized(reports) {
+			reports.clear();
+		}
+	}
+
+	private void watch() {
+		while(thread == Thread.currentThread()) {
+			long threshold = this.threshold;
+			try {
+				Thread.sleep(Math.max(1, threshold/4000000));
+			} catch (InterruptedException e) {
+				return;
+			}
+			long started = this.started;
+			long frame = this.frame;
+			Thread stepping = this.stepping;
+			if(started == 0 || stepping == null || frame == reported) continue;
+			long elapsed = System.nanoTime() - started;
+			if(elapsed < threshold) continue;
+			StackTraceElement[] stack = stepping.getStackTrace();
+			if(this.frame != frame || this.started == 0) continue; //it finished while we looked
+			reported = frame;
+			Report report = new Report(frame, elapsed, stepping.getName(), offender(stack, stepping.getContextClassLoader()), stack);
+			synchronized(reports) {
+				if(reports.size() == KEPT) reports.remove(0);
+				reports.add(report);
+			}
+			log.warn("{}", report);
+		}
+	}
+
+	/** The name of the innermost class on stack that is a suspect, or null */
+	private String offender(StackTraceElement[] stack, ClassLoader loader) {
+		for(StackTraceElement element : stack) {
+			try {
+				Class<?> type = Class.forName(element.getClassName(), false, loader != null ? loader : Watchdog.class.getClassLoader());
+				for(Class<?> suspect : suspects)
+					if(suspect.isAssignableFrom(type))
+						return type.getName();
+			} catch (ClassNotFoundException | LinkageError e) {
+				//hidden and generated classes can't be looked up
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,186 @@
+package engine.tasks;
+
+import java.util.concurrent.locks.LockSupport;
+
+import engine.core.World;
+
+/**
+ * A Coroutine is a Task written as straight-line code. Put the work in run() and call yieldFrame(),
+ * waitSeconds(t) or waitUntil(condition) wherever it should wait:
+ * <pre>
+ * tasks.addTask(new Coroutine() {
+ *     protected void run() {
+ *         for(int i = 0; i &lt; 10; i++) {
+ *             spawn();
+ *             waitSeconds(0.5f);
+ *         }
+ *         waitUntil(bossDead);
+ *         openDoor();
+ *     }
+ * });
+ * </pre>
+ * run() has its own thread, but only ever runs while the thread ticking the TaskManager waits for
+ * it, so it is in lock-step with the Engine and can touch the World like any other Task. While
+ * waiting, execute() checks whether it is time to resume on the ticking thread and only switches
+ * threads when it is.<br>
+ * The thread is a virtual thread, so hundreds of thousands of suspended Coroutines cost a small heap object each.
+ * @author Hamish Rae-Hodgson.
+ */
+public abstract class Coroutine extends Task<Object> {
+
+	/** Whose turn it is to run */
+	private static final int TICKER = 0, COROUTINE = 1;
+
+	private volatile int turn = TICKER;
+
+	/** The thread run() is on, null until the first execute() */
+	private Thread thread;
+
+	/** The thread waiting in execute() */
+	private volatile Thread ticker;
+
+	private volatile boolean finished = false;
+	private volatile boolean cancelled = false;
+
+	/** What run() threw, passed back to execute() */
+	private volatile Throwable failure;
+
+	/** The TaskManager time to wait until, see waitSeconds() */
+	private long wakeAt = -1;
+
+	/** The condition to wait for, see waitUntil() */
+	private Condition until;
+
+	/** The TaskManager ticking this, set when it is added */
+	TaskManager manager;
+
+	/** A condition a Coroutine can wait for. Tested on the thread ticking the TaskManager, once a tick. */
+	public interface Condition {
+		boolean test();
+	}
+
+	/** The body of the Coroutine. It is finished when this returns. */
+	protected abstract void run();
+
+	@Override
+	public final boolean isFinished() {
+		return finished;
+	}
+
+	/** Resumes run() if it is time to, and waits until it next suspends or returns */
+	@Override
+	public final Object execute() {
+		if(finished) return null;
+		if(until != null) {
+			if(!until.test()) return null;
+			until = null;
+		}
+		if(wakeAt >= 0) {
+			if(manager != null && manager.now() < wakeAt) return null;
+			wakeAt = -1;
+		}
+		resume();
+		Throwable failure = this.failure;
+		if(failure != null) {
+			this.failure = null;
+			if(failure instanceof RuntimeException) throw (RuntimeException) failure;
+			if(failure instanceof Error) throw (Error) failure;
+			throw new IllegalStateException(failure);
+		}
+		return null;
+	}
+
+	/**
+	 * Stops the Coroutine where it is suspended, so it never resumes. Call it from the thread that ticks the TaskManager.
+	 * The suspending call throws an Error to unwind run(), so finally blocks in it still run.
+	 */
+	public final void cancel() {
+		if(finished) return;
+		cancelled = true;
+		if(thread == null) finished = true;
+		else resume();
+	}
+
+	/** Suspends run() until the next tick */
+	protected final void yieldFrame() {
+		suspend();
+	}
+
+	/**
+	 * Suspends run() until seconds of Engine time have passed.
+	 * @param seconds The time to wait in seconds.
+	 */
+	protected final void waitSeconds(float seconds) {
+		if(manager == null)
+			throw new IllegalStateException("The Coroutine hasn't been added to a TaskManager.");
+		wakeAt = manager.now() + (long) (seconds*1000000000D);
+		suspend();
+	}
+
+	/**
+	 * Suspends run() until condition is true. It is tested once every tick.
+	 * @param condition The condition.
+	 */
+	protected final void waitUntil(Condition condition) {
+		if(condition.test()) return;
+		until = condition;
+		suspend();
+	}
+
+	/** Hands the turn to run() and waits for it to come back */
+	private void resume() {
+		ticker = Thread.currentThread();
+		turn = COROUTINE;
+		if(thread == null) {
+			thread = newThread(World.current());
+			thread.start();
+		} else {
+			LockSupport.unpark(thread);
+		}
+		while(turn == COROUTINE)
+			LockSupport.park(this);
+	}
+
+	/** Hands the turn back to execute() and waits to be resumed */
+	private void suspend() {
+		if(Thread.currentThread() != thread)
+			throw new IllegalStateException("A Coroutine can only suspend itself, from inside run().");
+		turn = TICKER;
+		LockSupport.unpark(ticker);
+		while(turn == TICKER)
+			LockSupport.park(this);
+		if(cancelled)
+			throw new Cancelled();
+	}
+
+	private Thread newThread(final World world) {
+		Runnable body = new Runnable() {
+			public void run() {
+				try {
+					world.run(new Runnable() {
+						public void run() {
+							if(!cancelled)
+								Coroutine.this.run();
+						}
+					});
+				} catch (Cancelled e) {
+					//unwound
+				} catch (Throwable t) {
+					failure = t;
+				} finally {
+					finished = true;
+					turn = TICKER;
+					LockSupport.unpark(ticker);
+				}
+			}
+		};
+		return Thread.ofVirtual().name("Coroutine").unstarted(body);
+	}
+
+	/** Thrown from a suspending call to unwind a cancelled Coroutine */
+	private static final class Cancelled extends Error {
+		private static final long serialVersionUID = 1L;
+		Cancelled() { super(null, null, false, false); }
+	}
+
+}
@@ -0,0 +1,66 @@
+package engine.tasks;
+
+/**
+ * A Task waiting in a TaskManager's timer wheel, returned by TaskManager.schedule() and
+ * scheduleAtFixedRate(). Use it to cancel the Task before it is due.
+ * @author Hamish Rae-Hodgson.
+ */
+public final class ScheduledTask {
+
+	/** The Task to execute when due */
+	final Task<?> task;
+
+	/** The time between executions in wheel ticks, 0 to execute once */
+	final long period;
+
+	/** The wheel tick this is due on */
+	long expiry;
+
+	/** The wheel and slot this is in, null while not in a wheel */
+	TimerWheel wheel;
+	ScheduledTask[] slot;
+	int slotIndex;
+	ScheduledTask prev, next;
+
+	private boolean cancelled = false;
+
+	/** Package-private constructor. See TaskManager.schedule(). */
+	ScheduledTask(Task<?> task, long expiry, long period) {
+		this.task = task;
+		this.expiry = expiry;
+		this.period = period;
+	}
+
+	/** The Task being scheduled */
+	public Task<?> getTask() {
+		return task;
+	}
+
+	/** Returns true if the Task executes repeatedly */
+	public boolean isPeriodic() {
+		return period > 0;
+	}
+
+	/** Returns true if the Task is still waiting to execute, or to execute again */
+	public boolean isPending() {
+		return !cancelled && wheel != null;
+	}
+
+	/** Returns true if cancel() has been called */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * <b>O(1)</b> - Stops the Task from executing again. Call it from the thread that steps the Engine.
+	 * @return true if it was still pending.
+	 */
+	public boolean cancel() {
+		boolean pending = isPending();
+		cancelled = true;
+		if(wheel != null)
+			wheel.remove(this);
+		return pending;
+	}
+
+}
@@ -1,29 +1,315 @@
 package engine.tasks;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import engine.profiling.Allocations;
+import engine.profiling.CostAccounting;
+import engine.profiling.TaskEvent;
+
+/**
+ * Runs Tasks every fixed step until they finish. Every World has its own, see World.getTaskManager().<br>
+ * Each tick runs the Tasks of each Priority in turn, most important first, and each Task at most once.
+ * If a time budget is set, the tick stops once it is spent and the Tasks that didn't get a turn go
+ * first next tick, so expensive work like spawning or planning is spread over several frames instead
+ * of causing a hitch. CRITICAL Tasks ignore the budget and always run.<br>
+ * Tasks are kept in one queue per Priority and go to the back of it after their turn, so nothing is
+ * copied or sorted each tick. A Task is only ever queued once; adding it again while it is queued does nothing.<br>
+ * Tasks can also be scheduled to execute after a delay, once or at a fixed rate. These wait in a
+ * timer wheel keyed on the time the Engine has ticked the TaskManager by, and are executed at the
+ * start of the tick they are due on, ahead of the queues and whatever the budget. Only the ones
+ * that are due are touched, so tens of thousands of cooldowns cost next to nothing while they wait.
+ * @author Hamish Rae-Hodgson.
+ */
 public class TaskManager {
-	
-	private static Set<Task> tasks = new HashSet<Task>();
-	
-	public static void reset() {
-		tasks.clear();
-	}
-	
-	public static void addTask(Task task) {
-		tasks.add(task);
-	}
-	
-	public static void tick() {
-		List<Task> _tasks = new LinkedList<Task>(tasks);
-		for(Task task : _tasks) {
-			if(task.isFinished())
-				tasks.remove(task);
-			else task.execute();
+
+	/** How important a Task is. Tasks run in this order each tick. */
+	public enum Priority {
+		/** Run every tick whatever the budget */
+		CRITICAL,
+		HIGH,
+		NORMAL,
+		LOW
+	}
+
+	/** The waiting Tasks of each Priority, in the order they get their next turn */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final ArrayDeque<Task<?>>[] queues = new ArrayDeque[Priority.values().length];
+
+	/** Every Task in the queues, so one isn't queued twice */
+	private final Set<Task<?>> queued = new HashSet<Task<?>>();
+
+	/** The length of a timer wheel tick in nanoseconds. Scheduled Tasks are due on the first one at or after their time. */
+	private static final long RESOLUTION = 1000000;
+
+	/** The scheduled Tasks */
+	private final TimerWheel timers = new TimerWheel();
+
+	/** The time this has been ticked by in nanoseconds */
+	private long now = 0;
+
+	/** What each class of Task costs, or null */
+	private CostAccounting costs;
+
+	/** The time a tick may spend in nanoseconds, 0 for no limit */
+	private long budget = 0;
+
+	//statistics
+	private long executed = 0;
+	private int lastExecuted = 0;
+	private int lastDeferred = 0;
+	private long overruns = 0;
+	private long fired = 0;
+
+	public TaskManager() {
+		for(int i = 0; i < queues.length; i++)
+			queues[i] = new ArrayDeque<Task<?>>();
+	}
+
+	/** Drops every queued and scheduled Task, cancelling the Coroutines among them so their threads end */
+	public void reset() {
+		List<Task<?>> dropped = new ArrayList<Task<?>>();
+		for(ArrayDeque<Task<?>> queue : queues) {
+			dropped.addAll(queue);
+			queue.clear();
+		}
+		queued.clear();
+		for(ScheduledTask timer = timers.clear(); timer != null; ) {
+			ScheduledTask next = timer.next;
+			timer.next = null;
+			dropped.add(timer.task);
+			timer = next;
 		}
+		//cancelled once everything is dropped, so their finally blocks can add Tasks without upsetting the loops above
+		for(Task<?> task : dropped)
+			if(task instanceof Coroutine)
+				((Coroutine) task).cancel();
+	}
+
+	/** Adds task with NORMAL Priority */
+	public void addTask(Task<?> task) {
+		addTask(task, Priority.NORMAL);
+	}
+
+	/**
+	 * Adds task to be run every tick until it is finished. A Task added during a tick first runs next tick.
+	 * Does nothing if task is already queued, whatever its Priority.
+	 * @param task The Task.
+	 * @param priority How important it is.
+	 */
+	public void addTask(Task<?> task, Priority priority) {
+		adopt(task);
+		if(queued.add(task))
+			queues[priority.ordinal()].addLast(task);
+	}
+
+	/**
+	 * <b>O(1)</b> - Schedules task to execute once, delay seconds of Engine time from now.
+	 * @param delay The delay in seconds.
+	 * @param task The Task. It isn't executed if it has finished by the time it is due.
+	 * @return The ScheduledTask, to cancel it with.
+	 */
+	public ScheduledTask schedule(float delay, Task<?> task) {
+		return schedule(task, delay, 0);
+	}
+
+	/**
+	 * <b>O(1)</b> - Schedules task to execute delay seconds of Engine time from now, then every period
+	 * seconds after that until it is finished or cancelled. Each time is measured from when the last
+	 * one was due, not from when it ran, so it doesn't drift.
+	 * @param delay The delay before the first execution in seconds.
+	 * @param period The time between executions in seconds, more than 0.
+	 * @param task The Task.
+	 * @return The ScheduledTask, to cancel it with.
+	 */
+	public ScheduledTask scheduleAtFixedRate(float delay, float period, Task<?> task) {
+		if(!(period > 0))
+			throw new IllegalArgumentException("The period must be more than 0. period=" + period);
+		return schedule(task, delay, Math.max(1, toTicks(period)));
+	}
+
+	private ScheduledTask schedule(Task<?> task, float delay, long period) {
+		adopt(task);
+		if(delay < 0)
+			throw new IllegalArgumentException("The delay can't be negative. delay=" + delay);
+		ScheduledTask timer = new ScheduledTask(task, timers.current() + toTicks(delay), period);
+		timers.add(timer);
+		return timer;
+	}
+
+	/** Checks task can be added, and lets a Coroutine know which TaskManager's time it waits on */
+	private void adopt(Task<?> task) {
+		if(task == null)
+			throw new IllegalArgumentException("task can't be null.");
+		if(task instanceof Coroutine)
+			((Coroutine) task).manager = this;
+	}
+
+	/** The time this has been ticked by in nanoseconds */
+	long now() {
+		return now;
+	}
+
+	/**
+	 * The whole wheel ticks it takes for seconds to pass, rounded up. Worked out in float, the precision seconds
+	 * was given in, so a period like 0.1f isn't rounded up to an extra tick by the error in its last bit.
+	 */
+	private static long toTicks(float seconds) {
+		return (long) Math.ceil(seconds*(1000000000f/RESOLUTION));
+	}
+
+	/** Sets where the time each class of Task takes is recorded while it is enabled, or null not to record it */
+	public void setCostAccounting(CostAccounting costs) {
+		this.costs = costs;
+	}
+
+	/**
+	 * Sets how long one tick may spend running Tasks. Tasks left over when it runs out get their turn next tick.
+	 * @param micros The budget in microseconds, 0 for no limit (the default).
+	 */
+	public void setBudget(long micros) {
+		if(micros < 0)
+			throw new IllegalArgumentException("The budget can't be negative. micros=" + micros);
+		budget = micros*1000;
+	}
+
+	/** How long one tick may spend running Tasks in microseconds, 0 for no limit */
+	public long getBudget() {
+		return budget/1000;
+	}
+
+	/**
+	 * Executes the scheduled Tasks that are due, then gives the queued Tasks a turn.
+	 * @param nanos The Engine time that has passed since the last tick in nanoseconds.
+	 */
+	public void tick(long nanos) {
+		long start = System.nanoTime();
+		now += nanos;
+		for(ScheduledTask timer = timers.advance(now/RESOLUTION); timer != null; ) {
+			ScheduledTask next = timer.next;
+			timer.next = null;
+			if(!timer.isCancelled() && !timer.task.isFinished()) {
+				execute(timer.task, true);
+				fired++;
+				if(timer.period > 0 && !timer.isCancelled() && !timer.task.isFinished()) {
+					timer.expiry += timer.period;
+					timers.add(timer);
+				}
+			}
+			timer = next;
+		}
+
+		long budget = this.budget;
+		int ran = 0;
+		int deferred = 0;
+		boolean spent = false;
+		for(int p = 0; p < queues.length; p++) {
+			ArrayDeque<Task<?>> queue = queues[p];
+			//only the Tasks waiting when the tick started, ones added or requeued during it wait for the next
+			for(int n = queue.size(); n > 0; n--) {
+				if(spent && p != Priority.CRITICAL.ordinal()) {
+					deferred += n;
+					break;
+				}
+				Task<?> task = queue.pollFirst();
+				if(!task.isFinished()) {
+					execute(task, false);
+					ran++;
+				}
+				if(!task.isFinished())
+					queue.addLast(task);
+				else
+					queued.remove(task);
+				if(budget > 0 && !spent && System.nanoTime() - start >= budget)
+					spent = true;
+			}
+		}
+		executed += ran;
+		lastExecuted = ran;
+		lastDeferred = deferred;
+		if(deferred > 0)
+			overruns++;
+	}
+
+	/** Executes task, timing it if costs are being recorded or a recording wants TaskEvents */
+	private void execute(Task<?> task, boolean scheduled) {
+		TaskEvent event = new TaskEvent();
+		if(event.isEnabled()) {
+			event.begin();
+			try {
+				account(task);
+			} finally {
+				event.taskClass = task.getClass();
+				event.scheduled = scheduled;
+				event.commit();
+			}
+		} else {
+			account(task);
+		}
+	}
+
+	/** Executes task, timing it if costs are being recorded */
+	private void account(Task<?> task) {
+		CostAccounting costs = this.costs;
+		if(costs == null || !costs.isEnabled()) {
+			task.execute();
+			return;
+		}
+		boolean counted = costs.isAllocationTracking();
+		long bytes = counted ? Allocations.currentThread() : 0;
+		long start = System.nanoTime();
+		try {
+			task.execute();
+		} finally {
+			long nanos = System.nanoTime() - start;
+			costs.record(task.getClass(), CostAccounting.Kind.TASK, nanos, 1, counted ? Allocations.currentThread() - bytes : 0);
+		}
+	}
+
+	/** The number of Tasks queued, some of which may have finished and not been removed yet */
+	public int getQueueDepth() {
+		int depth = 0;
+		for(ArrayDeque<Task<?>> queue : queues)
+			depth += queue.size();
+		return depth;
+	}
+
+	/** The number of Tasks of priority waiting */
+	public int getQueueDepth(Priority priority) {
+		return queues[priority.ordinal()].size();
+	}
+
+	/** The number of scheduled Tasks waiting to be due */
+	public int getPendingTimers() {
+		return timers.size();
+	}
+
+	/** The number of times a scheduled Task has been executed since the TaskManager was made */
+	public long getTimersFired() {
+		return fired;
+	}
+
+	/** The number of Task executions from the queues since the TaskManager was made */
+	public long getTasksExecuted() {
+		return executed;
+	}
+
+	/** The number of Tasks executed by the last tick */
+	public int getLastTickExecuted() {
+		return lastExecuted;
+	}
+
+	/** The number of Tasks the last tick ran out of budget for */
+	public int getLastTickDeferred() {
+		return lastDeferred;
+	}
+
+	/** The number of ticks that ran out of budget before every Task had a turn */
+	public long getBudgetOverruns() {
+		return overruns;
 	}
 
 }
@@ -0,0 +1,139 @@
+package engine.tasks;
+
+/**
+ * A hierarchical timer wheel. There are LEVELS wheels of SLOTS slots each. A slot of the first
+ * wheel covers one tick, a slot of each wheel after that covers a whole turn of the one before.
+ * A timer goes in the slot of the lowest wheel that reaches its expiry, and whenever a wheel turns
+ * over, the next slot of the wheel above is emptied down into it.<br>
+ * Adding and removing are <b>O(1)</b>, and advancing only touches the timers that are due or
+ * cascading, not every pending one.
+ * @author Hamish Rae-Hodgson.
+ */
+final class TimerWheel {
+
+	private static final int BITS = 8;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	/** Timers due further away than this wait in the top wheel and are placed again when it cascades */
+	private static final long SPAN = 1L << (BITS*LEVELS);
+
+	/** The head of each slot's list, per level */
+	private final ScheduledTask[][] wheels = new ScheduledTask[LEVELS][SLOTS];
+
+	/** The last tick advanced to */
+	private long current = 0;
+
+	/** The number of timers in the wheel */
+	private int size = 0;
+
+	/** The last tick advanced to */
+	long current() {
+		return current;
+	}
+
+	/** The number of timers in the wheel */
+	int size() {
+		return size;
+	}
+
+	/** <b>O(1)</b> - Adds timer, due no sooner than the next tick */
+	void add(ScheduledTask timer) {
+		if(timer.expiry <= current)
+			timer.expiry = current + 1;
+		place(timer);
+	}
+
+	/** Puts timer in the slot of the lowest wheel that reaches its expiry */
+	private void place(ScheduledTask timer) {
+		long delta = timer.expiry - current;
+		long at = delta < SPAN ? timer.expiry : current + SPAN - 1;
+		int level = 0;
+		while(level < LEVELS-1 && delta >= 1L << (BITS*(level+1)))
+			level++;
+		link(timer, wheels[level], (int) (at >>> (BITS*level)) & MASK);
+	}
+
+	/**
+	 * Removes every timer.
+	 * @return The timers that were in the wheel linked through next, or null if there were none.
+	 */
+	ScheduledTask clear() {
+		ScheduledTask removed = null;
+		for(ScheduledTask[] wheel : wheels) {
+			for(int i = 0; i < SLOTS; i++) {
+				while(wheel[i] != null) {
+					ScheduledTask timer = wheel[i];
+					remove(timer);
+					timer.next = removed;
+					removed = timer;
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Advances to tick, taking out every timer that is due along the way.
+	 * @param tick The tick to advance to.
+	 * @return The due timers linked through next, earliest first, or null if there are none.
+	 */
+	ScheduledTask advance(long tick) {
+		ScheduledTask due = null, last = null;
+		while(current < tick) {
+			if(size == 0) { //nothing to find, jump straight there
+				current = tick;
+				break;
+			}
+			current++;
+			//cascade the wheels that have turned over, highest first so their timers can carry on down
+			int turned = 0;
+			while(turned < LEVELS-1 && (current & ((1L << (BITS*(turned+1))) - 1)) == 0)
+				turned++;
+			for(int level = turned; level > 0; level--) {
+				ScheduledTask[] wheel = wheels[level];
+				int index = (int) (current >>> (BITS*level)) & MASK;
+				while(wheel[index] != null) {
+					ScheduledTask timer = wheel[index];
+					remove(timer);
+					place(timer);
+				}
+			}
+			ScheduledTask[] wheel = wheels[0];
+			int index = (int) current & MASK;
+			while(wheel[index] != null) {
+				ScheduledTask timer = wheel[index];
+				remove(timer);
+				if(last == null) due = timer;
+				else last.next = timer;
+				last = timer;
+			}
+		}
+		return due;
+	}
+
+	private void link(ScheduledTask timer, ScheduledTask[] slot, int index) {
+		timer.wheel = this;
+		timer.slot = slot;
+		timer.slotIndex = index;
+		timer.prev = null;
+		timer.next = slot[index];
+		if(timer.next != null)
+			timer.next.prev = timer;
+		slot[index] = timer;
+		size++;
+	}
+
+	/** <b>O(1)</b> - Takes timer out of whichever slot it is in */
+	void remove(ScheduledTask timer) {
+		if(timer.prev != null) timer.prev.next = timer.next;
+		else timer.slot[timer.slotIndex] = timer.next;
+		if(timer.next != null) timer.next.prev = timer.prev;
+		timer.wheel = null;
+		timer.slot = null;
+		timer.prev = timer.next = null;
+		size--;
+	}
+
+}
@@ -15,6 +15,7 @@ import org.apache.logging.log4j.Logger;
 import engine.common.Vec2;
 import engine.common.Vec3;
 import engine.opengl.Mesh;
+import engine.profiling.MeshParseEvent;
 
 /**
  * OBJBuilder is a class to read in and interpert Wavefont.obj files.
@@ -101,10 +102,18 @@ public class OBJBuilder {
 	private void build() {
 		if(built) return;
 
+		MeshParseEvent event = new MeshParseEvent();
+		event.begin();
 		for(String line : objFile.split("\n"))
 			parseLine(line);
 
 		built = true;
+		if(event.shouldCommit()) {
+			event.characters = objFile.length();
+			event.vertices = vertices.size();
+			event.faces = faces.size();
+			event.commit();
+		}
 	}
 
 	private void parseLine(String line) {
@@ -0,0 +1,125 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import engine.components.Transform;
+
+/**
+ * Tests that components are stored in the Chunks of the Archetype matching each Entity's layout.
+ * @author Hamish Rae-Hodgson.
+ */
+public class ArchetypeStorageTest {
+
+	public static class A extends Component { }
+	public static class B extends Component { }
+	public static class SubA extends A { }
+
+	@Test
+	public void attachMovesEntityToArchetypeOfItsTypes() {
+		World world = new World();
+		Entity entity = world.createEntity("e");
+		A a = entity.attachComponent(A.class);
+
+		assertEquals(2, entity.archetype.getColumnCount());
+		assertSame(Transform.class, entity.archetype.getType(0));
+		assertSame(A.class, entity.archetype.getType(1));
+		assertSame(a, entity.getComponent(A.class));
+		assertSame(entity, a.getOwner());
+		assertTrue(entity.hasComponent(A.class));
+		assertFalse(entity.hasComponent(B.class));
+	}
+
+	@Test
+	public void entitiesWithTheSameLayoutShareAnArchetype() {
+		World world = new World();
+		Entity first = world.createEntity("first");
+		Entity second = world.createEntity("second");
+		first.attachComponent(A.class);
+		first.attachComponent(B.class);
+		second.attachComponent(A.class);
+		second.attachComponent(B.class);
+
+		assertSame(first.archetype, second.archetype);
+		assertEquals(2, first.archetype.size());
+	}
+
+	@Test
+	public void detachMovesEntityBackAndLeavesOthersIntact() {
+		World world = new World();
+		Entity first = world.createEntity("first");
+		Entity second = world.createEntity("second");
+		A a1 = first.attachComponent(A.class);
+		B b1 = first.attachComponent(B.class);
+		A a2 = second.attachComponent(A.class);
+		B b2 = second.attachComponent(B.class);
+
+		assertTrue(first.detachComponent(a1));
+
+		assertNull(a1.getOwner());
+		assertNull(first.getComponent(A.class));
+		assertSame(b1, first.getComponent(B.class));
+		assertEquals(1, second.archetype.size());
+		assertSame(a2, second.getComponent(A.class));
+		assertSame(b2, second.getComponent(B.class));
+	}
+
+	@Test
+	public void getComponentsKeepsAttachmentOrderAndMatchesSubtypes() {
+		World world = new World();
+		Entity entity = world.createEntity("e");
+		A first = entity.attachComponent(A.class);
+		entity.attachComponent(B.class);
+		SubA second = entity.attachComponent(SubA.class);
+		A third = entity.attachComponent(A.class);
+
+		assertEquals(Arrays.asList(first, second, third), entity.getComponents(A.class));
+		assertSame(first, entity.getComponent(A.class));
+		assertEquals(Arrays.asList(second), entity.getComponents(SubA.class));
+	}
+
+	@Test
+	public void archetypeSpillsIntoNewChunkPastCapacity() {
+		World world = new World();
+		Entity[] entities = new Entity[Chunk.CAPACITY + 1];
+		A[] components = new A[entities.length];
+		for(int i = 0; i < entities.length; i++) {
+			entities[i] = world.createEntity("e" + i);
+			components[i] = entities[i].attachComponent(A.class);
+		}
+
+		Archetype archetype = entities[0].archetype;
+		assertEquals(2, archetype.getChunkCount());
+		assertEquals(Chunk.CAPACITY, archetype.getChunk(0).size());
+		assertEquals(1, archetype.getChunk(1).size());
+		for(int i = 0; i < entities.length; i++)
+			assertSame(components[i], entities[i].getComponent(A.class));
+	}
+
+	@Test
+	public void destroyFillsTheGapWithTheLastEntity() {
+		World world = new World();
+		Entity[] entities = new Entity[3];
+		A[] components = new A[3];
+		for(int i = 0; i < entities.length; i++) {
+			entities[i] = world.createEntity("e" + i);
+			components[i] = entities[i].attachComponent(A.class);
+		}
+		Archetype archetype = entities[0].archetype;
+
+		assertTrue(world.destroy(entities[0]));
+
+		assertEquals(2, archetype.size());
+		assertSame(entities[2], archetype.getChunk(0).getEntity(0));
+		assertSame(components[1], entities[1].getComponent(A.class));
+		assertSame(components[2], entities[2].getComponent(A.class));
+	}
+
+}
@@ -0,0 +1,105 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests how a Clock catches its fixed steps up with time, and what it does when it can't.
+ * @author Hamish Rae-Hodgson.
+ */
+public class ClockTest {
+
+	private static final long SECOND = 1000000000L;
+
+	/** Runs the fixed steps that are due like the Engine does, returning how many ran */
+	private static int runFixedSteps(Clock clock) {
+		int steps = clock.fixedStepsDue();
+		for(int i = 0; i < steps; i++)
+			clock.progressFixedTime();
+		return steps;
+	}
+
+	@Test
+	public void fixedStepsKeepUpWithTime() {
+		Clock clock = new Clock();
+		clock.setFixedRate(100);
+		int steps = 0;
+		for(int frame = 0; frame < 60; frame++) {
+			clock.progressTime(SECOND/60);
+			steps += runFixedSteps(clock);
+			long behind = clock.getTimeNanos() - clock.getFixedTimeNanos();
+			assertTrue("fixed time is never behind time after its steps", behind <= 0 && behind > -clock.getFixedDeltaNanos());
+		}
+		assertEquals(100, steps);
+		assertEquals(0, clock.getDroppedSteps());
+	}
+
+	@Test
+	public void aLongFrameIsCappedAndTheRestDropped() {
+		Clock clock = new Clock();
+		clock.setFixedRate(100);
+		clock.setMaxCatchUp(8);
+
+		clock.progressTime(SECOND);
+
+		assertEquals(8, runFixedSteps(clock));
+		assertEquals(92, clock.getDroppedSteps());
+		assertEquals(SECOND, clock.getTimeNanos());
+		clock.progressTime(0);
+		assertEquals("the dropped steps are skipped, not owed", 0, runFixedSteps(clock));
+	}
+
+	@Test
+	public void dilationHoldsTimeBackInstead() {
+		Clock clock = new Clock();
+		clock.setFixedRate(100);
+		clock.setMaxCatchUp(4);
+		clock.setDilation(true);
+
+		clock.progressTime(SECOND);
+
+		assertEquals(4, runFixedSteps(clock));
+		assertEquals(0, clock.getDroppedSteps());
+		assertEquals(4*clock.getFixedDeltaNanos(), clock.getTimeNanos());
+		assertEquals(SECOND - 4*clock.getFixedDeltaNanos(), clock.getDilatedNanos());
+	}
+
+	@Test
+	public void timeDoesntDriftOverLongSessions() {
+		Clock clock = new Clock();
+		clock.setFixedRate(1000);
+		clock.setMaxCatchUp(1);
+		//an hour of 1ms frames
+		for(int frame = 0; frame < 3600*1000; frame++) {
+			clock.progressTime(SECOND/1000);
+			runFixedSteps(clock);
+		}
+
+		assertEquals(3600*SECOND, clock.getTimeNanos());
+		assertEquals(3600*SECOND, clock.getFixedTimeNanos());
+		assertEquals(0.001f, clock.getDeltaTime(), 0.000001f);
+	}
+
+	@Test
+	public void stepsDueRoundsUp() {
+		assertEquals(0, Clock.stepsDue(0, 10));
+		assertEquals(0, Clock.stepsDue(-5, 10));
+		assertEquals(1, Clock.stepsDue(1, 10));
+		assertEquals(1, Clock.stepsDue(10, 10));
+		assertEquals(2, Clock.stepsDue(11, 10));
+		assertEquals(Integer.MAX_VALUE, Clock.stepsDue(Long.MAX_VALUE, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void fixedRateMustBePositive() {
+		new Clock().setFixedRate(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void catchUpMustAllowAStep() {
+		new Clock().setMaxCatchUp(0);
+	}
+
+}
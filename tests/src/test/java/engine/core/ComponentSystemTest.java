@@ -0,0 +1,228 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.components.Transform;
+
+/**
+ * Tests that ComponentSystems are handed every matching Entity in Spans, and run in their Phase.
+ * @author Hamish Rae-Hodgson.
+ */
+public class ComponentSystemTest {
+
+	/** What ran, in the order it ran */
+	static final List<String> ran = new ArrayList<String>();
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	public static class Marker extends Component { }
+
+	/** Moves every Transform by its Velocity and remembers what it was handed */
+	static class Move extends ComponentSystem {
+		final Set<Entity> seen = new HashSet<Entity>();
+		int spans, begins, ends;
+		Move() {
+			super(Transform.class, Velocity.class);
+		}
+		@Override
+		protected void begin() {
+			begins++;
+		}
+		@Override
+		protected void update(Span span) {
+			spans++;
+			assertTrue(span.size() > 0 && span.size() <= Chunk.CAPACITY);
+			Transform[] transforms = span.get(0);
+			Velocity[] velocities = span.get(1);
+			for(int i = 0; i < span.size(); i++) {
+				assertSame(span.getEntity(i), transforms[i].getOwner());
+				assertSame(span.getEntity(i), velocities[i].getOwner());
+				assertTrue(seen.add(span.getEntity(i)));
+				transforms[i].translate(velocities[i].x, 0, 0, Transform.Space.WORLD);
+			}
+		}
+		@Override
+		protected void end() {
+			ends++;
+		}
+	}
+
+	/** Records the phase it was run in */
+	static class Record extends ComponentSystem {
+		final String name;
+		Record(String name) {
+			super(Transform.class);
+			this.name = name;
+		}
+		@Override
+		protected void update(Span span) {
+			ran.add(name);
+		}
+	}
+
+	public static class Ticker extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			ran.add("update");
+		}
+		@Override
+		public void fixedUpdate() {
+			ran.add("fixedUpdate");
+		}
+	}
+
+	@Before
+	public void setUp() {
+		ran.clear();
+	}
+
+	@Test
+	public void everyMatchingEntityIsHandedOverOnce() {
+		World world = new World();
+		List<Entity> moving = new ArrayList<Entity>();
+		for(int i = 0; i < Chunk.CAPACITY*3 + 5; i++) {
+			Entity entity = world.createEntity("e");
+			entity.attachComponent(Velocity.class).x = 1;
+			if(i % 2 == 0) entity.attachComponent(Marker.class); //a second Archetype
+			moving.add(entity);
+		}
+		Entity still = world.createEntity("still");
+		Move move = new Move();
+		move.register(world);
+
+		move.run();
+
+		assertEquals(new HashSet<Entity>(moving), move.seen);
+		assertEquals(1, move.begins);
+		assertEquals(1, move.ends);
+		assertTrue(move.spans >= 4);
+		for(Entity entity : moving)
+			assertEquals(1, entity.getTransform().worldPosition().x(), 0);
+		assertEquals(0, still.getTransform().worldPosition().x(), 0);
+	}
+
+	@Test
+	public void newArchetypesAreSeenOnTheNextRun() {
+		World world = new World();
+		Move move = new Move();
+		move.register(world);
+		move.run();
+		assertEquals(0, move.spans);
+
+		Entity entity = world.createEntity("e");
+		entity.attachComponent(Velocity.class);
+		move.run();
+
+		assertEquals(Collections.singleton(entity), move.seen);
+	}
+
+	@Test
+	public void systemsRunAroundTheBehavioursInTheirPhase() throws InterruptedException {
+		World world = new World();
+		world.getClock().setFixedRate(1000);
+		world.getClock().setMaxCatchUp(1);
+		world.createEntity("e").attachComponent(Ticker.class);
+		Engine engine = world.getEngine();
+		engine.setPool(null);
+		engine.addSystem(new Record("afterTick"), ComponentSystem.Phase.AFTER_TICK);
+		engine.addSystem(new Record("beforeTick"), ComponentSystem.Phase.BEFORE_TICK);
+		engine.addSystem(new Record("beforeFixedTick"), ComponentSystem.Phase.BEFORE_FIXED_TICK);
+		engine.addSystem(new Record("afterFixedTick"), ComponentSystem.Phase.AFTER_FIXED_TICK);
+
+		//The first step has no time to simulate, so keep stepping until one has a fixed tick
+		for(int i = 0; i < 1000 && !ran.contains("fixedUpdate"); i++) {
+			ran.clear();
+			Thread.sleep(2);
+			engine.step();
+		}
+
+		assertEquals(Arrays.asList("beforeTick", "update", "afterTick", "beforeFixedTick", "fixedUpdate", "afterFixedTick"), ran);
+	}
+
+	@Test
+	public void removedSystemsStopRunning() {
+		World world = new World();
+		world.createEntity("e");
+		Record record = new Record("tick");
+		world.getEngine().addSystem(record, ComponentSystem.Phase.BEFORE_TICK);
+		world.getEngine().step();
+		assertEquals(1, ran.size());
+
+		assertTrue(world.getEngine().removeSystem(record));
+		assertFalse(world.getEngine().removeSystem(record));
+		world.getEngine().step();
+		assertEquals(1, ran.size());
+	}
+
+	@Test
+	public void changesMadeBySystemsAreDeferred() {
+		final World world = new World();
+		for(int i = 0; i < 3; i++)
+			world.createEntity("e").attachComponent(Velocity.class);
+		final Query query = world.query(Velocity.class);
+		world.getEngine().addSystem(new ComponentSystem(Velocity.class) {
+			@Override
+			protected void update(Span span) {
+				for(int i = 0; i < span.size(); i++)
+					world.destroy(span.getEntity(i));
+				assertEquals(3, query.size());
+			}
+		}, ComponentSystem.Phase.BEFORE_TICK);
+
+		world.getEngine().step();
+
+		assertEquals(0, query.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void aSystemCanOnlyBeRegisteredOnce() {
+		Record record = new Record("twice");
+		new World().getEngine().addSystem(record, ComponentSystem.Phase.BEFORE_TICK);
+		new World().getEngine().addSystem(record, ComponentSystem.Phase.BEFORE_TICK);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aSystemNeedsASignature() {
+		new ComponentSystem() {
+			@Override
+			protected void update(Span span) { }
+		};
+	}
+
+	@Test
+	public void spanIsClearedAfterTheRun() {
+		World world = new World();
+		world.createEntity("e").attachComponent(Velocity.class);
+		final ComponentSystem.Span[] kept = new ComponentSystem.Span[1];
+		ComponentSystem system = new ComponentSystem(Velocity.class) {
+			@Override
+			protected void update(Span span) {
+				kept[0] = span;
+			}
+		};
+		system.register(world);
+		system.run();
+
+		assertNull(kept[0].getChunk());
+	}
+
+}
@@ -0,0 +1,108 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests that structural changes made while deferring are recorded and played back together.
+ * @author Hamish Rae-Hodgson.
+ */
+public class EntityCommandBufferTest {
+
+	public static class A extends Component { }
+	public static class B extends Component { }
+
+	@Test
+	public void createdEntityIsFoundButNotIteratedUntilPlayback() {
+		World world = new World();
+		Query query = world.query(A.class);
+		world.getStore().beginDeferring();
+		Entity entity = world.createEntity("e");
+		A a = entity.attachComponent(A.class);
+
+		assertSame(entity, world.getEntity(entity.getID()));
+		assertSame(a, entity.getComponent(A.class)); //not placed yet, so attached straight away
+		assertEquals(0, query.size());
+
+		world.getStore().endDeferring();
+		assertEquals(1, query.size());
+		assertTrue(world.getCommandBuffer().isEmpty());
+	}
+
+	@Test
+	public void destroyedEntityIsIteratedUntilPlayback() {
+		World world = new World();
+		Entity entity = world.createEntity("e");
+		entity.attachComponent(A.class);
+		Query query = world.query(A.class);
+		world.getStore().beginDeferring();
+
+		world.destroy(entity);
+
+		assertNull(world.getEntity(entity.getID()));
+		assertEquals(1, query.size());
+		world.getStore().endDeferring();
+		assertEquals(0, query.size());
+	}
+
+	@Test
+	public void attachAndDetachArePlayedBackInOrder() {
+		World world = new World();
+		Entity entity = world.createEntity("e");
+		A a = entity.attachComponent(A.class);
+		world.getStore().beginDeferring();
+
+		B b = entity.attachComponent(new B());
+		entity.detachComponent(a);
+
+		assertNull(b.getOwner());
+		assertSame(entity, a.getOwner());
+		assertEquals(2, world.getCommandBuffer().size());
+
+		world.getStore().endDeferring();
+		assertSame(entity, b.getOwner());
+		assertNull(a.getOwner());
+		assertFalse(entity.hasComponent(A.class));
+		assertTrue(entity.hasComponent(B.class));
+	}
+
+	@Test
+	public void duplicateAttachIsRejectedWhenRecorded() {
+		World world = new World();
+		Entity first = world.createEntity("first");
+		Entity second = world.createEntity("second");
+		B b = new B();
+		world.getStore().beginDeferring();
+		first.attachComponent(b);
+		try {
+			second.attachComponent(b);
+			fail("attached a component that is already being attached");
+		} catch (IllegalStateException expected) { }
+		world.getStore().endDeferring();
+
+		assertSame(first, b.getOwner());
+		assertFalse(second.hasComponent(B.class));
+	}
+
+	@Test
+	public void entityCreatedAndDestroyedBeforePlaybackIsRecycled() {
+		World world = new World();
+		world.setPooling(true);
+		Query query = world.query(A.class);
+		world.getStore().beginDeferring();
+		Entity entity = world.createEntity("brief");
+		entity.attachComponent(A.class);
+		world.destroy(entity);
+		world.getStore().endDeferring();
+
+		assertEquals(0, query.size());
+		assertEquals(1, world.getPooledCount(Entity.class));
+	}
+
+}
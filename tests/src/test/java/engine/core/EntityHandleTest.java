@@ -0,0 +1,113 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests the generational IDs Entities are handed, and that an old ID never finds a newer Entity.
+ * @author Hamish Rae-Hodgson.
+ */
+public class EntityHandleTest {
+
+	private static final int INDEX_MASK = World.MAX_ENTITIES - 1;
+
+	@Test
+	public void idsArePositiveAndUnique() {
+		World world = new World();
+		Set<Integer> ids = new HashSet<Integer>();
+		for(int i = 0; i < 5000; i++) {
+			int id = world.createEntity("e").getID();
+			assertTrue(id > 0);
+			assertTrue(ids.add(id));
+		}
+	}
+
+	@Test
+	public void destroyedIdFindsNothing() {
+		World world = new World();
+		Entity entity = world.createEntity("e");
+		int id = entity.getID();
+		assertSame(entity, world.getEntity(id));
+		assertTrue(world.isAlive(id));
+
+		assertTrue(world.destroyEntity(id));
+
+		assertNull(world.getEntity(id));
+		assertFalse(world.isAlive(id));
+		assertFalse(world.destroyEntity(id));
+		assertEquals(0, world.getEntityCount());
+	}
+
+	@Test
+	public void freshSlotsAreUsedWhileFewAreFree() {
+		World world = new World();
+		int id = world.createEntity("first").getID();
+		world.destroyEntity(id);
+
+		int next = world.createEntity("second").getID();
+
+		assertNotEquals(id & INDEX_MASK, next & INDEX_MASK);
+	}
+
+	@Test
+	public void oldestFreedSlotIsReusedWithANewGeneration() {
+		World world = new World();
+		int[] ids = new int[World.MIN_FREE + 1];
+		for(int i = 0; i < ids.length; i++)
+			ids[i] = world.createEntity("e").getID();
+		for(int id : ids)
+			world.destroyEntity(id);
+
+		Entity reused = world.createEntity("reused");
+
+		assertEquals(ids[0] & INDEX_MASK, reused.getID() & INDEX_MASK);
+		assertNotEquals(ids[0], reused.getID());
+		assertNull(world.getEntity(ids[0]));
+		assertSame(reused, world.getEntity(reused.getID()));
+	}
+
+	@Test
+	public void staleIdNeverAliasesUnderChurn() {
+		World world = new World();
+		int stale = world.createEntity("first").getID();
+		world.destroyEntity(stale);
+		for(int i = 0; i < 100000; i++) {
+			Entity entity = world.createEntity("churn");
+			assertNotEquals(stale, entity.getID());
+			world.destroy(entity);
+		}
+		assertNull(world.getEntity(stale));
+	}
+
+	@Test
+	public void createWithIdTakesThatSlot() {
+		World world = new World();
+		int id = (3 << World.INDEX_BITS) | 7;
+		Entity entity = world.createEntity(id, "e");
+		assertEquals(id, entity.getID());
+		assertSame(entity, world.getEntity(id));
+		assertNull(world.getEntity(7));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void createWithTakenIdThrows() {
+		World world = new World();
+		int id = world.createEntity("e").getID();
+		world.createEntity(id, "again");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void createWithNonPositiveIdThrows() {
+		new World().createEntity(0, "e");
+	}
+
+}
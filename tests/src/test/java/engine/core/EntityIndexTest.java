@@ -0,0 +1,80 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * Tests finding Entities by name, name prefix and tag.
+ * @author Hamish Rae-Hodgson.
+ */
+public class EntityIndexTest {
+
+	@Test
+	public void findsEntitiesByName() {
+		World world = new World();
+		Entity teddy = world.createEntity("Teddy");
+		Entity first = world.createEntity("Bear");
+		Entity second = world.createEntity("Bear");
+
+		assertSame(teddy, world.getEntity("Teddy"));
+		assertEquals(new HashSet<Entity>(Arrays.asList(first, second)), new HashSet<Entity>(world.getEntities("Bear")));
+		assertNull(world.getEntity("Nobody"));
+		assertTrue(world.getEntities("Nobody").isEmpty());
+	}
+
+	@Test
+	public void followsRenamesAndDestroys() {
+		World world = new World();
+		Entity entity = world.createEntity("Before");
+
+		entity.setName("After");
+		assertNull(world.getEntity("Before"));
+		assertSame(entity, world.getEntity("After"));
+
+		world.destroy(entity);
+		assertNull(world.getEntity("After"));
+	}
+
+	@Test
+	public void findsEntitiesByPrefix() {
+		World world = new World();
+		Entity teddy = world.createEntity("Teddy");
+		Entity teddy1 = world.createEntity("Teddy1");
+		Entity bear = world.createEntity("TeddyBear");
+		world.createEntity("Ted");
+		world.createEntity("Tree");
+
+		assertEquals(new HashSet<Entity>(Arrays.asList(teddy, teddy1, bear)), new HashSet<Entity>(world.getEntitiesWithPrefix("Teddy")));
+		assertTrue(world.getEntitiesWithPrefix("Z").isEmpty());
+	}
+
+	@Test
+	public void findsEntitiesByTag() {
+		World world = new World();
+		Entity enemy = world.createEntity("a");
+		Entity other = world.createEntity("b");
+		enemy.addTag("enemy");
+		enemy.addTag("flying");
+		other.addTag("flying");
+
+		assertEquals(Arrays.asList(enemy), world.getEntitiesWithTag("enemy"));
+		assertEquals(2, world.getEntitiesWithTag("flying").size());
+		assertTrue(enemy.hasTag("enemy"));
+
+		assertTrue(enemy.removeTag("enemy"));
+		assertFalse(enemy.removeTag("enemy"));
+		assertTrue(world.getEntitiesWithTag("enemy").isEmpty());
+
+		world.destroy(other);
+		assertEquals(Arrays.asList(enemy), world.getEntitiesWithTag("flying"));
+	}
+
+}
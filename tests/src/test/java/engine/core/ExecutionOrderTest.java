@@ -0,0 +1,125 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.profiling.CostAccounting;
+
+/**
+ * Tests that the BehaviourScheduler updates Behaviours a class at a time, in execution order.
+ * @author Hamish Rae-Hodgson.
+ */
+public class ExecutionOrderTest {
+
+	/** The name of each class as it was updated */
+	static final List<String> updated = new ArrayList<String>();
+
+	public static class Marker extends Component { }
+
+	public static class First extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			updated.add(getClass().getSimpleName());
+		}
+	}
+
+	public static class Second extends First { }
+
+	public static class Third extends First { }
+
+	private World world;
+	private BehaviourScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		updated.clear();
+		world = new World();
+		scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(null);
+	}
+
+	@Test
+	public void eachClassIsUpdatedTogether() {
+		//Interleave the classes and spread them over two Archetypes
+		for(int i = 0; i < 3; i++) {
+			world.createEntity("e").attachComponent(First.class);
+			Entity marked = world.createEntity("e");
+			marked.attachComponent(Second.class);
+			marked.attachComponent(Marker.class);
+			world.createEntity("e").attachComponent(First.class).getOwner().attachComponent(Marker.class);
+		}
+
+		assertEquals(9, scheduler.update());
+
+		assertEquals(Arrays.asList("First", "First", "First", "First", "First", "First", "Second", "Second", "Second"), updated);
+	}
+
+	@Test
+	public void lowerExecutionOrderRunsFirst() {
+		world.createEntity("e").attachComponent(First.class);
+		world.createEntity("e").attachComponent(Second.class);
+		world.createEntity("e").attachComponent(Third.class);
+		scheduler.setExecutionOrder(First.class, 10);
+		scheduler.setExecutionOrder(Third.class, -10);
+
+		scheduler.update();
+
+		assertEquals(Arrays.asList("Third", "Second", "First"), updated);
+		assertEquals(0, scheduler.getExecutionOrder(Second.class));
+	}
+
+	@Test
+	public void changingTheOrderTakesEffectNextUpdate() {
+		world.createEntity("e").attachComponent(First.class);
+		world.createEntity("e").attachComponent(Second.class);
+		scheduler.update();
+		assertEquals(Arrays.asList("First", "Second"), updated);
+
+		updated.clear();
+		scheduler.setExecutionOrder(Second.class, -1);
+		scheduler.update();
+
+		assertEquals(Arrays.asList("Second", "First"), updated);
+	}
+
+	@Test
+	public void newClassesAreUpdatedOnceTheyExist() {
+		world.createEntity("e").attachComponent(First.class);
+		scheduler.update();
+
+		updated.clear();
+		Entity late = world.createEntity("e");
+		late.attachComponent(Third.class);
+		world.createEntity("e").attachComponent(Second.class);
+		scheduler.update();
+		assertEquals(Arrays.asList("First", "Third", "Second"), updated);
+
+		updated.clear();
+		world.destroy(late);
+		scheduler.update();
+		assertEquals(Arrays.asList("First", "Second"), updated);
+	}
+
+	@Test
+	public void engineExposesTheOrder() {
+		world.createEntity("e").attachComponent(First.class);
+		world.createEntity("e").attachComponent(Second.class);
+		world.getEngine().setPool(null);
+		world.getEngine().setExecutionOrder(First.class, 1);
+
+		world.getEngine().step();
+
+		assertEquals(Arrays.asList("Second", "First"), updated);
+		assertEquals(1, world.getEngine().getExecutionOrder(First.class));
+	}
+
+}
@@ -0,0 +1,148 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.profiling.CostAccounting;
+
+/**
+ * Tests that FixedRateGroups step their ComponentSystems and Behaviours at their own rate.
+ * @author Hamish Rae-Hodgson.
+ */
+public class FixedRateGroupTest {
+
+	private static final long SECOND = 1000000000L;
+
+	public static class Thinker extends Behaviour {
+		int fixedUpdates;
+		float fixedDelta;
+		@Override
+		public void start() { }
+		@Override
+		public void update() { }
+		@Override
+		public void fixedUpdate() {
+			fixedUpdates++;
+			fixedDelta = Time.getFixedDeltaTime();
+		}
+	}
+
+	public static class DeepThinker extends Thinker { }
+
+	static class Counter extends ComponentSystem {
+		int runs;
+		Counter() {
+			super(engine.components.Transform.class);
+		}
+		@Override
+		protected void begin() {
+			runs++;
+		}
+		@Override
+		protected void update(Span span) { }
+	}
+
+	private World world;
+	private BehaviourScheduler scheduler;
+	private FixedRateGroup group;
+
+	@Before
+	public void setUp() {
+		world = new World();
+		scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(null);
+		group = new FixedRateGroup(world, scheduler, "ai", 10);
+	}
+
+	/** Moves the Clock on by nanos and steps the group, with the World current */
+	private void step(final long nanos) {
+		world.run(new Runnable() {
+			public void run() {
+				world.getClock().progressTime(nanos);
+				group.step(world.getClock());
+			}
+		});
+	}
+
+	@Test
+	public void behavioursInAGroupAreFixedUpdatedAtItsRate() {
+		Thinker thinker = world.createEntity("e").attachComponent(Thinker.class);
+		DeepThinker deep = world.createEntity("e").attachComponent(DeepThinker.class);
+		group.addBehaviour(Thinker.class);
+		for(int frame = 0; frame < 60; frame++)
+			step(SECOND/60);
+
+		assertEquals(10, thinker.fixedUpdates);
+		assertEquals("subclasses go with their class", 10, deep.fixedUpdates);
+		assertEquals(0.1f, thinker.fixedDelta, 0.0001f);
+		assertEquals("the Engine's fixed steps leave them to the group", 0, scheduler.fixedUpdate());
+	}
+
+	@Test
+	public void removedBehavioursGoBackToTheFixedSteps() {
+		Thinker thinker = world.createEntity("e").attachComponent(Thinker.class);
+		group.addBehaviour(Thinker.class);
+		assertTrue(group.removeBehaviour(Thinker.class));
+		assertFalse(group.removeBehaviour(Thinker.class));
+
+		step(SECOND);
+		assertEquals(0, thinker.fixedUpdates);
+		assertEquals(1, scheduler.fixedUpdate());
+	}
+
+	@Test
+	public void systemsRunEveryStep() {
+		world.createEntity("e");
+		Counter counter = new Counter();
+		group.addSystem(counter);
+		step(SECOND/2);
+		assertEquals(5, counter.runs);
+
+		assertTrue(group.removeSystem(counter));
+		step(SECOND/2);
+		assertEquals(5, counter.runs);
+	}
+
+	@Test
+	public void aLongFrameIsCappedAndTheRestDropped() {
+		Counter counter = new Counter();
+		world.createEntity("e");
+		group.addSystem(counter);
+		group.setMaxCatchUp(3);
+
+		step(SECOND);
+
+		assertEquals(3, counter.runs);
+		assertEquals(7, group.getDroppedSteps());
+		assertEquals(SECOND, group.getFixedTimeNanos());
+	}
+
+	@Test
+	public void groupsStepAlongsideTheEngine() {
+		Engine engine = world.getEngine();
+		engine.setPool(null);
+		FixedRateGroup fast = engine.addFixedRateGroup("fast", 1000);
+		Thinker thinker = world.createEntity("e").attachComponent(Thinker.class);
+		fast.addBehaviour(Thinker.class);
+		long start = System.nanoTime();
+		while(System.nanoTime() - start < 50*1000000L)
+			engine.step();
+
+		assertTrue(thinker.fixedUpdates > 10);
+		assertEquals(0.001f, thinker.fixedDelta, 0.00001f);
+
+		assertTrue(engine.removeFixedRateGroup(fast));
+		assertFalse(engine.removeFixedRateGroup(fast));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rateMustBePositive() {
+		world.getEngine().addFixedRateGroup("never", 0);
+	}
+
+}
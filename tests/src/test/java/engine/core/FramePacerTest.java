@@ -0,0 +1,136 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests that a FramePacer holds frames to its rate in each Mode and keeps count of the ones it missed.
+ * Timings are only checked loosely, so a busy machine doesn't fail them.
+ * @author Hamish Rae-Hodgson.
+ */
+public class FramePacerTest {
+
+	private static final long MILLI = 1000000;
+
+	private static void work(long nanos) {
+		long end = System.nanoTime() + nanos;
+		while(System.nanoTime() < end)
+			Thread.yield();
+	}
+
+	@Test
+	public void fixedHoldsToTheFrameRate() {
+		FramePacer pacer = new FramePacer(FramePacer.Mode.FIXED, 100);
+		long start = System.nanoTime();
+		pacer.reset();
+		for(int i = 0; i < 50; i++)
+			pacer.pace();
+		long elapsed = System.nanoTime() - start;
+
+		assertTrue("50 frames at 100fps took " + elapsed/MILLI + "ms", elapsed >= 490*MILLI && elapsed < 1000*MILLI);
+		assertEquals(50, pacer.getFrameCount());
+		assertTrue(pacer.getMeanErrorNanos() >= 0);
+		assertTrue(pacer.getMaxErrorNanos() >= pacer.getLastErrorNanos());
+	}
+
+	@Test
+	public void uncappedNeverWaits() {
+		FramePacer pacer = new FramePacer(FramePacer.Mode.UNCAPPED, 1);
+		long start = System.nanoTime();
+		for(int i = 0; i < 1000; i++)
+			pacer.pace();
+
+		assertTrue(System.nanoTime() - start < 500*MILLI);
+		assertEquals(0, pacer.getEffectiveFrameRate(), 0);
+		assertFalse(pacer.isRunningSlow());
+		assertEquals(0, pacer.getSlowFrameCount());
+	}
+
+	@Test
+	public void anOverrunIsCountedAndNotMadeUpFor() {
+		FramePacer pacer = new FramePacer(FramePacer.Mode.FIXED, 200);
+		pacer.reset();
+		work(20*MILLI);
+		long start = System.nanoTime();
+		pacer.pace();
+		assertTrue("an overrun frame doesn't wait", System.nanoTime() - start < 5*MILLI);
+		assertTrue(pacer.isRunningSlow());
+		assertEquals(1, pacer.getSlowFrameCount());
+		assertTrue(pacer.getLastErrorNanos() >= 15*MILLI);
+
+		//More than a frame behind, so the next frame gets a whole frame rather than being rushed
+		start = System.nanoTime();
+		pacer.pace();
+		assertTrue(System.nanoTime() - start >= 4*MILLI);
+		assertFalse(pacer.isRunningSlow());
+	}
+
+	@Test
+	public void adaptiveDropsToAFractionWhileFramesCantKeepUp() {
+		FramePacer pacer = new FramePacer(FramePacer.Mode.ADAPTIVE, 100);
+		pacer.reset();
+		for(int i = 0; i < 3; i++) {
+			work(15*MILLI);
+			pacer.pace();
+		}
+
+		assertEquals(50, pacer.getEffectiveFrameRate(), 0.1f);
+		assertEquals(100, pacer.getFrameRate());
+
+		pacer.setMode(FramePacer.Mode.ADAPTIVE);
+		assertEquals("setting the mode starts from the full rate", 100, pacer.getEffectiveFrameRate(), 0.1f);
+	}
+
+	@Test
+	public void interruptingEndsTheWait() {
+		FramePacer pacer = new FramePacer(FramePacer.Mode.FIXED, 1);
+		pacer.reset();
+		Thread.currentThread().interrupt();
+		long start = System.nanoTime();
+		pacer.pace();
+
+		assertTrue(Thread.interrupted());
+		assertTrue(System.nanoTime() - start < 500*MILLI);
+	}
+
+	@Test
+	public void statisticsCanBeReset() {
+		FramePacer pacer = new FramePacer(FramePacer.Mode.UNCAPPED, 60);
+		pacer.pace();
+		pacer.resetStatistics();
+
+		assertEquals(0, pacer.getFrameCount());
+		assertEquals(0, pacer.getMaxErrorNanos());
+		assertEquals(0, pacer.getMeanErrorNanos(), 0);
+	}
+
+	@Test
+	public void engineFrameRateSetsTheMode() {
+		Engine engine = new World().getEngine();
+		FramePacer pacer = engine.getPacer();
+
+		engine.setFrameRate(0);
+		assertEquals(FramePacer.Mode.UNCAPPED, pacer.getMode());
+		engine.setFrameRate(30);
+		assertEquals(FramePacer.Mode.FIXED, pacer.getMode());
+		assertEquals(30, pacer.getFrameRate());
+
+		pacer.setMode(FramePacer.Mode.ADAPTIVE);
+		engine.setFrameRate(144);
+		assertEquals("a rate doesn't undo ADAPTIVE", FramePacer.Mode.ADAPTIVE, pacer.getMode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void frameRateMustBePositive() {
+		new FramePacer(FramePacer.Mode.FIXED, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void modeCantBeNull() {
+		new FramePacer(null, 60);
+	}
+
+}
@@ -0,0 +1,159 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import engine.components.Behaviour;
+
+/**
+ * Tests that an Engine without a Renderer steps its World without loading anything to do with rendering.
+ * @author Hamish Rae-Hodgson.
+ */
+public class HeadlessTest {
+
+	/** Classes a headless Engine must never load */
+	private static final String[] RENDERING = {
+		"engine.opengl.Display", "engine.opengl.GL2Renderer", "engine.opengl.RenderSnapshot",
+		"engine.input.Mouse", "cub3d.assets.Resources", "javax.media.opengl.GL2"
+	};
+
+	public static class Counter extends Behaviour {
+		static volatile CountDownLatch updated = new CountDownLatch(0);
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			updated.countDown();
+		}
+	}
+
+	/** Loads everything on the class path itself, so what it has loaded can be checked */
+	private static final class Isolated extends URLClassLoader {
+		Isolated() throws MalformedURLException {
+			super(classPath(), ClassLoader.getPlatformClassLoader());
+		}
+		boolean loaded(String name) {
+			return findLoadedClass(name) != null;
+		}
+		private static URL[] classPath() throws MalformedURLException {
+			String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+			URL[] urls = new URL[paths.length];
+			for(int i = 0; i < paths.length; i++)
+				urls[i] = new File(paths[i]).toURI().toURL();
+			return urls;
+		}
+	}
+
+	/** Records what an Engine asks of its Renderer */
+	private static final class Recording implements Renderer {
+		final List<String> calls = new ArrayList<String>();
+		@Override
+		public void render(World world) {
+			calls.add("render");
+		}
+		@Override
+		public void capturePrevious(World world) {
+			calls.add("capturePrevious");
+		}
+		@Override
+		public void captureCurrent(World world, float alpha) {
+			calls.add("captureCurrent");
+		}
+		@Override
+		public void present(World world) {
+			calls.add("present");
+		}
+	}
+
+	@Test
+	public void steppingLoadsNothingToDoWithRendering() throws Exception {
+		try (Isolated loader = new Isolated()) {
+			Object world = loader.loadClass(World.class.getName()).getConstructor().newInstance();
+			Object entity = world.getClass().getMethod("createEntity", String.class).invoke(world, "e");
+			entity.getClass().getMethod("attachComponent", Class.class).invoke(entity, loader.loadClass(Counter.class.getName()));
+			Object engine = world.getClass().getMethod("getEngine").invoke(world);
+			for(int i = 0; i < 10; i++)
+				engine.getClass().getMethod("step").invoke(engine);
+
+			assertTrue(loader.loaded(Engine.class.getName()));
+			for(String name : RENDERING)
+				assertFalse(name + " was loaded", loader.loaded(name));
+		}
+	}
+
+	@Test
+	public void startedEngineRunsUntilStopped() throws InterruptedException {
+		World world = new World();
+		world.createEntity("e").attachComponent(Counter.class);
+		Engine engine = world.getEngine();
+		assertNull(engine.getRenderer());
+		engine.setFrameRate(0);
+		Counter.updated = new CountDownLatch(100);
+
+		engine.start();
+		try {
+			assertTrue(engine.isRunning());
+			assertTrue(Counter.updated.await(10, TimeUnit.SECONDS));
+		} finally {
+			engine.stop();
+		}
+		assertFalse(engine.isRunning());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void anEngineCanOnlyBeStartedOnce() {
+		Engine engine = new World().getEngine();
+		engine.start();
+		try {
+			engine.start();
+		} finally {
+			engine.stop();
+		}
+	}
+
+	@Test
+	public void aRendererDrawsEachStep() {
+		World world = new World();
+		Recording renderer = new Recording();
+		world.getEngine().setRenderer(renderer);
+
+		world.getEngine().step();
+		world.getEngine().step();
+
+		assertEquals(2, renderer.calls.size());
+		assertEquals("render", renderer.calls.get(0));
+		assertEquals("render", renderer.calls.get(1));
+	}
+
+	@Test
+	public void aPipelinedRendererCapturesThenPresents() throws InterruptedException {
+		World world = new World();
+		world.getClock().setFixedRate(1000);
+		world.getClock().setMaxCatchUp(1);
+		Recording renderer = new Recording();
+		world.getEngine().setRenderer(renderer);
+		world.getEngine().setPipelined(true);
+
+		world.getEngine().step(); //no time has passed, so no fixed step
+		assertEquals("[captureCurrent, present]", renderer.calls.toString());
+
+		renderer.calls.clear();
+		Thread.sleep(5);
+		world.getEngine().step();
+		assertEquals("[capturePrevious, captureCurrent, present]", renderer.calls.toString());
+	}
+
+}
@@ -0,0 +1,168 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.components.ThreadSafe;
+import engine.components.Transform;
+import engine.profiling.CostAccounting;
+
+/**
+ * Tests which Behaviours the BehaviourScheduler updates in parallel, and that each is updated once.
+ * @author Hamish Rae-Hodgson.
+ */
+public class ParallelSchedulerTest {
+
+	/** The threads Behaviours were updated on and the Worlds current on them */
+	static final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+	static final Set<World> worlds = Collections.newSetFromMap(new ConcurrentHashMap<World, Boolean>());
+
+	/** Counted down by every update of a class, so two of its updates on different threads can wait for each other */
+	static final Map<Class<?>, CountDownLatch> meets = new ConcurrentHashMap<Class<?>, CountDownLatch>();
+	static final Set<Class<?>> met = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+	public static class Plain extends Behaviour {
+		int updates;
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			updates++;
+			threads.add(Thread.currentThread());
+		}
+	}
+
+	@ThreadSafe
+	public static class Safe extends Plain {
+		@Override
+		public void update() {
+			super.update();
+			worlds.add(World.current());
+			CountDownLatch meet = meets.get(getClass());
+			if(meet == null) return;
+			meet.countDown();
+			try {
+				if(meet.await(5, TimeUnit.SECONDS)) met.add(getClass());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@ThreadSafe(writes = Transform.class)
+	public static class Writer extends Safe { }
+
+	@ThreadSafe(reads = Transform.class)
+	public static class Reader extends Safe { }
+
+	@ThreadSafe(reads = Transform.class, writes = Transform.class)
+	public static class ReaderWriter extends Safe { }
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		threads.clear();
+		worlds.clear();
+		meets.clear();
+		met.clear();
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	private static <E extends Plain> E[] spawn(World world, Class<E> type, E[] out) {
+		for(int i = 0; i < out.length; i++)
+			out[i] = world.createEntity("e").attachComponent(type);
+		return out;
+	}
+
+	@Test
+	public void threadSafeChunksAreUpdatedInParallel() {
+		World world = new World();
+		Safe[] safe = spawn(world, Safe.class, new Safe[Chunk.CAPACITY*4]);
+		BehaviourScheduler scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(pool);
+		meets.put(Safe.class, new CountDownLatch(2));
+
+		assertEquals(safe.length, scheduler.update());
+
+		assertTrue("no two Chunks were updated at the same time", met.contains(Safe.class));
+		assertTrue(threads.size() > 1);
+		assertEquals(Collections.singleton(world), worlds);
+		for(Safe behaviour : safe)
+			assertEquals(1, behaviour.updates);
+	}
+
+	@Test
+	public void behavioursThatArentThreadSafeStayOnTheSteppingThread() {
+		World world = new World();
+		Plain[] plain = spawn(world, Plain.class, new Plain[Chunk.CAPACITY*4]);
+		BehaviourScheduler scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(pool);
+
+		scheduler.update();
+
+		assertEquals(Collections.singleton(Thread.currentThread()), threads);
+		for(Plain behaviour : plain)
+			assertEquals(1, behaviour.updates);
+	}
+
+	@Test
+	public void behavioursThatReadWhatTheyWriteStayOnTheSteppingThread() {
+		World world = new World();
+		spawn(world, ReaderWriter.class, new ReaderWriter[Chunk.CAPACITY*2]);
+		BehaviourScheduler scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(pool);
+
+		assertEquals(Chunk.CAPACITY*2, scheduler.update());
+
+		assertEquals(Collections.singleton(Thread.currentThread()), threads);
+	}
+
+	@Test
+	public void aWriterAndAReaderOfTheSameTypeAreBothUpdatedInParallel() {
+		World world = new World();
+		spawn(world, Writer.class, new Writer[Chunk.CAPACITY*2]);
+		spawn(world, Reader.class, new Reader[Chunk.CAPACITY*2]);
+		BehaviourScheduler scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(pool);
+		meets.put(Writer.class, new CountDownLatch(2));
+		meets.put(Reader.class, new CountDownLatch(2));
+
+		//They never run at the same time as each other, so each class only has to be safe alongside itself
+		assertEquals(Chunk.CAPACITY*4, scheduler.update());
+
+		assertTrue(met.contains(Writer.class));
+		assertTrue(met.contains(Reader.class));
+	}
+
+	@Test
+	public void withoutAPoolEverythingIsSerial() {
+		World world = new World();
+		spawn(world, Safe.class, new Safe[Chunk.CAPACITY*2]);
+		BehaviourScheduler scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(null);
+
+		scheduler.update();
+
+		assertEquals(Collections.singleton(Thread.currentThread()), threads);
+	}
+
+}
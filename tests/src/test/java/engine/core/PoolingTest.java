@@ -0,0 +1,108 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import engine.components.Transform;
+
+/**
+ * Tests that destroyed Entities and Poolable components are recycled while pooling is on.
+ * @author Hamish Rae-Hodgson.
+ */
+public class PoolingTest {
+
+	public static class Bullet extends Component implements Poolable {
+		int hits;
+		@Override
+		public void reset() {
+			hits = 0;
+		}
+	}
+
+	public static class Plain extends Component { }
+
+	@Test
+	public void nothingIsPooledByDefault() {
+		World world = new World();
+		assertFalse(world.isPooling());
+		Entity entity = world.createEntity("e");
+		entity.attachComponent(Bullet.class);
+		world.destroy(entity);
+
+		assertEquals(0, world.getPooledCount(Entity.class));
+		assertEquals(0, world.getPooledCount(Bullet.class));
+	}
+
+	@Test
+	public void destroyedEntityIsReusedWithItsTransformReset() {
+		World world = new World();
+		world.setPooling(true);
+		Entity entity = world.createEntity("old");
+		Transform transform = entity.getTransform();
+		transform.translate(1, 2, 3, Transform.Space.WORLD);
+		int id = entity.getID();
+		world.destroy(entity);
+		assertEquals(1, world.getPooledCount(Entity.class));
+
+		Entity reused = world.createEntity("new");
+
+		assertSame(entity, reused);
+		assertSame(transform, reused.getTransform());
+		assertEquals(0, reused.getTransform().worldPosition().x(), 0);
+		assertEquals("new", reused.getName());
+		assertTrue(reused.getID() != id);
+		assertNull(world.getEntity(id));
+		assertEquals(0, world.getPooledCount(Entity.class));
+	}
+
+	@Test
+	public void onlyPoolableComponentsArePooledAndTheyAreReset() {
+		World world = new World();
+		world.setPooling(true);
+		Entity entity = world.createEntity("e");
+		Bullet bullet = entity.attachComponent(Bullet.class);
+		bullet.hits = 3;
+		Plain plain = entity.attachComponent(Plain.class);
+		world.destroy(entity);
+
+		assertEquals(1, world.getPooledCount(Bullet.class));
+		assertEquals(0, world.getPooledCount(Plain.class));
+		assertNull(bullet.getOwner());
+		assertNull(plain.getOwner());
+
+		Bullet reused = world.createEntity("e").attachComponent(Bullet.class);
+		assertSame(bullet, reused);
+		assertEquals(0, reused.hits);
+		assertNotSame(plain, world.createEntity("e").attachComponent(Plain.class));
+	}
+
+	@Test
+	public void poolsStopAtTheirCapacity() {
+		World world = new World();
+		world.setPooling(true);
+		world.setPoolCapacity(2);
+		for(int i = 0; i < 5; i++)
+			world.createEntity("e");
+		for(Entity entity : world.getEntities("e"))
+			world.destroy(entity);
+
+		assertEquals(2, world.getPooledCount(Entity.class));
+	}
+
+	@Test
+	public void turningPoolingOffEmptiesThePools() {
+		World world = new World();
+		world.setPooling(true);
+		world.destroy(world.createEntity("e"));
+		world.setPooling(false);
+
+		assertEquals(0, world.getPooledCount(Entity.class));
+	}
+
+}
@@ -0,0 +1,88 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import engine.components.Transform;
+
+/**
+ * Tests capturing an Entity as a Prefab and stamping out copies of it.
+ * @author Hamish Rae-Hodgson.
+ */
+public class PrefabTest {
+
+	public static class Health extends Component {
+		int points;
+		int[] shared = new int[1];
+	}
+
+	@Test
+	public void instancesCopyTheCapturedComponents() {
+		World world = new World();
+		Entity template = world.createEntity("goblin");
+		Health health = template.attachComponent(Health.class);
+		health.points = 10;
+		template.getTransform().translate(1, 0, 0, Transform.Space.WORLD);
+		Prefab prefab = new Prefab(template);
+		health.points = 99; //captured already, so this isn't copied
+
+		Entity[] goblins = world.instantiate(prefab, 3);
+
+		assertEquals(3, goblins.length);
+		for(Entity goblin : goblins) {
+			Health copy = goblin.getComponent(Health.class);
+			assertNotSame(health, copy);
+			assertSame(goblin, copy.getOwner());
+			assertEquals(10, copy.points);
+			assertSame("copies are shallow", health.shared, copy.shared);
+			assertEquals("goblin", goblin.getName());
+			assertEquals(1, goblin.getTransform().worldPosition().x(), 0);
+			assertSame(prefab.getArchetype(), goblin.archetype);
+		}
+		assertNotSame(goblins[0].getTransform(), goblins[1].getTransform());
+		assertEquals(4, world.query(Health.class).size());
+		assertEquals(4, world.getEntities("goblin").size());
+	}
+
+	@Test
+	public void instancesCanBeMadeInAnotherWorld() {
+		World source = new World();
+		Entity template = source.createEntity("goblin");
+		template.attachComponent(Health.class);
+		Prefab prefab = new Prefab(template);
+
+		World other = new World();
+		Entity goblin = other.instantiate(prefab);
+
+		assertSame(other, goblin.getWorld());
+		assertEquals(1, other.query(Health.class).size());
+		assertEquals(1, source.query(Health.class).size());
+		assertSame(goblin, other.getEntity(goblin.getID()));
+	}
+
+	@Test
+	public void instantiatingWhileDeferringPlacesAtPlayback() {
+		World world = new World();
+		Entity template = world.createEntity("goblin");
+		template.attachComponent(Health.class);
+		Prefab prefab = new Prefab(template);
+		Query query = world.query(Health.class);
+
+		world.getStore().beginDeferring();
+		world.instantiate(prefab, 5);
+		assertEquals(1, query.size());
+		world.getStore().endDeferring();
+
+		assertEquals(6, query.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeCountThrows() {
+		World world = new World();
+		world.instantiate(new Prefab(world.createEntity("e")), -1);
+	}
+
+}
@@ -0,0 +1,93 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests that Queries match the right Archetypes and stay up to date as the World changes.
+ * @author Hamish Rae-Hodgson.
+ */
+public class QueryTest {
+
+	public static class A extends Component { }
+	public static class B extends Component { }
+	public static class SubA extends A { }
+	public static class C extends Component { }
+
+	@Test
+	public void matchesArchetypesWithEveryType() {
+		World world = new World();
+		world.createEntity("a").attachComponent(A.class);
+		Entity ab = world.createEntity("ab");
+		ab.attachComponent(A.class);
+		ab.attachComponent(B.class);
+		world.createEntity("b").attachComponent(B.class);
+
+		Query query = world.query(A.class, B.class);
+
+		assertEquals(1, query.getArchetypeCount());
+		assertSame(ab.archetype, query.getArchetype(0));
+		assertEquals(1, query.size());
+	}
+
+	@Test
+	public void matchesSubtypes() {
+		World world = new World();
+		world.createEntity("a").attachComponent(A.class);
+		world.createEntity("sub").attachComponent(SubA.class);
+
+		assertEquals(2, world.query(A.class).size());
+		assertEquals(1, world.query(SubA.class).size());
+	}
+
+	@Test
+	public void picksUpArchetypesMadeAfterIt() {
+		World world = new World();
+		Query query = world.query(A.class, B.class);
+		assertEquals(0, query.getArchetypeCount());
+
+		Entity entity = world.createEntity("e");
+		entity.attachComponent(A.class);
+		assertEquals(0, query.size());
+		B b = entity.attachComponent(B.class);
+		assertEquals(1, query.getArchetypeCount());
+		assertEquals(1, query.size());
+
+		entity.detachComponent(b);
+		assertEquals(0, query.size());
+		entity.attachComponent(B.class);
+		assertEquals("an Archetype is only added once", 1, query.getArchetypeCount());
+		assertEquals(1, query.size());
+
+		world.destroy(entity);
+		assertEquals(0, query.size());
+	}
+
+	@Test
+	public void isSharedBetweenCallersAskingForTheSameTypes() {
+		World world = new World();
+		assertSame(world.query(A.class, B.class), world.query(A.class, B.class));
+		assertFalse(world.query(A.class) == world.query(B.class));
+	}
+
+	@Test
+	public void testsArchetypesForEveryType() {
+		World world = new World();
+		Entity entity = world.createEntity("e");
+		entity.attachComponent(SubA.class);
+		entity.attachComponent(B.class);
+
+		assertTrue(world.query(A.class, B.class).matches(entity.archetype));
+		assertFalse(world.query(A.class, C.class).matches(entity.archetype));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void needsAType() {
+		new World().query();
+	}
+
+}
@@ -0,0 +1,137 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.components.Transform;
+import engine.components.UpdateRate;
+import engine.profiling.CostAccounting;
+
+/**
+ * Tests that Behaviours with an UpdateRate are staggered over their interval, in frames or in simulated time.
+ * @author Hamish Rae-Hodgson.
+ */
+public class UpdateRateTest {
+
+	private static final long SECOND = 1000000000L;
+
+	public static class Counted extends Behaviour {
+		int updates;
+		float delta;
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			updates++;
+			delta = getDeltaTime();
+		}
+	}
+
+	@UpdateRate(frames = 4)
+	public static class EveryFourFrames extends Counted { }
+
+	@UpdateRate(hz = 10)
+	public static class TenHz extends Counted { }
+
+	@UpdateRate(distances = 10, factor = 2)
+	public static class Distant extends Counted { }
+
+	private static <E extends Counted> E[] spawn(World world, Class<E> type, E[] out) {
+		for(int i = 0; i < out.length; i++)
+			out[i] = world.createEntity("e").attachComponent(type);
+		return out;
+	}
+
+	private static BehaviourScheduler scheduler(World world) {
+		BehaviourScheduler scheduler = new BehaviourScheduler(world, new CostAccounting());
+		scheduler.setPool(null);
+		return scheduler;
+	}
+
+	@Test
+	public void framesRateUpdatesAQuarterEachFrame() {
+		World world = new World();
+		EveryFourFrames[] behaviours = spawn(world, EveryFourFrames.class, new EveryFourFrames[Chunk.CAPACITY*2]);
+		BehaviourScheduler scheduler = scheduler(world);
+
+		assertEquals("everything is due on the first frame", behaviours.length, scheduler.update());
+		for(int frame = 0; frame < 8; frame++)
+			assertEquals(behaviours.length/4, scheduler.update());
+
+		for(EveryFourFrames behaviour : behaviours)
+			assertEquals(3, behaviour.updates);
+	}
+
+	@Test
+	public void hzRateHoldsWhateverTheFrameRate() {
+		for(int fps : new int[] { 30, 60, 144 }) {
+			World world = new World();
+			TenHz[] behaviours = spawn(world, TenHz.class, new TenHz[Chunk.CAPACITY]);
+			BehaviourScheduler scheduler = scheduler(world);
+			for(int frame = 0; frame < fps*10; frame++) {
+				world.getClock().progressTime(SECOND/fps);
+				scheduler.update();
+			}
+
+			for(TenHz behaviour : behaviours) {
+				assertTrue(fps + " fps gave " + behaviour.updates, Math.abs(behaviour.updates - 100) <= 1);
+				assertEquals(0.1f, behaviour.delta, 0.04f);
+			}
+		}
+	}
+
+	@Test
+	public void aFrameLongerThanTheIntervalUpdatesEverythingOnce() {
+		World world = new World();
+		TenHz[] behaviours = spawn(world, TenHz.class, new TenHz[Chunk.CAPACITY]);
+		BehaviourScheduler scheduler = scheduler(world);
+		world.getClock().progressTime(SECOND/60);
+		scheduler.update();
+
+		world.getClock().progressTime(SECOND);
+		assertEquals(behaviours.length, scheduler.update());
+
+		for(TenHz behaviour : behaviours)
+			assertEquals(2, behaviour.updates);
+	}
+
+	@Test
+	public void farBehavioursAreUpdatedLessOften() {
+		World world = new World();
+		Distant[] near = spawn(world, Distant.class, new Distant[Chunk.CAPACITY]);
+		Distant[] far = spawn(world, Distant.class, new Distant[Chunk.CAPACITY]);
+		for(Distant behaviour : far)
+			behaviour.getOwner().getTransform().translate(100, 0, 0, Transform.Space.WORLD);
+		BehaviourScheduler scheduler = scheduler(world);
+
+		for(int frame = 0; frame < 8; frame++)
+			scheduler.update();
+
+		for(Distant behaviour : near)
+			assertEquals(8, behaviour.updates);
+		for(Distant behaviour : far)
+			assertEquals(4, behaviour.updates);
+	}
+
+	@Test
+	public void tiersAreKeptWhenNewClassesArrive() {
+		World world = new World();
+		EveryFourFrames[] behaviours = spawn(world, EveryFourFrames.class, new EveryFourFrames[Chunk.CAPACITY]);
+		BehaviourScheduler scheduler = scheduler(world);
+		scheduler.update();
+		scheduler.update();
+
+		//A new Archetype makes the scheduler plan again, which mustn't restart the stagger
+		world.createEntity("e").attachComponent(Counted.class);
+		assertEquals(Chunk.CAPACITY/4 + 1, scheduler.update());
+
+		for(int frame = 0; frame < 2; frame++)
+			scheduler.update();
+		for(EveryFourFrames behaviour : behaviours)
+			assertEquals(2, behaviour.updates);
+	}
+
+}
@@ -0,0 +1,110 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import engine.components.Behaviour;
+
+/**
+ * Tests that Worlds are independent of each other and that the right one is current while stepping.
+ * @author Hamish Rae-Hodgson.
+ */
+public class WorldTest {
+
+	/** Remembers the World that was current when it was last updated */
+	public static class Witness extends Behaviour {
+		volatile World seen;
+		volatile int updates;
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			seen = World.current();
+			updates++;
+		}
+	}
+
+	@Test
+	public void worldsShareNothing() {
+		World a = new World();
+		World b = new World();
+		a.createEntity("e");
+
+		assertEquals(1, a.getEntityCount());
+		assertEquals(0, b.getEntityCount());
+		assertNull(b.getEntity("e"));
+		assertNotSame(a.getClock(), b.getClock());
+		assertNotSame(a.getTaskManager(), b.getTaskManager());
+		assertNotSame(a.getCamera(), b.getCamera());
+		assertNotSame(a.getEngine(), b.getEngine());
+		assertSame(a, a.getEngine().getWorld());
+	}
+
+	@Test
+	public void runBindsTheWorldAndRestoresThePreviousOne() {
+		final World outer = new World();
+		final World inner = new World();
+		final World unbound = World.current();
+
+		outer.run(new Runnable() {
+			public void run() {
+				assertSame(outer, World.current());
+				inner.run(new Runnable() {
+					public void run() {
+						assertSame(inner, World.current());
+					}
+				});
+				assertSame(outer, World.current());
+			}
+		});
+		assertSame(unbound, World.current());
+	}
+
+	@Test
+	public void behavioursAreUpdatedWithTheirOwnWorldCurrent() {
+		World a = new World();
+		World b = new World();
+		Witness inA = a.createEntity("e").attachComponent(Witness.class);
+		Witness inB = b.createEntity("e").attachComponent(Witness.class);
+
+		a.getEngine().step();
+		b.getEngine().step();
+
+		assertSame(a, inA.seen);
+		assertSame(b, inB.seen);
+	}
+
+	@Test
+	public void worldsCanBeSteppedOnTheirOwnThreads() throws InterruptedException {
+		final int steps = 50;
+		final World[] worlds = new World[4];
+		final Witness[] witnesses = new Witness[worlds.length];
+		for(int i = 0; i < worlds.length; i++) {
+			worlds[i] = new World();
+			witnesses[i] = worlds[i].createEntity("e").attachComponent(Witness.class);
+		}
+		final CountDownLatch done = new CountDownLatch(worlds.length);
+		for(final World world : worlds) {
+			new Thread(new Runnable() {
+				public void run() {
+					for(int i = 0; i < steps; i++)
+						world.getEngine().step();
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+
+		for(int i = 0; i < worlds.length; i++) {
+			assertSame(worlds[i], witnesses[i].seen);
+			assertEquals(steps, witnesses[i].updates);
+		}
+	}
+
+}
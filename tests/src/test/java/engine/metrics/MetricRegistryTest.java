@@ -0,0 +1,182 @@
+package engine.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.core.World;
+import engine.profiling.Histogram;
+
+/**
+ * Tests that a MetricRegistry reads back what is put in it, publishes it over JMX, and that every Engine
+ * fills one in about its World.
+ * @author Hamish Rae-Hodgson.
+ */
+public class MetricRegistryTest {
+
+	public static class Idle extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() { }
+	}
+
+	private static Gauge constant(final long value) {
+		return new Gauge() {
+			public long getValue() {
+				return value;
+			}
+		};
+	}
+
+	@Test
+	public void countersAndHistogramsAreMadeOnce() {
+		MetricRegistry metrics = new MetricRegistry();
+		Counter counter = metrics.counter("hits");
+		counter.increment();
+		counter.add(4);
+
+		assertSame(counter, metrics.counter("hits"));
+		assertEquals(5, counter.get());
+		assertSame(metrics.histogram("times"), metrics.histogram("times"));
+		counter.reset();
+		assertEquals(0, metrics.counter("hits").get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void aNameIsOneKindOfMetric() {
+		MetricRegistry metrics = new MetricRegistry();
+		metrics.counter("hits");
+		metrics.histogram("hits");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void gaugesCantBeNull() {
+		new MetricRegistry().gauge("nothing", null);
+	}
+
+	@Test
+	public void snapshotFlattensEveryMetric() {
+		MetricRegistry metrics = new MetricRegistry();
+		metrics.counter("b.counter").add(3);
+		metrics.gauge("a.gauge", constant(7));
+		metrics.gauges("c.family", new Gauge.Family() {
+			public Map<String, Long> getValues() {
+				Map<String, Long> values = new LinkedHashMap<String, Long>();
+				values.put("x", 1L);
+				values.put("y", 2L);
+				return values;
+			}
+		});
+		Histogram histogram = metrics.histogram("d.histogram");
+		histogram.record(10);
+		histogram.record(20);
+
+		Map<String, Number> snapshot = metrics.snapshot();
+		assertEquals(Arrays.asList("a.gauge", "b.counter", "c.family.x", "c.family.y",
+				"d.histogram.count", "d.histogram.mean", "d.histogram.p50", "d.histogram.p90", "d.histogram.p99", "d.histogram.max"),
+				Arrays.asList(snapshot.keySet().toArray()));
+		assertEquals(7L, snapshot.get("a.gauge"));
+		assertEquals(3L, snapshot.get("b.counter"));
+		assertEquals(2L, snapshot.get("c.family.y"));
+		assertEquals(2L, snapshot.get("d.histogram.count"));
+		assertEquals(15.0, snapshot.get("d.histogram.mean"));
+		assertEquals(20L, snapshot.get("d.histogram.max"));
+		assertTrue(metrics.dump().contains("a.gauge=7"));
+	}
+
+	@Test
+	public void gaugesAreReplacedAndRemoved() {
+		MetricRegistry metrics = new MetricRegistry();
+		metrics.gauge("g", constant(1));
+		metrics.gauge("g", constant(2));
+		assertEquals(2L, metrics.snapshot().get("g"));
+
+		assertTrue(metrics.remove("g"));
+		assertFalse(metrics.remove("g"));
+		assertNull(metrics.get("g"));
+		assertEquals(Collections.emptySet(), metrics.getNames());
+	}
+
+	@Test
+	public void publishedMetricsAreMBeanAttributes() throws Exception {
+		MetricRegistry metrics = new MetricRegistry();
+		metrics.counter("hits").add(9);
+		metrics.publish("test-publish");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(MetricRegistry.DOMAIN + ":type=World,name=\"test-publish\"");
+		try {
+			assertEquals(name, metrics.getPublishedName());
+			assertEquals(9L, server.getAttribute(name, "hits"));
+
+			metrics.gauge("late", constant(4)); //added after publishing, still shows up
+			assertEquals(2, server.getMBeanInfo(name).getAttributes().length);
+			assertEquals(4L, server.getAttribute(name, "late"));
+		} finally {
+			metrics.unpublish();
+		}
+		assertFalse(server.isRegistered(name));
+		assertNull(metrics.getPublishedName());
+		metrics.unpublish(); //does nothing a second time
+	}
+
+	@Test
+	public void publishingAgainMovesTheMBean() {
+		MetricRegistry metrics = new MetricRegistry();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		metrics.publish("test-first");
+		ObjectName first = metrics.getPublishedName();
+		try {
+			metrics.publish("test-second");
+			assertFalse(server.isRegistered(first));
+			assertTrue(server.isRegistered(metrics.getPublishedName()));
+		} finally {
+			metrics.unpublish();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void twoRegistriesCantShareAName() {
+		MetricRegistry first = new MetricRegistry();
+		first.publish("test-taken");
+		try {
+			new MetricRegistry().publish("test-taken");
+		} finally {
+			first.unpublish();
+		}
+	}
+
+	@Test
+	public void enginesReportOnTheirWorld() {
+		World world = new World();
+		for(int i = 0; i < 3; i++)
+			world.createEntity("e").attachComponent(Idle.class);
+		world.createEntity("bare");
+		for(int i = 0; i < 4; i++)
+			world.getEngine().step();
+
+		Map<String, Number> snapshot = world.getEngine().getMetrics().snapshot();
+		assertEquals(4L, snapshot.get("steps"));
+		assertEquals(4L, snapshot.get("entities"));
+		assertEquals(3L, snapshot.get("components." + Idle.class.getName()));
+		assertEquals(4L, snapshot.get("behaviours.perTick.count"));
+		assertEquals(3L, snapshot.get("behaviours.perTick.max"));
+		assertEquals(4L, snapshot.get("fixedTicks.perStep.count"));
+		assertEquals(0L, snapshot.get("tasks.queued"));
+	}
+
+}
@@ -0,0 +1,134 @@
+package engine.opengl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import javax.media.opengl.GL2;
+
+import org.junit.Test;
+
+import engine.common.Quaternion;
+import engine.common.Vec3;
+import engine.components.Transform;
+import engine.core.Camera;
+import engine.core.Entity;
+import engine.core.World;
+
+/**
+ * Tests that RenderSnapshots interpolate between fixed steps and carry poses over frames without one.
+ * @author Hamish Rae-Hodgson.
+ */
+public class RenderSnapshotTest {
+
+	/** Draws nothing */
+	public static class Box extends GL2Renderer {
+		@Override
+		public void render(GL2 gl) { }
+		@Override
+		public Drawable capture() {
+			return new Drawable() {
+				@Override
+				public void render(GL2 gl) { }
+			};
+		}
+	}
+
+	/** The interpolated x of the index-th Entity of snapshot */
+	private static float x(RenderSnapshot snapshot, int index) {
+		float[] pose = new float[7];
+		snapshot.getPose(index, pose);
+		return pose[0];
+	}
+
+	private static Entity box(World world, float x) {
+		Entity entity = world.createEntity("box");
+		entity.attachComponent(Box.class);
+		entity.getTransform().translate(x, 0, 0, Transform.Space.WORLD);
+		return entity;
+	}
+
+	private static void moveTo(Entity entity, float x) {
+		entity.getTransform().translate(x - entity.getTransform().worldPosition().x(), 0, 0, Transform.Space.WORLD);
+	}
+
+	@Test
+	public void posesAreInterpolatedAcrossTheFixedStep() {
+		World world = new World();
+		Entity entity = box(world, 0);
+		RenderSnapshot snapshot = new RenderSnapshot();
+
+		snapshot.capturePrevious(world);
+		moveTo(entity, 10);
+		snapshot.captureCurrent(world, 0.25f, null);
+
+		assertEquals(2.5f, x(snapshot, 0), 0.0001f);
+	}
+
+	@Test
+	public void aFrameWithoutAFixedStepKeepsTheLastPreviousPose() {
+		World world = new World();
+		Entity entity = box(world, 0);
+		RenderSnapshot first = new RenderSnapshot();
+		first.capturePrevious(world);
+		moveTo(entity, 10);
+		first.captureCurrent(world, 0.25f, null);
+
+		//Nothing moves without a fixed step, the frame is just further through it
+		RenderSnapshot second = new RenderSnapshot();
+		second.captureCurrent(world, 0.75f, first);
+
+		assertEquals(7.5f, x(second, 0), 0.0001f);
+	}
+
+	@Test
+	public void entitiesTheLastSnapshotDidntHaveAreDrawnWhereTheyAre() {
+		World world = new World();
+		box(world, 0);
+		RenderSnapshot first = new RenderSnapshot();
+		first.capturePrevious(world);
+		first.captureCurrent(world, 0.5f, null);
+
+		world.destroy(world.getEntities("box").iterator().next());
+		box(world, 4);
+		RenderSnapshot second = new RenderSnapshot();
+		second.captureCurrent(world, 0.5f, first);
+
+		assertEquals(4, x(second, 0), 0.0001f);
+	}
+
+	@Test
+	public void theCameraIsInterpolatedAndCarriedOverToo() {
+		World world = new World();
+		Transform camera = world.getCamera().getTransform();
+		Vec3 start = camera.worldPosition();
+		RenderSnapshot first = new RenderSnapshot();
+		first.capturePrevious(world);
+		camera.translate(8, 0, 0, Transform.Space.WORLD);
+		first.captureCurrent(world, 0.5f, null);
+		RenderSnapshot second = new RenderSnapshot();
+		second.captureCurrent(world, 0.75f, first);
+
+		Quaternion rotation = camera.worldRotation();
+		assertArrayEquals(Camera.getMatrix(start.add(new Vec3(4, 0, 0)), rotation).getData(), first.getCameraMatrix().getData(), 0.0001f);
+		assertArrayEquals(Camera.getMatrix(start.add(new Vec3(6, 0, 0)), rotation).getData(), second.getCameraMatrix().getData(), 0.0001f);
+	}
+
+	@Test
+	public void pipelineHandsOverTheLatestSnapshot() throws InterruptedException {
+		RenderPipeline pipeline = new RenderPipeline();
+		assertNull(pipeline.last());
+
+		RenderSnapshot older = pipeline.back();
+		pipeline.publish();
+		assertSame(older, pipeline.last());
+		RenderSnapshot newer = pipeline.back();
+		pipeline.publish();
+
+		assertSame(newer, pipeline.last());
+		assertSame("frames published faster than they are drawn are skipped", newer, pipeline.take());
+		assertSame(older, pipeline.back());
+	}
+
+}
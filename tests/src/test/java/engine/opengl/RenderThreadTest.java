@@ -0,0 +1,85 @@
+package engine.opengl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderThreadTest {
+
+	private RenderPipeline pipeline;
+	private RenderThread thread;
+	private final BlockingQueue<RenderSnapshot> drawn = new LinkedBlockingQueue<RenderSnapshot>();
+
+	/** Holds each draw until counted down, or the render thread is interrupted */
+	private volatile CountDownLatch holding = new CountDownLatch(0);
+
+	@Before
+	public void setUp() {
+		pipeline = new RenderPipeline();
+		thread = new RenderThread(pipeline, new Runnable() {
+			public void run() {
+				drawn.add(thread.current());
+				try {
+					holding.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		thread.stop();
+	}
+
+	/** Publishes a frame the way Display.present() does */
+	private RenderSnapshot present() {
+		RenderSnapshot snapshot = pipeline.back();
+		pipeline.publish();
+		thread.start();
+		return snapshot;
+	}
+
+	@Test
+	public void pipeliningOnThenOffStopsTheThreadAndForgetsTheSnapshot() throws InterruptedException {
+		RenderSnapshot presented = present();
+		assertSame(presented, drawn.poll(5, TimeUnit.SECONDS));
+
+		thread.stop();
+		assertNull(thread.current());
+		assertNull(pipeline.last());
+
+		pipeline.publish();
+		assertNull(drawn.poll(50, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void aSnapshotPublishedBeforeStoppingIsNotDrawnOnceRestarted() throws InterruptedException {
+		holding = new CountDownLatch(1);
+		present();
+		drawn.poll(5, TimeUnit.SECONDS);
+		pipeline.publish(); //published while the first is still being drawn
+		thread.stop();
+		holding = new CountDownLatch(0);
+
+		thread.start();
+		assertNull(drawn.poll(50, TimeUnit.MILLISECONDS));
+		RenderSnapshot presented = present();
+		assertSame(presented, drawn.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void stoppingWhenNotStartedDoesNothing() {
+		thread.stop();
+		assertNull(thread.current());
+	}
+
+}
@@ -0,0 +1,158 @@
+package engine.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.components.ThreadSafe;
+import engine.core.Engine;
+import engine.core.World;
+import engine.profiling.CostAccounting.Cost;
+import engine.profiling.CostAccounting.Kind;
+import engine.profiling.Profiler.Phase;
+
+/**
+ * Tests that the bytes allocated are counted per thread, per phase and per class.
+ * Skipped on JVMs that can't count them.
+ * @author Hamish Rae-Hodgson.
+ */
+public class AllocationsTest {
+
+	private static final int KILOBYTE = 1024;
+
+	/** Keeps allocations reachable so they can't be optimised away */
+	static volatile Object sink;
+
+	public static class Wasteful extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			sink = new byte[10*KILOBYTE];
+		}
+	}
+
+	@ThreadSafe
+	public static class ParallelWasteful extends Wasteful { }
+
+	public static class Frugal extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() { }
+	}
+
+	@Before
+	public void supported() {
+		assumeTrue(Allocations.isSupported());
+	}
+
+	@Test
+	public void theCallingThreadsBytesAreCounted() {
+		long before = Allocations.currentThread();
+		sink = new byte[KILOBYTE*KILOBYTE];
+		long after = Allocations.currentThread();
+
+		assertTrue(after - before >= KILOBYTE*KILOBYTE);
+	}
+
+	@Test
+	public void virtualThreadsArentCounted() throws InterruptedException {
+		final long[] counted = new long[2];
+		Thread.ofVirtual().start(new Runnable() {
+			public void run() {
+				counted[0] = Allocations.currentThread();
+				sink = new byte[KILOBYTE*KILOBYTE];
+				counted[1] = Allocations.currentThread();
+			}
+		}).join();
+
+		assertEquals(0, counted[0]);
+		assertEquals(0, counted[1]);
+	}
+
+	@Test
+	public void profilerCountsTheBytesOfEachPhase() {
+		Profiler profiler = new Profiler();
+		profiler.setAllocationTracking(true);
+		profiler.begin(Phase.TICK);
+		sink = new byte[KILOBYTE*KILOBYTE];
+		profiler.end(Phase.TICK);
+
+		Histogram tick = profiler.getAllocationWindow(Phase.TICK);
+		assertEquals(1, tick.getCount());
+		assertTrue(tick.getMax() >= KILOBYTE*KILOBYTE);
+		assertTrue(profiler.summary().contains("bytes"));
+	}
+
+	@Test
+	public void profilerDoesntCountUnlessAskedTo() {
+		Profiler profiler = new Profiler();
+		profiler.begin(Phase.TICK);
+		sink = new byte[KILOBYTE];
+		profiler.end(Phase.TICK);
+
+		assertFalse(profiler.isAllocationTracking());
+		assertEquals(0, profiler.getAllocationWindow(Phase.TICK).getCount());
+	}
+
+	@Test
+	public void costsNameTheClassesThatAllocate() {
+		World world = new World();
+		for(int i = 0; i < 10; i++) {
+			world.createEntity("e").attachComponent(Wasteful.class);
+			world.createEntity("e").attachComponent(Frugal.class);
+		}
+		Engine engine = world.getEngine();
+		engine.setPool(null);
+		CostAccounting costs = engine.getCostAccounting();
+		costs.setEnabled(true);
+		costs.setAllocationTracking(true);
+		engine.step();
+
+		Cost wasteful = costs.getCost(Wasteful.class, Kind.UPDATE);
+		assertTrue(wasteful.getLastFrameBytes() >= 10*10*KILOBYTE);
+		assertTrue(costs.getCost(Frugal.class, Kind.UPDATE).getLastFrameBytes() < KILOBYTE);
+		List<Cost> top = costs.getTopAllocators(1);
+		assertEquals(1, top.size());
+		assertEquals(Wasteful.class, top.get(0).getType());
+	}
+
+	@Test
+	public void parallelUpdatesCountEveryThread() {
+		World world = new World();
+		for(int i = 0; i < 500; i++)
+			world.createEntity("e").attachComponent(ParallelWasteful.class);
+		Engine engine = world.getEngine();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			engine.setPool(pool);
+			CostAccounting costs = engine.getCostAccounting();
+			costs.setEnabled(true);
+			costs.setAllocationTracking(true);
+			engine.step();
+
+			assertTrue(costs.getCost(ParallelWasteful.class, Kind.UPDATE).getLastFrameBytes() >= 500*10*KILOBYTE);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void costsOnlyTrackWhileEnabled() {
+		CostAccounting costs = new CostAccounting();
+		costs.setAllocationTracking(true);
+		assertFalse(costs.isAllocationTracking());
+		costs.setEnabled(true);
+		assertTrue(costs.isAllocationTracking());
+	}
+
+}
@@ -0,0 +1,173 @@
+package engine.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import engine.components.Behaviour;
+import engine.core.Engine;
+import engine.core.World;
+import engine.profiling.CostAccounting.Cost;
+import engine.profiling.CostAccounting.Kind;
+import engine.tasks.Task;
+
+/**
+ * Tests that CostAccounting adds up what each class costs a frame at a time, and that the Watchdog
+ * names the class a long step is stuck in.
+ * @author Hamish Rae-Hodgson.
+ */
+public class CostAccountingTest {
+
+	public static class Cheap extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() { }
+	}
+
+	public static class Stuck extends Behaviour {
+		@Override
+		public void start() { }
+		@Override
+		public void update() {
+			try {
+				Thread.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	static class Chore extends Task<Void> {
+		@Override
+		public boolean isFinished() {
+			return false;
+		}
+		@Override
+		public Void execute() {
+			return null;
+		}
+	}
+
+	@Test
+	public void framesAreAddedUpPerClassAndKind() {
+		CostAccounting costs = new CostAccounting();
+		costs.setEnabled(true);
+		costs.record(String.class, Kind.UPDATE, 100, 2);
+		costs.record(String.class, Kind.UPDATE, 50, 1);
+		costs.record(Integer.class, Kind.TASK, 500, 1);
+		costs.endFrame();
+		costs.record(String.class, Kind.UPDATE, 10, 1);
+		costs.endFrame();
+
+		Cost cost = costs.getCost(String.class, Kind.UPDATE);
+		assertEquals(1, cost.getLastFrameCalls());
+		assertEquals(10, cost.getLastFrameNanos());
+		assertEquals(4, cost.getCalls());
+		assertEquals(160, cost.getNanos());
+		assertEquals(150, cost.getMaxFrameNanos());
+		assertEquals(0, costs.getCost(String.class, Kind.RENDER).getCalls());
+		assertEquals(2, costs.getFrameCount());
+
+		assertSame(cost, costs.getWorstLastFrame());
+		List<Cost> all = costs.getCosts();
+		assertEquals(2, all.size());
+		assertSame("most time first", costs.getCost(Integer.class, Kind.TASK), all.get(0));
+		assertTrue(costs.dump().contains(String.class.getName()));
+	}
+
+	@Test
+	public void nothingIsRecordedWhileDisabled() {
+		CostAccounting costs = new CostAccounting();
+		costs.record(String.class, Kind.UPDATE, 100, 1);
+		costs.endFrame();
+
+		assertNull(costs.getCost(String.class, Kind.UPDATE));
+		assertEquals(0, costs.getFrameCount());
+		assertNull(costs.getWorstLastFrame());
+	}
+
+	@Test
+	public void resetForgetsEverything() {
+		CostAccounting costs = new CostAccounting();
+		costs.setEnabled(true);
+		costs.record(String.class, Kind.UPDATE, 100, 1);
+		costs.endFrame();
+		costs.reset();
+
+		assertTrue(costs.getCosts().isEmpty());
+		assertEquals(0, costs.getFrameCount());
+	}
+
+	@Test
+	public void engineRecordsBehavioursAndTasks() {
+		World world = new World();
+		for(int i = 0; i < 5; i++)
+			world.createEntity("e").attachComponent(Cheap.class);
+		Engine engine = world.getEngine();
+		CostAccounting costs = engine.getCostAccounting();
+		costs.setEnabled(true);
+		engine.step();
+
+		Cost update = costs.getCost(Cheap.class, Kind.UPDATE);
+		assertNotNull(update);
+		assertEquals(5, update.getLastFrameCalls());
+		assertEquals(1, costs.getFrameCount());
+
+		world.getTaskManager().addTask(new Chore());
+		world.getTaskManager().tick(0);
+		costs.endFrame();
+		assertEquals(1, costs.getCost(Chore.class, Kind.TASK).getLastFrameCalls());
+	}
+
+	@Test
+	public void watchdogNamesTheClassAStepIsStuckIn() throws InterruptedException {
+		World world = new World();
+		world.createEntity("e").attachComponent(Stuck.class);
+		Engine engine = world.getEngine();
+		engine.setPool(null);
+		Watchdog watchdog = engine.getWatchdog();
+		watchdog.start(50);
+		try {
+			assertTrue(watchdog.isRunning());
+			engine.step();
+			engine.step();
+		} finally {
+			watchdog.stop();
+		}
+
+		List<Watchdog.Report> reports = watchdog.getReports();
+		assertEquals("each long step is reported once", 2, reports.size());
+		Watchdog.Report report = reports.get(0);
+		assertEquals(Stuck.class.getName(), report.getOffender());
+		assertTrue(report.getElapsedNanos() >= 50000000);
+		assertTrue(report.getStack().length > 0);
+		assertTrue(report.getFrame() < reports.get(1).getFrame());
+
+		watchdog.clearReports();
+		assertTrue(watchdog.getReports().isEmpty());
+	}
+
+	@Test
+	public void watchdogIgnoresQuickSteps() {
+		World world = new World();
+		world.createEntity("e").attachComponent(Cheap.class);
+		Watchdog watchdog = world.getEngine().getWatchdog();
+		watchdog.start(1000);
+		try {
+			for(int i = 0; i < 10; i++)
+				world.getEngine().step();
+		} finally {
+			watchdog.stop();
+		}
+
+		assertTrue(watchdog.getReports().isEmpty());
+	}
+
+}
@@ -0,0 +1,166 @@
+package engine.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.core.Entity;
+import engine.core.World;
+import engine.tasks.Task;
+import engine.util.OBJBuilder;
+
+/**
+ * Tests that the engine's JDK Flight Recorder events turn up in a recording with their fields filled in.
+ * TextureUploadEvent needs a GL context, so it isn't covered here.
+ * @author Hamish Rae-Hodgson.
+ */
+public class FlightRecorderTest {
+
+	private static final String TRIANGLE = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvt 1 0\nvt 0 1\nf 1/1 2/2 3/3\n";
+
+	static class Chore extends Task<Void> {
+		@Override
+		public boolean isFinished() {
+			return false;
+		}
+		@Override
+		public Void execute() {
+			return null;
+		}
+	}
+
+	private Recording recording;
+
+	@Before
+	public void setUp() {
+		recording = new Recording();
+		for(String name : new String[] { "engine.Frame", "engine.FixedTick", "engine.Task", "engine.Entity", "engine.MeshParse" })
+			recording.enable(name).withoutThreshold();
+	}
+
+	@After
+	public void tearDown() {
+		recording.close();
+	}
+
+	/** Stops the recording and reads back every event in it */
+	private List<RecordedEvent> stop() throws IOException {
+		recording.stop();
+		Path file = Files.createTempFile("engine", ".jfr");
+		try {
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/** Stops the recording and reads back the events called name */
+	private List<RecordedEvent> stop(String name) throws IOException {
+		List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+		for(RecordedEvent event : stop())
+			if(event.getEventType().getName().equals(name))
+				events.add(event);
+		return events;
+	}
+
+	@Test
+	public void eachStepIsAFrameEvent() throws IOException, InterruptedException {
+		World world = new World();
+		world.getClock().setFixedRate(100);
+		world.createEntity("e");
+		recording.start();
+		for(int i = 0; i < 5; i++) {
+			Thread.sleep(15); //so fixed steps fall due
+			world.getEngine().step();
+		}
+		List<RecordedEvent> frames = new ArrayList<RecordedEvent>();
+		int fixedTicks = 0;
+		for(RecordedEvent event : stop()) {
+			if(event.getEventType().getName().equals("engine.Frame"))
+				frames.add(event);
+			else if(event.getEventType().getName().equals("engine.FixedTick"))
+				fixedTicks++;
+		}
+
+		assertEquals(5, frames.size());
+		int fixedSteps = 0;
+		for(RecordedEvent frame : frames) {
+			assertEquals(1, frame.getInt("entities"));
+			assertTrue(frame.getInt("archetypes") > 0);
+			fixedSteps += frame.getInt("fixedSteps");
+		}
+		assertTrue(fixedSteps > 0);
+		assertEquals("a FixedTick for every fixed step", fixedSteps, fixedTicks);
+	}
+
+	@Test
+	public void createdAndDestroyedEntitiesAreEvents() throws IOException {
+		World world = new World();
+		recording.start();
+		Entity entity = world.createEntity("player");
+		world.destroy(entity);
+		List<RecordedEvent> events = stop("engine.Entity");
+
+		assertEquals(2, events.size());
+		assertFalse(events.get(0).getBoolean("destroyed"));
+		assertEquals("player", events.get(0).getString("name"));
+		assertEquals(1, events.get(0).getInt("entities"));
+		assertTrue(events.get(1).getBoolean("destroyed"));
+		assertEquals(entity.getID(), events.get(1).getInt("id"));
+		assertEquals(0, events.get(1).getInt("entities"));
+	}
+
+	@Test
+	public void executedTasksAreEvents() throws IOException {
+		World world = new World();
+		world.getTaskManager().addTask(new Chore());
+		recording.start();
+		world.getTaskManager().tick(0);
+		world.getTaskManager().tick(0);
+		List<RecordedEvent> events = stop("engine.Task");
+
+		assertEquals(2, events.size());
+		assertEquals(Chore.class.getName(), events.get(0).getClass("taskClass").getName());
+		assertFalse(events.get(0).getBoolean("scheduled"));
+	}
+
+	@Test
+	public void parsingAMeshIsAnEvent() throws IOException {
+		recording.start();
+		new OBJBuilder(TRIANGLE).getMesh();
+		List<RecordedEvent> events = stop("engine.MeshParse");
+
+		assertEquals(1, events.size());
+		assertEquals(TRIANGLE.length(), events.get(0).getInt("characters"));
+		assertEquals(3, events.get(0).getInt("vertices"));
+		assertEquals(1, events.get(0).getInt("faces"));
+	}
+
+	@Test
+	public void taskEventsAreOffByDefault() throws IOException {
+		recording.close();
+		recording = new Recording();
+		World world = new World();
+		world.getTaskManager().addTask(new Chore());
+		recording.start();
+		world.getTaskManager().tick(0);
+
+		assertTrue(stop("engine.Task").isEmpty());
+	}
+
+}
@@ -0,0 +1,145 @@
+package engine.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import engine.core.World;
+import engine.profiling.Profiler.Phase;
+
+/**
+ * Tests the precision of Histograms and that a Profiler keeps each phase over a sliding window.
+ * @author Hamish Rae-Hodgson.
+ */
+public class ProfilerTest {
+
+	@Test
+	public void smallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for(int i = 1; i <= 50; i++)
+			histogram.record(i);
+
+		assertEquals(25, histogram.getPercentile(50));
+		assertEquals(50, histogram.getPercentile(100));
+		assertEquals(1, histogram.getPercentile(0));
+		assertEquals(25.5, histogram.getMean(), 0);
+		assertEquals(50, histogram.getCount());
+	}
+
+	@Test
+	public void largeValuesAreWithinThreePercent() {
+		Histogram histogram = new Histogram();
+		for(long i = 1; i <= 100000; i++)
+			histogram.record(i*1000);
+
+		assertWithin(50000000, histogram.getPercentile(50));
+		assertWithin(99000000, histogram.getPercentile(99));
+		assertWithin(99900000, histogram.getPercentile(99.9));
+		assertEquals(100000000, histogram.getMax());
+		assertEquals(50000500, histogram.getMean(), 0.001);
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(expected + " read back as " + actual, Math.abs(actual - expected) <= expected/32);
+	}
+
+	@Test
+	public void everyValueFallsInTheBucketThatCoversIt() {
+		for(long value = 0; value < Histogram.HIGHEST; value = value*3/2 + 1) {
+			int index = Histogram.index(value);
+			assertTrue(Histogram.highest(index) >= value);
+			if(index > 0)
+				assertTrue(Histogram.highest(index - 1) < value);
+		}
+	}
+
+	@Test
+	public void valuesOutOfRangeAreClamped() {
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(Histogram.HIGHEST, histogram.getMax());
+	}
+
+	@Test
+	public void histogramsAddAndReset() {
+		Histogram a = new Histogram();
+		Histogram b = new Histogram();
+		a.record(10);
+		b.record(20);
+		b.record(30);
+
+		a.add(b);
+		assertEquals(3, a.getCount());
+		assertEquals(30, a.getMax());
+		assertEquals(20, a.getPercentile(50));
+
+		a.reset();
+		assertEquals(0, a.getCount());
+		assertEquals(0, a.getMax());
+		assertEquals(0, a.getPercentile(99));
+	}
+
+	@Test
+	public void phasesAreTimed() throws InterruptedException {
+		Profiler profiler = new Profiler();
+		profiler.begin(Phase.TICK);
+		Thread.sleep(5);
+		profiler.end(Phase.TICK);
+		profiler.end(Phase.RENDER); //never begun, so ignored
+
+		Histogram tick = profiler.getWindow(Phase.TICK);
+		assertEquals(1, tick.getCount());
+		assertTrue(tick.getMax() >= 5000000);
+		assertEquals(0, profiler.getWindow(Phase.RENDER).getCount());
+		assertTrue(profiler.summary().contains("TICK"));
+		assertFalse(profiler.summary().contains("RENDER"));
+	}
+
+	@Test
+	public void nothingIsRecordedWhileDisabled() {
+		Profiler profiler = new Profiler();
+		profiler.setEnabled(false);
+		profiler.begin(Phase.TICK);
+		profiler.end(Phase.TICK);
+
+		assertEquals(0, profiler.getWindow(Phase.TICK).getCount());
+	}
+
+	@Test
+	public void theWindowForgetsOldSlices() throws InterruptedException {
+		Profiler profiler = new Profiler(2, 0.001f);
+		profiler.begin(Phase.TICK);
+		profiler.end(Phase.TICK);
+		profiler.roll(); //too soon, stays in the window
+		assertEquals(1, profiler.getWindow(Phase.TICK).getCount());
+
+		for(int i = 0; i < 3; i++) {
+			Thread.sleep(2);
+			profiler.roll();
+		}
+		assertEquals(0, profiler.getWindow(Phase.TICK).getCount());
+	}
+
+	@Test
+	public void engineStepsAreProfiled() {
+		World world = new World();
+		for(int i = 0; i < 10; i++)
+			world.getEngine().step();
+
+		Profiler profiler = world.getEngine().getProfiler();
+		assertEquals(10, profiler.getWindow(Phase.FRAME).getCount());
+		assertEquals(10, profiler.getWindow(Phase.TICK).getCount());
+		assertEquals(10, profiler.getWindow(Phase.TIME).getCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aWindowNeedsASlice() {
+		new Profiler(0, 1);
+	}
+
+}
@@ -0,0 +1,230 @@
+package engine.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.core.World;
+
+/**
+ * Tests that Coroutines run in lock-step with the TaskManager ticking them, wait as asked, and can be cancelled.
+ * @author Hamish Rae-Hodgson.
+ */
+public class CoroutineTest {
+
+	private static final long SECOND = 1000000000L;
+
+	/** What the Coroutines did, in order */
+	final List<String> steps = new ArrayList<String>();
+
+	private TaskManager manager;
+
+	@Before
+	public void setUp() {
+		manager = new TaskManager();
+	}
+
+	@Test
+	public void yieldFrameResumesNextTick() {
+		manager.addTask(new Coroutine() {
+			protected void run() {
+				for(int i = 0; i < 3; i++) {
+					steps.add("step" + i);
+					yieldFrame();
+				}
+			}
+		});
+
+		manager.tick(0);
+		assertEquals(Arrays.asList("step0"), steps);
+		manager.tick(0);
+		manager.tick(0);
+		assertEquals(Arrays.asList("step0", "step1", "step2"), steps);
+		manager.tick(0);
+		assertEquals(0, manager.getQueueDepth());
+	}
+
+	@Test
+	public void waitSecondsFollowsTheTaskManagersTime() {
+		Coroutine coroutine = new Coroutine() {
+			protected void run() {
+				waitSeconds(0.5f);
+				steps.add("woke");
+			}
+		};
+		manager.addTask(coroutine);
+		int ticks = 0;
+		while(!coroutine.isFinished()) {
+			manager.tick(SECOND/10);
+			ticks++;
+		}
+
+		assertEquals(6, ticks); //started on the first tick, woke on the one 0.5s after it
+		assertEquals(Arrays.asList("woke"), steps);
+	}
+
+	@Test
+	public void waitUntilWaitsForTheCondition() {
+		final boolean[] open = new boolean[1];
+		Coroutine coroutine = new Coroutine() {
+			protected void run() {
+				waitUntil(new Condition() {
+					public boolean test() {
+						return open[0];
+					}
+				});
+				steps.add("through");
+			}
+		};
+		manager.addTask(coroutine);
+		for(int i = 0; i < 5; i++)
+			manager.tick(0);
+		assertTrue(steps.isEmpty());
+
+		open[0] = true;
+		manager.tick(0);
+		assertEquals(Arrays.asList("through"), steps);
+		assertTrue(coroutine.isFinished());
+	}
+
+	@Test
+	public void runIsOnAVirtualThreadWithTheWorldCurrent() {
+		final World world = new World();
+		final Thread[] threads = new Thread[1];
+		final World[] current = new World[1];
+		manager.addTask(new Coroutine() {
+			protected void run() {
+				threads[0] = Thread.currentThread();
+				current[0] = World.current();
+			}
+		});
+		world.run(new Runnable() {
+			public void run() {
+				manager.tick(0);
+			}
+		});
+
+		assertTrue(threads[0].isVirtual());
+		assertSame(world, current[0]);
+	}
+
+	@Test
+	public void whatRunThrowsIsThrownByTheTick() {
+		Coroutine coroutine = new Coroutine() {
+			protected void run() {
+				yieldFrame();
+				throw new IllegalArgumentException("boom");
+			}
+		};
+		manager.addTask(coroutine);
+		manager.tick(0);
+		try {
+			manager.tick(0);
+			fail("the failure wasn't passed back");
+		} catch (IllegalArgumentException expected) {
+			assertEquals("boom", expected.getMessage());
+		}
+		assertTrue(coroutine.isFinished());
+	}
+
+	@Test
+	public void cancellingUnwindsRunWithoutResumingIt() {
+		Coroutine coroutine = new Coroutine() {
+			protected void run() {
+				try {
+					waitSeconds(10);
+					steps.add("resumed");
+				} finally {
+					steps.add("finally");
+				}
+			}
+		};
+		manager.addTask(coroutine);
+		manager.tick(0);
+
+		coroutine.cancel();
+
+		assertTrue(coroutine.isFinished());
+		assertEquals(Arrays.asList("finally"), steps);
+		manager.tick(20*SECOND);
+		assertEquals(Arrays.asList("finally"), steps);
+	}
+
+	@Test
+	public void cancellingBeforeTheFirstTickMeansRunNeverStarts() {
+		Coroutine coroutine = new Coroutine() {
+			protected void run() {
+				steps.add("ran");
+			}
+		};
+		manager.addTask(coroutine);
+		coroutine.cancel();
+		manager.tick(0);
+
+		assertTrue(coroutine.isFinished());
+		assertTrue(steps.isEmpty());
+	}
+
+	@Test
+	public void resetCancelsWaitingCoroutines() {
+		Coroutine waiting = new Coroutine() {
+			protected void run() {
+				try {
+					waitSeconds(10);
+				} finally {
+					steps.add("finally");
+				}
+			}
+		};
+		Coroutine scheduled = new Coroutine() {
+			protected void run() {
+				steps.add("ran");
+			}
+		};
+		manager.addTask(waiting);
+		manager.schedule(10, scheduled);
+		manager.tick(0);
+
+		manager.reset();
+
+		assertTrue(waiting.isFinished());
+		assertTrue(scheduled.isFinished());
+		assertEquals(Arrays.asList("finally"), steps);
+	}
+
+	@Test
+	public void manyCoroutinesCanWaitAtOnce() {
+		final int[] done = new int[1];
+		for(int i = 0; i < 10000; i++) {
+			manager.addTask(new Coroutine() {
+				protected void run() {
+					yieldFrame();
+					done[0]++;
+				}
+			});
+		}
+		manager.tick(0);
+		manager.tick(0);
+
+		assertEquals(10000, done[0]);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void suspendingOutsideRunThrows() {
+		new Coroutine() {
+			protected void run() { }
+			{
+				yieldFrame();
+			}
+		};
+	}
+
+}
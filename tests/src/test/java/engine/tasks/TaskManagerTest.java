@@ -0,0 +1,183 @@
+package engine.tasks;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import engine.tasks.TaskManager.Priority;
+
+/**
+ * Tests that a TaskManager runs its queued Tasks by Priority, each once a tick, within its budget.
+ * @author Hamish Rae-Hodgson.
+ */
+public class TaskManagerTest {
+
+	/** The name of each Task as it ran */
+	static final List<String> ran = new ArrayList<String>();
+
+	/** Runs a number of times, taking at least the given time each */
+	static class Job extends Task<Void> {
+		final String name;
+		final long nanos;
+		int left;
+		Job(String name, int times) {
+			this(name, times, 0);
+		}
+		Job(String name, int times, long nanos) {
+			this.name = name;
+			this.left = times;
+			this.nanos = nanos;
+		}
+		@Override
+		public boolean isFinished() {
+			return left == 0;
+		}
+		@Override
+		public Void execute() {
+			long end = System.nanoTime() + nanos;
+			while(System.nanoTime() < end)
+				Thread.yield();
+			left--;
+			ran.add(name);
+			return null;
+		}
+	}
+
+	private TaskManager manager;
+
+	@Before
+	public void setUp() {
+		ran.clear();
+		manager = new TaskManager();
+	}
+
+	@Test
+	public void tasksRunByPriorityThenInTheOrderAdded() {
+		manager.addTask(new Job("low", 1), Priority.LOW);
+		manager.addTask(new Job("normal", 1));
+		manager.addTask(new Job("critical", 1), Priority.CRITICAL);
+		manager.addTask(new Job("high", 1), Priority.HIGH);
+		manager.addTask(new Job("normal2", 1), Priority.NORMAL);
+
+		manager.tick(0);
+
+		assertEquals(Arrays.asList("critical", "high", "normal", "normal2", "low"), ran);
+	}
+
+	@Test
+	public void tasksRunOnceATickUntilFinished() {
+		manager.addTask(new Job("a", 3));
+		for(int i = 0; i < 5; i++)
+			manager.tick(0);
+
+		assertEquals(3, ran.size());
+		assertEquals(0, manager.getQueueDepth());
+		assertEquals(3, manager.getTasksExecuted());
+	}
+
+	@Test
+	public void aTaskAddedDuringATickWaitsForTheNext() {
+		manager.addTask(new Job("parent", 1) {
+			@Override
+			public Void execute() {
+				manager.addTask(new Job("child", 1));
+				return super.execute();
+			}
+		});
+
+		manager.tick(0);
+		assertEquals(Arrays.asList("parent"), ran);
+		manager.tick(0);
+		assertEquals(Arrays.asList("parent", "child"), ran);
+	}
+
+	@Test
+	public void aTaskIsOnlyQueuedOnce() {
+		Job job = new Job("once", 2);
+		manager.addTask(job);
+		manager.addTask(job);
+		manager.addTask(job, Priority.HIGH);
+		assertEquals(1, manager.getQueueDepth());
+
+		manager.tick(0);
+		assertEquals(1, ran.size());
+
+		//finished Tasks leave the queue, so it can be added again once done
+		manager.tick(0);
+		job.left = 1;
+		manager.addTask(job);
+		manager.tick(0);
+		assertEquals(3, ran.size());
+	}
+
+	@Test
+	public void theBudgetDefersTasksToTheNextTick() {
+		manager.setBudget(1000);
+		manager.addTask(new Job("slow", 1, 3000000));
+		manager.addTask(new Job("next", 1));
+		manager.addTask(new Job("last", 1), Priority.LOW);
+		manager.addTask(new Job("critical", 2), Priority.CRITICAL);
+
+		manager.tick(0);
+		assertEquals(Arrays.asList("critical", "slow"), ran);
+		assertEquals(2, manager.getLastTickDeferred());
+		assertEquals(1, manager.getBudgetOverruns());
+
+		manager.tick(0);
+		assertEquals(Arrays.asList("critical", "slow", "critical", "next", "last"), ran);
+		assertEquals(0, manager.getLastTickDeferred());
+		assertEquals(1000, manager.getBudget());
+	}
+
+	@Test
+	public void criticalTasksIgnoreTheBudget() {
+		manager.setBudget(1);
+		manager.addTask(new Job("first", 1, 2000000), Priority.CRITICAL);
+		manager.addTask(new Job("second", 1, 2000000), Priority.CRITICAL);
+		manager.addTask(new Job("normal", 1));
+
+		manager.tick(0);
+
+		assertEquals(Arrays.asList("first", "second"), ran);
+		assertEquals(1, manager.getLastTickDeferred());
+	}
+
+	@Test
+	public void withoutABudgetEveryTaskRuns() {
+		for(int i = 0; i < 100; i++)
+			manager.addTask(new Job("job", 1, 10000));
+		manager.tick(0);
+
+		assertEquals(100, manager.getLastTickExecuted());
+		assertEquals(0, manager.getLastTickDeferred());
+		assertEquals(0, manager.getQueueDepth(Priority.NORMAL));
+	}
+
+	@Test
+	public void resetDropsEverything() {
+		manager.addTask(new Job("queued", 5));
+		manager.schedule(1, new Job("scheduled", 1));
+		manager.reset();
+		manager.tick(2000000000L);
+
+		assertEquals(0, ran.size());
+		assertEquals(0, manager.getQueueDepth());
+		assertEquals(0, manager.getPendingTimers());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullTasksAreRejected() {
+		manager.addTask(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void budgetCantBeNegative() {
+		manager.setBudget(-1);
+	}
+
+}
@@ -0,0 +1,189 @@
+package engine.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that timers come out of a TimerWheel on the tick they are due however far off it is,
+ * and that Tasks scheduled on a TaskManager execute on time.
+ * @author Hamish Rae-Hodgson.
+ */
+public class TimerWheelTest {
+
+	private static final long SECOND = 1000000000L;
+
+	static class Count extends Task<Void> {
+		int executed;
+		boolean finished;
+		@Override
+		public boolean isFinished() {
+			return finished;
+		}
+		@Override
+		public Void execute() {
+			executed++;
+			return null;
+		}
+	}
+
+	private static ScheduledTask timer(long expiry) {
+		return new ScheduledTask(new Count(), expiry, 0);
+	}
+
+	@Test
+	public void timersAreDueOnTheirTickAcrossEveryLevel() {
+		TimerWheel wheel = new TimerWheel();
+		Random random = new Random(18);
+		ScheduledTask[] timers = new ScheduledTask[2000];
+		for(int i = 0; i < timers.length; i++) {
+			//spread over the first three levels, and a few past them
+			long expiry = i < 10 ? (1L << 24) + i : 1 + random.nextInt(1 << 20);
+			timers[i] = timer(expiry);
+			wheel.add(timers[i]);
+		}
+		assertEquals(timers.length, wheel.size());
+
+		int fired = 0;
+		for(long tick = 1; tick <= (1L << 24) + 10; tick++) {
+			for(ScheduledTask due = wheel.advance(tick); due != null; ) {
+				assertEquals(tick, due.expiry);
+				assertFalse(due.isPending());
+				fired++;
+				ScheduledTask next = due.next;
+				due.next = null;
+				due = next;
+			}
+		}
+		assertEquals(timers.length, fired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void aJumpHandsBackEverythingDueEarliestFirst() {
+		TimerWheel wheel = new TimerWheel();
+		Random random = new Random(7);
+		for(int i = 0; i < 500; i++)
+			wheel.add(timer(1 + random.nextInt(100000)));
+
+		long last = 0;
+		int count = 0;
+		for(ScheduledTask due = wheel.advance(100000); due != null; due = due.next) {
+			assertTrue(due.expiry >= last);
+			last = due.expiry;
+			count++;
+		}
+		assertEquals(500, count);
+		assertEquals(100000, wheel.current());
+	}
+
+	@Test
+	public void timersInThePastAreDueNextTick() {
+		TimerWheel wheel = new TimerWheel();
+		wheel.advance(50);
+		ScheduledTask late = timer(10);
+		wheel.add(late);
+
+		assertNull(wheel.advance(50));
+		assertSame(late, wheel.advance(51));
+	}
+
+	@Test
+	public void cancelledTimersAreRemoved() {
+		TimerWheel wheel = new TimerWheel();
+		ScheduledTask kept = timer(300);
+		ScheduledTask cancelled = timer(300);
+		wheel.add(kept);
+		wheel.add(cancelled);
+
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertTrue(cancelled.isCancelled());
+		assertEquals(1, wheel.size());
+		ScheduledTask due = wheel.advance(300);
+		assertSame(kept, due);
+		assertNull(due.next);
+	}
+
+	@Test
+	public void clearHandsBackEveryTimer() {
+		TimerWheel wheel = new TimerWheel();
+		for(int i = 1; i <= 5; i++)
+			wheel.add(timer(i*100000L));
+
+		int count = 0;
+		for(ScheduledTask removed = wheel.clear(); removed != null; removed = removed.next)
+			count++;
+		assertEquals(5, count);
+		assertEquals(0, wheel.size());
+		assertNull(wheel.advance(1000000));
+	}
+
+	@Test
+	public void scheduledTasksExecuteOnceTheirDelayHasPassed() {
+		TaskManager manager = new TaskManager();
+		Count task = new Count();
+		ScheduledTask scheduled = manager.schedule(0.5f, task);
+		assertTrue(scheduled.isPending());
+		assertFalse(scheduled.isPeriodic());
+
+		long time = 0;
+		while(task.executed == 0) {
+			manager.tick(SECOND/60);
+			time += SECOND/60;
+		}
+		assertTrue(time >= SECOND/2 && time < SECOND/2 + SECOND/60);
+		for(int i = 0; i < 60; i++)
+			manager.tick(SECOND/60);
+		assertEquals(1, task.executed);
+		assertFalse(scheduled.isPending());
+		assertEquals(1, manager.getTimersFired());
+	}
+
+	@Test
+	public void fixedRateTasksDontDrift() {
+		TaskManager manager = new TaskManager();
+		Count task = new Count();
+		manager.scheduleAtFixedRate(0.1f, 0.1f, task);
+		for(int i = 0; i < 100*10; i++)
+			manager.tick(SECOND/100);
+
+		assertEquals(100, task.executed);
+
+		task.finished = true;
+		manager.tick(SECOND);
+		assertEquals("finished Tasks aren't executed or rescheduled", 100, task.executed);
+		assertEquals(0, manager.getPendingTimers());
+	}
+
+	@Test
+	public void cancellingStopsAFixedRateTask() {
+		TaskManager manager = new TaskManager();
+		Count task = new Count();
+		ScheduledTask scheduled = manager.scheduleAtFixedRate(0, 0.01f, task);
+		manager.tick(SECOND/10);
+		int executed = task.executed;
+		assertTrue(executed > 0);
+
+		scheduled.cancel();
+		manager.tick(SECOND);
+		assertEquals(executed, task.executed);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void periodMustBePositive() {
+		new TaskManager().scheduleAtFixedRate(0, 0, new Count());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void delayCantBeNegative() {
+		new TaskManager().schedule(-1, new Count());
+	}
+
+}